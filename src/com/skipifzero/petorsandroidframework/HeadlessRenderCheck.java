@@ -0,0 +1,143 @@
+package com.skipifzero.petorsandroidframework;
+
+import com.skipifzero.petorsandroidframework.framework.opengl.GL;
+import com.skipifzero.petorsandroidframework.framework.opengl.GLState;
+import com.skipifzero.petorsandroidframework.framework.opengl.HeadlessGLBackend;
+import com.skipifzero.petorsandroidframework.framework.opengl.SpriteBatcher;
+import com.skipifzero.petorsandroidframework.framework.opengl.Texture;
+import com.skipifzero.petorsandroidframework.framework.opengl.TextureRegion;
+
+/**
+ * Checks the draw calls and texture binds made by SpriteBatcher using a HeadlessGLBackend, so it
+ * runs on a plain JVM without a device, for example in CI.
+ * 
+ * How to run:
+ * The framework references android classes, so android.jar from the SDK must be on the classpath,
+ * but no android methods are called by the checked code. From the project root:
+ *   javac -cp $ANDROID_HOME/platforms/android-17/android.jar -d bin/headless $(find src -name "*.java")
+ *   java -cp bin/headless:$ANDROID_HOME/platforms/android-17/android.jar com.skipifzero.petorsandroidframework.HeadlessRenderCheck
+ * Exits with status 1 and prints what failed if any check fails.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-19
+ * @version 1
+ */
+public class HeadlessRenderCheck {
+	
+	private static int failures = 0;
+	
+	public static void main(String[] args) {
+		HeadlessGLBackend backend = new HeadlessGLBackend();
+		GL.setBackend(backend);
+		GLState.newContext();
+		
+		Texture textureA = new HeadlessTexture(1);
+		Texture textureB = new HeadlessTexture(2);
+		TextureRegion regionA = new TextureRegion(textureA, 0, 0, 32, 32);
+		TextureRegion regionB = new TextureRegion(textureB, 0, 0, 32, 32);
+		SpriteBatcher batcher = new SpriteBatcher(4);
+		
+		//Multi-texture batch, each change of Texture flushes and binds.
+		backend.reset();
+		batcher.beginBatch();
+		batcher.draw(0f, 0f, 1f, 1f, regionA);
+		batcher.draw(0f, 0f, 1f, 1f, regionA);
+		batcher.draw(0f, 0f, 1f, 1f, regionB);
+		batcher.draw(0f, 0f, 1f, 1f, regionB);
+		batcher.draw(0f, 0f, 1f, 1f, regionA);
+		batcher.renderBatch();
+		check("multi-texture draw calls", 3, backend.getDrawCalls());
+		check("multi-texture texture binds", 3, backend.getTextureBinds());
+		check("multi-texture drawn indices", 5*6, backend.getDrawnIndices());
+		
+		//Single texture batch larger than the capacity, flushed when the buffer is full.
+		backend.reset();
+		batcher.beginBatch(textureA);
+		for(int i = 0; i < 10; i++) {
+			batcher.draw(0f, 0f, 1f, 1f, regionA);
+		}
+		batcher.renderBatch();
+		check("full buffer draw calls", 3, backend.getDrawCalls());
+		check("full buffer texture binds", 0, backend.getTextureBinds()); //Already bound.
+		check("full buffer drawn indices", 10*6, backend.getDrawnIndices());
+		
+		//Untinted batches don't use the color array.
+		backend.reset();
+		batcher.beginBatch(textureA);
+		batcher.draw(0f, 0f, 1f, 1f, regionA);
+		batcher.renderBatch();
+		check("untinted color pointers", 0, backend.getCommandCount(HeadlessGLBackend.COLOR_POINTER));
+		batcher.beginBatch(textureA);
+		batcher.draw(0f, 0f, 1f, 1f, regionA, 0x80FF0000);
+		batcher.renderBatch();
+		check("tinted color pointers", 1, backend.getCommandCount(HeadlessGLBackend.COLOR_POINTER));
+		
+		//White sprites drawn before the first color are rendered without the color array, the rest
+		//of the batch with it, even though everything would fit in one draw call.
+		backend.reset();
+		batcher.beginBatch(textureA);
+		batcher.draw(0f, 0f, 1f, 1f, regionA);
+		batcher.draw(0f, 0f, 1f, 1f, regionA, 0x80FF0000);
+		batcher.draw(0f, 0f, 1f, 1f, regionA);
+		batcher.renderBatch();
+		check("color switch draw calls", 2, backend.getDrawCalls());
+		check("color switch color pointers", 1, backend.getCommandCount(HeadlessGLBackend.COLOR_POINTER));
+		
+		if(failures > 0) {
+			System.out.println(failures + " check(s) failed.");
+			System.exit(1);
+		}
+		System.out.println("All checks passed.");
+	}
+	
+	private static void check(String name, int expected, int actual) {
+		if(expected != actual) {
+			System.out.println("FAILED " + name + ": expected " + expected + ", was " + actual);
+			failures++;
+		}
+	}
+	
+	/*
+	 * A Texture that only binds its id, doesn't need a Bitmap.
+	 */
+	private static class HeadlessTexture implements Texture {
+		private final int id;
+		
+		public HeadlessTexture(int id) {
+			this.id = id;
+		}
+		
+		@Override
+		public void bind() {
+			GLState.bindTexture(id);
+		}
+		
+		@Override
+		public void unbind() {
+			GLState.bindTexture(0);
+		}
+		
+		@Override
+		public void setSmoothing(boolean smoothing) {
+		}
+		
+		@Override
+		public boolean isSmoothed() {
+			return false;
+		}
+		
+		@Override
+		public void dispose() {
+		}
+		
+		@Override
+		public int getWidth() {
+			return 64;
+		}
+		
+		@Override
+		public int getHeight() {
+			return 64;
+		}
+	}
+}
@@ -10,8 +10,10 @@ import com.skipifzero.petorsandroidframework.framework.input.TouchInput;
 import com.skipifzero.petorsandroidframework.framework.math.FinalVector2;
 import com.skipifzero.petorsandroidframework.framework.opengl.Camera2D;
 import com.skipifzero.petorsandroidframework.framework.opengl.FontRenderer;
+import com.skipifzero.petorsandroidframework.framework.opengl.GL;
 import com.skipifzero.petorsandroidframework.framework.opengl.GLActivity;
 import com.skipifzero.petorsandroidframework.framework.opengl.GLScreen;
+import com.skipifzero.petorsandroidframework.framework.opengl.GLState;
 import com.skipifzero.petorsandroidframework.framework.opengl.SpriteBatcher;
 import com.skipifzero.petorsandroidframework.framework.opengl.Texture;
 import com.skipifzero.petorsandroidframework.framework.opengl.TextureRegion;
@@ -76,15 +78,15 @@ public class MainScreen extends GLScreen {
 	@Override
 	public void draw(double deltaTime, int fps) {
 		//Set clear color and clear screen.
-		GLES10.glClearColor(0, 0, 0, 1);
-		GLES10.glClear(GLES10.GL_COLOR_BUFFER_BIT);
+		GL.get().glClearColor(0, 0, 0, 1);
+		GL.get().glClear(GLES10.GL_COLOR_BUFFER_BIT);
 		
 		//Enable alpha blending.
-		GLES10.glEnable(GLES10.GL_BLEND);
-		GLES10.glBlendFunc(GLES10.GL_SRC_ALPHA, GLES10.GL_ONE_MINUS_SRC_ALPHA);
+		GLState.enable(GLES10.GL_BLEND);
+		GLState.blendFunc(GLES10.GL_SRC_ALPHA, GLES10.GL_ONE_MINUS_SRC_ALPHA);
 					
 		//Enable textures
-		GLES10.glEnable(GLES10.GL_TEXTURE_2D);
+		GLState.enable(GLES10.GL_TEXTURE_2D);
 	
 		camera.initialize(getGLActivity().getViewWidth(), getGLActivity().getViewHeight());
 		
@@ -0,0 +1,242 @@
+package com.skipifzero.petorsandroidframework;
+
+import java.util.Random;
+
+import android.graphics.Bitmap.Config;
+import android.opengl.GLES10;
+import android.util.Log;
+
+import com.skipifzero.petorsandroidframework.framework.opengl.Camera2D;
+import com.skipifzero.petorsandroidframework.framework.opengl.GL;
+import com.skipifzero.petorsandroidframework.framework.opengl.GLActivity;
+import com.skipifzero.petorsandroidframework.framework.opengl.GLScreen;
+import com.skipifzero.petorsandroidframework.framework.opengl.GLState;
+import com.skipifzero.petorsandroidframework.framework.opengl.SpriteBatcher;
+import com.skipifzero.petorsandroidframework.framework.opengl.Texture;
+import com.skipifzero.petorsandroidframework.framework.opengl.TextureRegion;
+import com.skipifzero.petorsandroidframework.framework.opengl.TextureUtil;
+import com.skipifzero.petorsandroidframework.framework.opengl.Vertices;
+
+/**
+ * Benchmark comparing the old way of batching sprites (filling a float array and copying it to
+ * the direct buffer with Vertices.setVertices()) with the SpriteBatcher, which writes straight
+ * into the direct buffer.
+ * 
+ * Both paths use the same vertex layout (position, packed color, texture coordinates, 5 floats
+ * per vertex) and draw all sprites in one draw call. The time spent generating the vertices
+ * (including the copy for the old path) and the time spent submitting them (bind and draw) are
+ * measured separately, so the comparison of the generation isn't hidden by the driver.
+ * 
+ * Return this screen from MainActivity to run it. Each configuration (1000, 5000 and 10000
+ * sprites) is measured for a number of frames per path and the average CPU times per frame are
+ * logged with the tag "SpriteBatcherBenchmark".
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-02
+ * @version 2
+ */
+public class SpriteBatcherBenchmark extends GLScreen {
+	
+	private static final String TAG = "SpriteBatcherBenchmark";
+	private static final int[] SPRITE_AMOUNTS = {1000, 5000, 10000};
+	private static final int WARMUP_FRAMES = 30;
+	private static final int MEASURED_FRAMES = 120;
+	private static final int CAPACITY = 10000; //All sprites fit, so a batch is never flushed early.
+	private static final float WORLD_SIZE = 100;
+	private static final int VERTEX_SIZE = 5; //x, y, packed color, u, v.
+	private static final float WHITE = Float.intBitsToFloat(Vertices.packColor(0xFFFFFFFF)); //Only copied, never used in arithmetic.
+	
+	private final Camera2D camera;
+	private final SpriteBatcher batcher;
+	private final TextureUtil texUtil;
+	private Texture texture;
+	private TextureRegion region;
+	
+	//Old path
+	private final float[] copyBuffer;
+	private final Vertices copyVertices;
+	
+	//Sprite data
+	private final float[] xs, ys, angles;
+	
+	//Benchmark state
+	private int configIndex = 0;
+	private boolean copyPath = true;
+	private int frame = 0;
+	private long generateTime = 0, submitTime = 0;
+	private final long[] copyGenerateResults = new long[SPRITE_AMOUNTS.length];
+	private final long[] copySubmitResults = new long[SPRITE_AMOUNTS.length];
+	
+	public SpriteBatcherBenchmark(GLActivity glActivity) {
+		super(glActivity);
+		
+		this.camera = new Camera2D(WORLD_SIZE/2, WORLD_SIZE/2, WORLD_SIZE, WORLD_SIZE);
+		this.batcher = new SpriteBatcher(CAPACITY);
+		this.texUtil = new TextureUtil("textures", Config.ARGB_8888);
+		
+		this.copyBuffer = new float[CAPACITY*4*VERTEX_SIZE];
+		this.copyVertices = new Vertices(CAPACITY*4, CAPACITY*6, true, true, false, true);
+		this.copyVertices.setColorsEnabled(false); //Same as an untinted SpriteBatcher batch.
+		short[] indices = new short[CAPACITY*6];
+		short j = 0;
+		for(int i = 0; i < indices.length; i += 6, j += 4) {
+			indices[i + 0] = (short)(j + 0);
+			indices[i + 1] = (short)(j + 1);
+			indices[i + 2] = (short)(j + 2);
+			indices[i + 3] = (short)(j + 2);
+			indices[i + 4] = (short)(j + 3);
+			indices[i + 5] = (short)(j + 0);
+		}
+		copyVertices.setIndices(indices, 0, indices.length);
+		
+		int maxSprites = SPRITE_AMOUNTS[SPRITE_AMOUNTS.length - 1];
+		this.xs = new float[maxSprites];
+		this.ys = new float[maxSprites];
+		this.angles = new float[maxSprites];
+		Random random = new Random(1337);
+		for(int i = 0; i < maxSprites; i++) {
+			xs[i] = random.nextFloat() * WORLD_SIZE;
+			ys[i] = random.nextFloat() * WORLD_SIZE;
+			angles[i] = random.nextFloat() * 360;
+		}
+	}
+	
+	@Override
+	public void onResume() {
+		texUtil.load(getGLActivity().getAssets());
+		this.texture = texUtil.getTextureAtlas();
+		this.region = texUtil.getTextureRegion("ObjectV1_128x128.png");
+		batcher.reload();
+	}
+	
+	@Override
+	public void update(int fps, double deltaTime) {
+		//Everything happens in draw().
+	}
+	
+	@Override
+	public void draw(double deltaTime, int fps) {
+		if(configIndex >= SPRITE_AMOUNTS.length) {
+			return; //Done.
+		}
+		
+		GL.get().glClearColor(0, 0, 0, 1);
+		GL.get().glClear(GLES10.GL_COLOR_BUFFER_BIT);
+		GLState.enable(GLES10.GL_TEXTURE_2D);
+		camera.initialize(getGLActivity().getViewWidth(), getGLActivity().getViewHeight());
+		
+		int spriteAmount = SPRITE_AMOUNTS[configIndex];
+		long startTime = System.nanoTime();
+		if(copyPath) {
+			generateCopying(spriteAmount);
+		} else {
+			generateDirect(spriteAmount);
+		}
+		long generatedTime = System.nanoTime();
+		if(copyPath) {
+			submitCopying(spriteAmount);
+		} else {
+			batcher.renderBatch();
+		}
+		long endTime = System.nanoTime();
+		
+		frame++;
+		if(frame > WARMUP_FRAMES) {
+			generateTime += generatedTime - startTime;
+			submitTime += endTime - generatedTime;
+		}
+		if(frame == WARMUP_FRAMES + MEASURED_FRAMES) {
+			long generateAverage = generateTime / MEASURED_FRAMES;
+			long submitAverage = submitTime / MEASURED_FRAMES;
+			if(copyPath) {
+				copyGenerateResults[configIndex] = generateAverage;
+				copySubmitResults[configIndex] = submitAverage;
+			} else {
+				Log.d(TAG, spriteAmount + " sprites, generate: float[] + copy " + (copyGenerateResults[configIndex] / 1000) + "us/frame, direct " + (generateAverage / 1000) + "us/frame"
+						+ "; submit: float[] + copy " + (copySubmitResults[configIndex] / 1000) + "us/frame, direct " + (submitAverage / 1000) + "us/frame");
+				configIndex++;
+			}
+			copyPath = !copyPath;
+			frame = 0;
+			generateTime = 0;
+			submitTime = 0;
+		}
+	}
+	
+	@Override
+	public void onPause() {
+	
+	}
+	
+	@Override
+	public void dispose() {
+		texUtil.dispose();
+		batcher.dispose();
+	}
+	
+	@Override
+	public boolean catchBackKey() {
+		return false;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	//Rendered with renderBatch(), which only submits since nothing is flushed before.
+	private void generateDirect(int spriteAmount) {
+		batcher.beginBatch(texture);
+		for(int i = 0; i < spriteAmount; i++) {
+			batcher.draw(xs[i], ys[i], 2f, 2f, angles[i], region);
+		}
+	}
+	
+	//The way SpriteBatcher used to work, sprites are written to a float array which is copied.
+	private void generateCopying(int spriteAmount) {
+		int index = 0;
+		for(int i = 0; i < spriteAmount; i++) {
+			index = writeSprite(copyBuffer, index, xs[i], ys[i], 2f, 2f, angles[i], region);
+		}
+		copyVertices.setVertices(copyBuffer, 0, index);
+	}
+	
+	private void submitCopying(int spriteAmount) {
+		texture.bind();
+		copyVertices.bind();
+		copyVertices.draw(GLES10.GL_TRIANGLES, 0, spriteAmount * 6);
+	}
+	
+	private static int writeSprite(float[] buffer, int index, float x, float y, float width, float height, float angle, TextureRegion texRegion) {
+		float halfWidth = width/2;
+		float halfHeight = height/2;
+		double radAngle = Math.toRadians(angle);
+		float cosAng = (float)Math.cos(radAngle);
+		float sinAng = (float)Math.sin(radAngle);
+		
+		buffer[index++] = x - halfWidth * cosAng + halfHeight * sinAng;
+		buffer[index++] = y - halfWidth * sinAng - halfHeight * cosAng;
+		buffer[index++] = WHITE;
+		buffer[index++] = texRegion.u1;
+		buffer[index++] = texRegion.v2;
+		
+		buffer[index++] = x + halfWidth * cosAng + halfHeight * sinAng;
+		buffer[index++] = y + halfWidth * sinAng - halfHeight * cosAng;
+		buffer[index++] = WHITE;
+		buffer[index++] = texRegion.u2;
+		buffer[index++] = texRegion.v2;
+		
+		buffer[index++] = x + halfWidth * cosAng - halfHeight * sinAng;
+		buffer[index++] = y + halfWidth * sinAng + halfHeight * cosAng;
+		buffer[index++] = WHITE;
+		buffer[index++] = texRegion.u2;
+		buffer[index++] = texRegion.v1;
+		
+		buffer[index++] = x - halfWidth * cosAng - halfHeight * sinAng;
+		buffer[index++] = y - halfWidth * sinAng + halfHeight * cosAng;
+		buffer[index++] = WHITE;
+		buffer[index++] = texRegion.u1;
+		buffer[index++] = texRegion.v1;
+		return index;
+	}
+}
@@ -4,12 +4,15 @@ package com.skipifzero.petorsandroidframework.framework;
 /**
  * NumberBuilder: A simple class for building and updating a String with a number.
  * 
+ * Implements CharSequence, so it can be drawn directly with FontRenderer without calling
+ * toString() (which creates a new String each call).
+ * 
  * @author Peter Hillerström
  * @author Centril<twingoow@gmail.com> / Mazdak Farrokhzad.
  * @since 2013-04-23
- * @version 3
+ * @version 4
  */
-public class NumberBuilder {
+public class NumberBuilder implements CharSequence {
 	/** The current number. */
 	private int number;
 
@@ -34,6 +37,7 @@ public class NumberBuilder {
 	 */
 	public NumberBuilder(String preString, int initialNumber, String postString) {
 		builder = new StringBuilder();
+		this.number = initialNumber; //Must match the text, otherwise update() skips numbers equal to the old default 0.
 		this.postString = postString;
 		
 		if(preString != null) {
@@ -61,7 +65,8 @@ public class NumberBuilder {
 	}
 
 	/**
-	 * Updates/sets the new current number.
+	 * Updates/sets the new current number. Does nothing if the number is the same as the current
+	 * number, which starts out as the initial number given to the constructor.
 	 * 
 	 * @param number the number to set
 	 */
@@ -92,6 +97,21 @@ public class NumberBuilder {
 		return this.number;
 	}
 
+	@Override
+	public int length() {
+		return this.builder.length();
+	}
+	
+	@Override
+	public char charAt(int index) {
+		return this.builder.charAt(index);
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return this.builder.subSequence(start, end);
+	}
+	
 	/**
 	 * Returns the string.
 	 */
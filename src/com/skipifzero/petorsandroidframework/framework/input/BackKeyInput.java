@@ -1,5 +1,6 @@
 package com.skipifzero.petorsandroidframework.framework.input;
 
+import android.opengl.GLSurfaceView;
 import android.view.KeyEvent;
 import android.view.View;
 import android.view.View.OnKeyListener;
@@ -29,6 +30,9 @@ public class BackKeyInput implements OnKeyListener {
 	
 	@Override
 	public boolean onKey(View v, int keyCode, KeyEvent event) {
+		if(v instanceof GLSurfaceView) {
+			((GLSurfaceView)v).requestRender(); //Wakes the renderer if it only renders when dirty.
+		}
 		
 		if(keyCode == BACK_KEY_CODE) {
 			if(event.getAction() == KeyEvent.ACTION_DOWN) {
@@ -4,12 +4,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import android.opengl.GLSurfaceView;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnTouchListener;
 
 import com.skipifzero.petorsandroidframework.framework.input.Pool.PoolObjectFactory;
 import com.skipifzero.petorsandroidframework.framework.input.TouchEvent.TouchType;
+import com.skipifzero.petorsandroidframework.framework.opengl.FrameProfiler;
 
 /**
  * An implementation of the TouchInput interface.
@@ -83,6 +85,10 @@ public class PooledTouchInput implements TouchInput, OnTouchListener {
 		
 	@Override
 	public boolean onTouch(View view, MotionEvent motionEvent) {
+		if(view instanceof GLSurfaceView) {
+			((GLSurfaceView)view).requestRender(); //Wakes the renderer if it only renders when dirty.
+		}
+		
 		synchronized(this){
 			int action = motionEvent.getAction() & MotionEvent.ACTION_MASK; //Type of action that occurred.
 			int pointerIndex = (motionEvent.getAction() & MotionEvent.ACTION_POINTER_INDEX_MASK) >> MotionEvent.ACTION_POINTER_INDEX_SHIFT; //PointerIndex, used in MotionEvent classes.
@@ -168,6 +174,7 @@ public class PooledTouchInput implements TouchInput, OnTouchListener {
 	 */
 	@Override
 	public void update() {
+		FrameProfiler.begin(FrameProfiler.INPUT);
 		view.setOnTouchListener(this); //TODO: Yeah... This is a hack. Hope it's not expensive.
 		
 		synchronized(this){	
@@ -292,6 +299,7 @@ public class PooledTouchInput implements TouchInput, OnTouchListener {
 			filteredEvents.addAll(tempEvents);
 			tempEvents.clear();
 		}
+		FrameProfiler.end(FrameProfiler.INPUT);
 	}
 	
 	/**
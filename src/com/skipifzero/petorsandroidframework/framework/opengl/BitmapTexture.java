@@ -2,19 +2,21 @@ package com.skipifzero.petorsandroidframework.framework.opengl;
 
 import android.graphics.Bitmap;
 import android.opengl.GLES10;
-import android.opengl.GLUtils;
 
 /**
  * An implementation of Texture that takes an Bitmap as the argument. Doesn't keep the bitmap
- * so it can't be reloaded.
+ * so it can only be reloaded with a new Bitmap.
  * @author Peter Hillerström
  * @version 1
  */
 public class BitmapTexture implements Texture {
 
+	private static final int NO_CONTEXT = -1; //GLState contexts are never negative.
+	
 	private int id;
+	private int context; //The OpenGL context the id was created in, NO_CONTEXT if disposed.
 	private boolean smoothing;
-	private final int width, height;
+	private int width, height;
 	
 	public BitmapTexture(Bitmap bitmap) {		
 		this.width = bitmap.getWidth();
@@ -23,26 +25,57 @@ public class BitmapTexture implements Texture {
 		load(bitmap);
 	}
 	
+	/**
+	 * Reloads this texture from the specified Bitmap. Keeps the same BitmapTexture instance, so
+	 * TextureRegions created with this texture remain valid. The old texture is deleted if it
+	 * hasn't already been disposed and its OpenGL context is still alive.
+	 * @param bitmap the Bitmap
+	 */
+	public void reload(Bitmap bitmap) {
+		this.width = bitmap.getWidth();
+		this.height = bitmap.getHeight();
+		
+		if(context == GLState.getContext()) {
+			GLState.deleteTexture(id);
+		}
+		boolean oldSmoothing = smoothing; //load() resets smoothing.
+		load(bitmap);
+		setSmoothing(oldSmoothing);
+	}
+	
+	/**
+	 * Replaces a part of this texture with the specified Bitmap, which must have the same format
+	 * as the Bitmap this texture was created with. The texture is left bound.
+	 * @param x the x-coordinate of the left edge of the part to replace
+	 * @param y the y-coordinate of the top edge of the part to replace
+	 * @param bitmap the Bitmap
+	 */
+	public void update(int x, int y, Bitmap bitmap) {
+		bind();
+		GL.get().texSubImage2D(GLES10.GL_TEXTURE_2D, 0, x, y, bitmap);
+	}
+	
 	private void load(Bitmap bitmap) {
 		//Gets id.
 		int[] ids = new int[1];
-		GLES10.glGenTextures(1, ids, 0);
+		GL.get().glGenTextures(1, ids, 0);
 		id = ids[0];
+		context = GLState.getContext();
 		
 		bind();
-		GLUtils.texImage2D(GLES10.GL_TEXTURE_2D, 0, bitmap, 0);
+		GL.get().texImage2D(GLES10.GL_TEXTURE_2D, 0, bitmap, 0);
 		setSmoothing(false);
 		unbind();
 	}
 	
 	@Override
 	public void bind() {
-		GLES10.glBindTexture(GLES10.GL_TEXTURE_2D, id);
+		GLState.bindTexture(id);
 	}
 	
 	@Override
 	public void unbind() {
-		GLES10.glBindTexture(GLES10.GL_TEXTURE_2D, 0);
+		GLState.bindTexture(0);
 	}
 	
 	@Override
@@ -51,20 +84,23 @@ public class BitmapTexture implements Texture {
 
 		bind();
 		if(smoothing) {
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_LINEAR);
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_LINEAR);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_LINEAR);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_LINEAR);
 		}else {
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_NEAREST);
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_NEAREST);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_NEAREST);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_NEAREST);
 		}
-		unbind();
+		//Left bound, it's usually about to be used anyway and unbinding would only cause another bind.
 	}
 	
 	@Override
 	public void dispose() {
-		GLES10.glBindTexture(GLES10.GL_TEXTURE_2D, 0);
-		int[] IDs = {id};
-		GLES10.glDeleteTextures(1, IDs, 0);
+		if(context == GLState.getContext()) {
+			GLState.deleteTexture(id);
+		}
+		//The id may be reused by OpenGL for another texture, so it must never be deleted again.
+		id = 0;
+		context = NO_CONTEXT;
 	}
 	
 	@Override
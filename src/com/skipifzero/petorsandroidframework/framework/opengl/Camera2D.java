@@ -10,12 +10,19 @@ import com.skipifzero.petorsandroidframework.framework.math.Vector2;
  * A class used for setting the OpenGL viewport and setting the projection type to 2D.
  * Basically the size and position of this camera is relative to an internal coordinate system.
  * 
+ * If GLActivity renders at a reduced resolution (see GLActivity.setResolutionScale()) the surface
+ * is smaller than the GLSurfaceView. The size of the GLSurfaceView should still be passed to
+ * initialize(), the viewport is scaled to the size of the surface automatically.
+ * 
  * @author Peter Hillerström
  * @since 2013-04-28
- * @version 2
+ * @version 3
  */
 public class Camera2D {
 	
+	//Surface size divided by view size, set by GLActivity when the surface changes.
+	private static float resolutionScaleX = 1, resolutionScaleY = 1;
+	
 	private final BoundingRectangle bounds;
 	
 	/**
@@ -36,18 +43,18 @@ public class Camera2D {
 	 * @param viewHeight the height of the GLSurfaceView
 	 */
 	public void initialize(int viewWidth, int viewHeight) {
-		GLES10.glViewport(0, 0, viewWidth, viewHeight);
-		GLES10.glMatrixMode(GLES10.GL_PROJECTION);
-		GLES10.glLoadIdentity();
+		GL.get().glViewport(0, 0, Math.round(viewWidth * resolutionScaleX), Math.round(viewHeight * resolutionScaleY));
+		GLState.matrixMode(GLES10.GL_PROJECTION);
+		GL.get().glLoadIdentity();
 		
 		float halfFrustrumX = (float)bounds.getWidth()/2;
 		float halfFrustrumY = (float)bounds.getHeight()/2;
 		float xPos = (float)bounds.getPosition().getX();
 		float yPos = (float)bounds.getPosition().getY();
-		GLES10.glOrthof(xPos - halfFrustrumX, xPos + halfFrustrumX, yPos - halfFrustrumY, yPos + halfFrustrumY, 1, -1);
+		GL.get().glOrthof(xPos - halfFrustrumX, xPos + halfFrustrumX, yPos - halfFrustrumY, yPos + halfFrustrumY, 1, -1);
 		
-		GLES10.glMatrixMode(GLES10.GL_MODELVIEW);
-		GLES10.glLoadIdentity();
+		GLState.matrixMode(GLES10.GL_MODELVIEW);
+		GL.get().glLoadIdentity();
 	}
 	
 	/**
@@ -94,4 +101,13 @@ public class Camera2D {
 	public BoundingRectangle getBounds() {
 		return bounds;
 	}
+	
+	/*
+	 * Sets the ratio between the surface size and the GLSurfaceView size, called by GLActivity
+	 * when the surface changes.
+	 */
+	static void setResolutionScale(float scaleX, float scaleY) {
+		resolutionScaleX = scaleX;
+		resolutionScaleY = scaleY;
+	}
 }
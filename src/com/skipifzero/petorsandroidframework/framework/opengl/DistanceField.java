@@ -0,0 +1,175 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * Generates signed distance fields from alpha masks, used by FontRenderer to create distance
+ * field fonts. Pure Java, doesn't need a device or an OpenGL context.
+ * 
+ * A distance field stores the distance from each pixel to the closest edge of the shape instead
+ * of how much of the pixel is covered. Drawn with linear filtering and an alpha test at 0.5 the
+ * edges stay sharp when scaled, so one small texture can be used for text of all sizes.
+ * 
+ * The source mask is rasterized "scale" times larger than the distance field, each pixel in the
+ * distance field is sampled from the center of its block in the source. Pixels with an alpha of
+ * at least 128 are inside the shape. The distances are calculated with the exact euclidean
+ * distance transform by Felzenszwalb and Huttenlocher, which is linear in the amount of pixels.
+ * 
+ * The values are mapped so that 0.5 (128) is the edge, 1.0 (255) is "spread" pixels (in the
+ * distance field) or more inside and 0.0 is "spread" pixels or more outside.
+ * 
+ * The temporary buffers are reused between calls, they only grow if a larger source than ever
+ * before is used. Not thread safe.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-19
+ * @version 1
+ */
+public final class DistanceField {
+	
+	private static final float FAR = 1e20f; //Squared distance of pixels without a feature.
+	
+	//Squared distances to the closest pixel inside and outside the shape.
+	private float[] toInside = new float[0];
+	private float[] toOutside = new float[0];
+	
+	//Buffers for the one dimensional transform.
+	private float[] f = new float[0];
+	private float[] d = new float[0];
+	private float[] z = new float[0];
+	private int[] v = new int[0];
+	
+	/**
+	 * Generates a distance field from the specified source mask.
+	 * @param source the alpha values of the source mask, one byte per pixel, row by row
+	 * @param sourceWidth the width of the source mask
+	 * @param sourceHeight the height of the source mask
+	 * @param scale how many times larger the source is than the distance field
+	 * @param spread the distance (in distance field pixels) mapped to fully inside or outside
+	 * @param dest the array to store the distance field in, (sourceWidth/scale)*(sourceHeight/scale) bytes
+	 * @throws IllegalArgumentException if scale < 1, spread <= 0 or the arrays are too small
+	 */
+	public void generate(byte[] source, int sourceWidth, int sourceHeight, int scale, float spread, byte[] dest) {
+		if(scale < 1) {
+			throw new IllegalArgumentException("Scale must be >= 1");
+		}
+		if(spread <= 0) {
+			throw new IllegalArgumentException("Spread must be > 0");
+		}
+		int destWidth = sourceWidth / scale;
+		int destHeight = sourceHeight / scale;
+		if(source.length < sourceWidth*sourceHeight || dest.length < destWidth*destHeight) {
+			throw new IllegalArgumentException("Source or dest array is too small.");
+		}
+		
+		int pixelAmount = sourceWidth*sourceHeight;
+		ensureCapacity(pixelAmount, Math.max(sourceWidth, sourceHeight));
+		
+		for(int i = 0; i < pixelAmount; i++) {
+			boolean inside = (source[i] & 0xFF) >= 128;
+			toInside[i] = inside ? 0 : FAR;
+			toOutside[i] = inside ? FAR : 0;
+		}
+		transform(toInside, sourceWidth, sourceHeight);
+		transform(toOutside, sourceWidth, sourceHeight);
+		
+		//Samples the center of each block, distances are measured to the edge between pixels.
+		int half = scale / 2;
+		for(int y = 0; y < destHeight; y++) {
+			for(int x = 0; x < destWidth; x++) {
+				int i = (y*scale + half)*sourceWidth + (x*scale + half);
+				float distance;
+				if(toOutside[i] > 0) {
+					distance = ((float)Math.sqrt(toOutside[i]) - 0.5f) / scale;
+				} else {
+					distance = -((float)Math.sqrt(toInside[i]) - 0.5f) / scale;
+				}
+				
+				float value = 0.5f + distance / (2*spread);
+				if(value < 0) {
+					value = 0;
+				} else if(value > 1) {
+					value = 1;
+				}
+				dest[y*destWidth + x] = (byte)Math.round(value*255);
+			}
+		}
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private void ensureCapacity(int pixelAmount, int maxSide) {
+		if(toInside.length < pixelAmount) {
+			toInside = new float[pixelAmount];
+			toOutside = new float[pixelAmount];
+		}
+		if(f.length < maxSide) {
+			f = new float[maxSide];
+			d = new float[maxSide];
+			z = new float[maxSide + 1];
+			v = new int[maxSide];
+		}
+	}
+	
+	/*
+	 * Two dimensional squared distance transform, one dimensional transforms of all columns and
+	 * then all rows.
+	 */
+	private void transform(float[] grid, int width, int height) {
+		for(int x = 0; x < width; x++) {
+			for(int y = 0; y < height; y++) {
+				f[y] = grid[y*width + x];
+			}
+			transform(height);
+			for(int y = 0; y < height; y++) {
+				grid[y*width + x] = d[y];
+			}
+		}
+		for(int y = 0; y < height; y++) {
+			int row = y*width;
+			for(int x = 0; x < width; x++) {
+				f[x] = grid[row + x];
+			}
+			transform(width);
+			for(int x = 0; x < width; x++) {
+				grid[row + x] = d[x];
+			}
+		}
+	}
+	
+	/*
+	 * One dimensional squared distance transform of f into d. Finds the lower envelope of the
+	 * parabolas rooted at each sample, v holds the roots and z the boundaries between them.
+	 */
+	private void transform(int n) {
+		int k = 0;
+		v[0] = 0;
+		z[0] = Float.NEGATIVE_INFINITY;
+		z[1] = Float.POSITIVE_INFINITY;
+		for(int q = 1; q < n; q++) {
+			float s = intersection(q, v[k]);
+			while(s <= z[k]) {
+				k--;
+				s = intersection(q, v[k]);
+			}
+			k++;
+			v[k] = q;
+			z[k] = s;
+			z[k + 1] = Float.POSITIVE_INFINITY;
+		}
+		
+		k = 0;
+		for(int q = 0; q < n; q++) {
+			while(z[k + 1] < q) {
+				k++;
+			}
+			float distance = q - v[k];
+			d[q] = distance*distance + f[v[k]];
+		}
+	}
+	
+	private float intersection(int q, int p) {
+		return ((f[q] + q*q) - (f[p] + p*p)) / (2*q - 2*p);
+	}
+}
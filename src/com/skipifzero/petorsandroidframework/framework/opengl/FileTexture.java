@@ -3,7 +3,6 @@ package com.skipifzero.petorsandroidframework.framework.opengl;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.opengl.GLES10;
-import android.opengl.GLUtils;
 
 import com.skipifzero.petorsandroidframework.framework.FileIO;
 
@@ -33,7 +32,7 @@ public class FileTexture implements Texture {
 	private void load() {
 		//Gets id.
 		int[] ids = new int[1];
-		GLES10.glGenTextures(1, ids, 0);
+		GL.get().glGenTextures(1, ids, 0);
 		id = ids[0];
 
 		Bitmap bitmap = file.loadBitmap(fileName, quality);
@@ -42,19 +41,19 @@ public class FileTexture implements Texture {
 		this.height = bitmap.getHeight();
 
 		bind();
-		GLUtils.texImage2D(GLES10.GL_TEXTURE_2D, 0, bitmap, 0);
+		GL.get().texImage2D(GLES10.GL_TEXTURE_2D, 0, bitmap, 0);
 		setSmoothing(false);
 		unbind();
 	}
 
 	@Override
 	public void bind() {
-		GLES10.glBindTexture(GLES10.GL_TEXTURE_2D, id);
+		GLState.bindTexture(id);
 	}
 
 	@Override
 	public void unbind() {
-		GLES10.glBindTexture(GLES10.GL_TEXTURE_2D, 0);
+		GLState.bindTexture(0);
 	}
 
 	@Override
@@ -63,13 +62,13 @@ public class FileTexture implements Texture {
 
 		bind();
 		if(smoothing) {
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_LINEAR);
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_LINEAR);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_LINEAR);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_LINEAR);
 		}else {
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_NEAREST);
-			GLES10.glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_NEAREST);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MIN_FILTER, GLES10.GL_NEAREST);
+			GL.get().glTexParameterf(GLES10.GL_TEXTURE_2D, GLES10.GL_TEXTURE_MAG_FILTER, GLES10.GL_NEAREST);
 		}
-		unbind();
+		//Left bound, it's usually about to be used anyway and unbinding would only cause another bind.
 	}
 	
 	/**
@@ -84,9 +83,7 @@ public class FileTexture implements Texture {
 
 	@Override
 	public void dispose(){
-		GLES10.glBindTexture(GLES10.GL_TEXTURE_2D, 0);
-		int[] IDs = {id};
-		GLES10.glDeleteTextures(1, IDs, 0);
+		GLState.deleteTexture(id);
 	}
 
 	@Override
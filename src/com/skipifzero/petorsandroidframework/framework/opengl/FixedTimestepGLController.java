@@ -0,0 +1,47 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * A GLController whose logic is updated with a fixed timestep, independent of the frame rate.
+ * 
+ * Each frame GLActivity first calls update() once with the real delta time, which can be used for
+ * work that should happen once per frame such as polling input. Then the time since the last
+ * frame is added to an accumulator, and fixedUpdate() is called once for each whole timestep in
+ * the accumulator, at most getMaxStepsPerFrame() times. If the accumulator still contains whole
+ * timesteps after that the device can't keep up, and the excess time is dropped instead of being
+ * simulated in ever longer frames. Last draw() is called with an alpha value telling how far
+ * between the previous and the current logic state the frame is, which should be used to
+ * interpolate what is drawn so movement stays smooth regardless of the refresh rate.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-13
+ * @version 1
+ */
+public interface FixedTimestepGLController extends GLController {
+	
+	/**
+	 * Returns the fixed timestep used to update the logic.
+	 * @return the timestep in seconds, must be > 0
+	 */
+	public double getTimestep();
+	
+	/**
+	 * Returns the maximum amount of fixedUpdate() calls per frame.
+	 * @return the maximum amount of steps per frame, must be > 0
+	 */
+	public int getMaxStepsPerFrame();
+	
+	/**
+	 * Called zero or more times each frame, updates the logic one timestep.
+	 * @param timestep the timestep in seconds
+	 */
+	public void fixedUpdate(double timestep);
+	
+	/**
+	 * Called once each frame after all fixedUpdate() calls.
+	 * @param deltaTime the time in seconds since the last frame
+	 * @param fps the amount of rendered frames the last second
+	 * @param alpha how far the time of this frame is between the previous logic state (0) and the
+	 * current logic state (1)
+	 */
+	public void draw(double deltaTime, int fps, double alpha);
+}
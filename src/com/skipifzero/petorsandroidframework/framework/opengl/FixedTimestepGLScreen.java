@@ -0,0 +1,96 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * An abstract class combining a FixedTimestepGLController and an InterpolatedGLView into one
+ * screen, the fixed timestep version of GLScreen.
+ * 
+ * update() does nothing by default and can be overridden for work that should be done once per
+ * frame, such as polling input.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-13
+ * @version 1
+ */
+public abstract class FixedTimestepGLScreen implements FixedTimestepGLController, InterpolatedGLView {
+	
+	public static final int DEFAULT_MAX_STEPS_PER_FRAME = 5;
+	
+	private final GLActivity glActivity;
+	private final double timestep;
+	private final int maxStepsPerFrame;
+	
+	/**
+	 * Creates a new FixedTimestepGLScreen with DEFAULT_MAX_STEPS_PER_FRAME.
+	 * @param glActivity the GLActivity running this screen
+	 * @param timestep the timestep in seconds
+	 * @throws IllegalArgumentException if timestep <= 0
+	 */
+	public FixedTimestepGLScreen(GLActivity glActivity, double timestep) {
+		this(glActivity, timestep, DEFAULT_MAX_STEPS_PER_FRAME);
+	}
+	
+	/**
+	 * Creates a new FixedTimestepGLScreen.
+	 * @param glActivity the GLActivity running this screen
+	 * @param timestep the timestep in seconds
+	 * @param maxStepsPerFrame the maximum amount of fixedUpdate() calls per frame
+	 * @throws IllegalArgumentException if timestep <= 0 or maxStepsPerFrame <= 0
+	 */
+	public FixedTimestepGLScreen(GLActivity glActivity, double timestep, int maxStepsPerFrame) {
+		if(timestep <= 0) {
+			throw new IllegalArgumentException("Timestep must be > 0");
+		}
+		if(maxStepsPerFrame <= 0) {
+			throw new IllegalArgumentException("Max steps per frame must be > 0");
+		}
+		this.glActivity = glActivity;
+		this.timestep = timestep;
+		this.maxStepsPerFrame = maxStepsPerFrame;
+	}
+	
+	/**
+	 * Returns the GLActivity running this GLController.
+	 * @return the GLActivity running this GLController
+	 */
+	public final GLActivity getGLActivity() {
+		return glActivity;
+	}
+	
+	@Override
+	public final double getTimestep() {
+		return timestep;
+	}
+	
+	@Override
+	public final int getMaxStepsPerFrame() {
+		return maxStepsPerFrame;
+	}
+	
+	@Override
+	public void update(double deltaTime, int fps) {
+		//Does nothing by default.
+	}
+	
+	/**
+	 * Draws the current logic state without interpolation.
+	 */
+	@Override
+	public final void draw(double deltaTime, int fps) {
+		draw(deltaTime, fps, 1.0);
+	}
+	
+	@Override
+	public abstract void fixedUpdate(double timestep);
+	
+	@Override
+	public abstract void draw(double deltaTime, int fps, double alpha);
+	
+	@Override
+	public abstract void onResume();
+	
+	@Override
+	public abstract void onPause();
+	
+	@Override
+	public abstract void dispose();
+}
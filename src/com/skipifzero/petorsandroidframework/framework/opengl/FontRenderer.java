@@ -1,14 +1,11 @@
 package com.skipifzero.petorsandroidframework.framework.opengl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Typeface;
 import android.opengl.GLES10;
+import android.graphics.Typeface;
 import android.util.Log;
 
 import com.skipifzero.petorsandroidframework.framework.math.BaseVector2;
@@ -22,9 +19,35 @@ import com.skipifzero.petorsandroidframework.framework.math.Vector2;
  * You can only have on SpriteBatcher running at a time, so you can't render some text in the middle of rendering
  * sprites.
  * 
+ * Characters 32-256 are rasterized when the FontRenderer is created, all other characters are
+ * rasterized the first time they are drawn and cached in atlas pages (see setMaxPages() in the
+ * Builder). If all pages are full the least recently used glyphs are evicted. Characters that
+ * can't be rendered (control characters, surrogates) are rendered as space.
+ * 
+ * A FontRenderer built with "build(GLUploadQueue)" in the Builder rasterizes the preloaded
+ * characters and builds the atlas bitmaps on the calling thread, typically in
+ * GLControllerLoader.load(), and only queues the creation of the textures. It may not be used
+ * until that upload has been run.
+ * 
+ * Every method taking a string takes a CharSequence, so text in a mutable buffer (StringBuilder,
+ * NumberBuilder, etc) can be drawn without calling "toString()" first. There are also variants
+ * taking a char[] with an offset and a length.
+ * 
+ * Strings drawn many times (especially with row breaking or non-left alignment) should be drawn
+ * as a TextLayout created with "createLayout()", or fetched with "getLayout()" which uses an LRU
+ * cache of layouts if a layout cache size is set in the Builder. A layout only has to be measured
+ * once, drawing it doesn't measure anything.
+ * 
+ * With "setDistanceField(true)" in the Builder the glyphs are stored as signed distance fields
+ * instead of coverage and rendered with an alpha test, so text stays sharp at any size and one
+ * FontRenderer with a small size (32 is plenty) can be used for all text. The trade-offs are
+ * hard edges (no anti-aliasing), slightly rounded corners, and that the text is always opaque:
+ * blending is disabled while it's rendered and the alpha of the text color is ignored, so
+ * distance field text can't be faded.
+ * 
  * Based on http://fractiousg.blogspot.se/2012/04/rendering-text-in-opengl-on-android.html.
  * 
- * @version 2
+ * @version 6
  * @since 2013-05-08
  * @author Peter Hillerström
  */
@@ -41,6 +64,10 @@ public class FontRenderer {
 		public static final int DEFAULT_MAX_CHAR_CAPACITY = 250;
 		public static final int DEFAULT_X_PADDING = 1;
 		public static final int DEFAULT_Y_PADDING = 1;
+		public static final int DEFAULT_MAX_PAGES = 4;
+		public static final int DEFAULT_LAYOUT_CACHE_SIZE = 0;
+		public static final boolean DEFAULT_DISTANCE_FIELD = false;
+		public static final int DEFAULT_DISTANCE_FIELD_SPREAD = 2;
 		public static final HorizontalAlignment DEFAULT_HORIZONTAL_ALIGNMENT = HorizontalAlignment.LEFT;
 		public static final VerticalAlignment DEFAULT_VERTICAL_ALIGNMENT = VerticalAlignment.CENTER;
 		
@@ -50,6 +77,10 @@ public class FontRenderer {
 		private int maxCharCapacity;
 		private int xPadding;
 		private int yPadding;
+		private int maxPages;
+		private int layoutCacheSize;
+		private boolean distanceField;
+		private int distanceFieldSpread;
 		private HorizontalAlignment horizontalAlignment;
 		private VerticalAlignment verticalAlignment;
 		
@@ -68,6 +99,10 @@ public class FontRenderer {
 			this.maxCharCapacity = DEFAULT_MAX_CHAR_CAPACITY;
 			this.xPadding = DEFAULT_X_PADDING;
 			this.yPadding = DEFAULT_Y_PADDING;
+			this.maxPages = DEFAULT_MAX_PAGES;
+			this.layoutCacheSize = DEFAULT_LAYOUT_CACHE_SIZE;
+			this.distanceField = DEFAULT_DISTANCE_FIELD;
+			this.distanceFieldSpread = DEFAULT_DISTANCE_FIELD_SPREAD;
 			this.horizontalAlignment = DEFAULT_HORIZONTAL_ALIGNMENT;
 			this.verticalAlignment = DEFAULT_VERTICAL_ALIGNMENT;
 			return this;
@@ -114,8 +149,8 @@ public class FontRenderer {
 		}
 		
 		/**
-		 * Sets the maximum char capacity of the FontRenderer. This is the amount of chars you can render
-		 * in one batch.
+		 * Sets the maximum char capacity of the FontRenderer. This is the amount of chars rendered
+		 * per draw call, larger batches are split up automatically.
 		 * @param maxCharCapacity
 		 * @throws IllegalArgumentException if maxCharCapacity < 10
 		 * @return this
@@ -158,6 +193,67 @@ public class FontRenderer {
 			return this;
 		}
 		
+		/**
+		 * Sets the maximum amount of atlas pages characters are cached in. Each page is as large
+		 * as the texture needed for characters 32-256, pages beyond the first one are only created
+		 * when characters outside that range are drawn.
+		 * @param maxPages
+		 * @throws IllegalArgumentException if maxPages < 1
+		 * @return this
+		 */
+		public Builder setMaxPages(int maxPages) {
+			if(maxPages < 1) {
+				throw new IllegalArgumentException("maxPages must be >= 1");
+			}
+			this.maxPages = maxPages;
+			return this;
+		}
+		
+		/**
+		 * Sets the amount of TextLayouts kept in the LRU cache used by "getLayout()". 0 disables
+		 * the cache, "getLayout()" then creates a new layout each call.
+		 * @param layoutCacheSize
+		 * @throws IllegalArgumentException if layoutCacheSize < 0
+		 * @return this
+		 */
+		public Builder setLayoutCacheSize(int layoutCacheSize) {
+			if(layoutCacheSize < 0) {
+				throw new IllegalArgumentException("layoutCacheSize must be >= 0");
+			}
+			this.layoutCacheSize = layoutCacheSize;
+			return this;
+		}
+		
+		/**
+		 * Sets whether the glyphs should be stored as signed distance fields, which makes text
+		 * sharp at all sizes. The size set with "setSize()" then only decides the resolution of
+		 * the atlas, not how large text can be drawn. Distance field text has hard edges and is
+		 * always opaque, the alpha of the text color is ignored.
+		 * @param distanceField
+		 * @return this
+		 */
+		public Builder setDistanceField(boolean distanceField) {
+			this.distanceField = distanceField;
+			return this;
+		}
+		
+		/**
+		 * Sets how far (in pixels on the atlas) the distance fields extend outside the glyphs.
+		 * The outline is cut at the same place regardless of the spread, it only has to cover the
+		 * interpolation between neighbouring texels, larger values just use more of the atlas.
+		 * Only used if distance fields are enabled.
+		 * @param distanceFieldSpread
+		 * @throws IllegalArgumentException if distanceFieldSpread < 1
+		 * @return this
+		 */
+		public Builder setDistanceFieldSpread(int distanceFieldSpread) {
+			if(distanceFieldSpread < 1) {
+				throw new IllegalArgumentException("distanceFieldSpread must be >= 1");
+			}
+			this.distanceFieldSpread = distanceFieldSpread;
+			return this;
+		}
+		
 		/**
 		 * Sets the horizontal alignment.
 		 * @param horizontalAlignment
@@ -180,10 +276,36 @@ public class FontRenderer {
 		
 		/**
 		 * Builds the FontRenderer with the specified settings.
+		 * Must be called on the OpenGL thread.
 		 * @return a new FontRenderer
 		 */
 		public FontRenderer build() {
-			return new FontRenderer(font, size, spacing, maxCharCapacity, xPadding, yPadding, horizontalAlignment, verticalAlignment);
+			FontRenderer fontRenderer = create();
+			fontRenderer.upload();
+			return fontRenderer;
+		}
+		
+		/**
+		 * Builds the FontRenderer with the specified settings without making any OpenGL calls.
+		 * Glyphs are rasterized and the atlas bitmaps are built on the calling thread, only the
+		 * creation of the textures is added to the specified GLUploadQueue. Meant to be called from
+		 * GLControllerLoader.load(), the FontRenderer may not be used until the upload has been run.
+		 * @param uploads the GLUploadQueue the texture creation is added to
+		 * @return a new FontRenderer
+		 */
+		public FontRenderer build(GLUploadQueue uploads) {
+			final FontRenderer fontRenderer = create();
+			uploads.add(new Runnable() {
+				@Override
+				public void run() {
+					fontRenderer.upload();
+				}
+			});
+			return fontRenderer;
+		}
+		
+		private FontRenderer create() {
+			return new FontRenderer(font, size, spacing, maxCharCapacity, xPadding, yPadding, maxPages, layoutCacheSize, distanceField ? distanceFieldSpread : 0, horizontalAlignment, verticalAlignment);
 		}
 	}
 	
@@ -202,57 +324,74 @@ public class FontRenderer {
 	}
 	
 	//Constants
-	private static final int FIRST_CHAR = 32; //First char in unicode table to read.
-	private static final int LAST_CHAR = 256; //Last char in unicode table to read. (126 is enough for simple ASCII, 256 to include Swedish characters and some extra.)
-	private static final int CHARACTER_COUNT = LAST_CHAR - FIRST_CHAR + 1 + 1; //+1 to include LAST_CHAR and +1 for the unknown char.
-	private static final int UNKNOWN_CHAR = 32; //Char used for unknown input. (In this case space).
-	private static final int UNKNOWN_CHAR_INDEX = CHARACTER_COUNT - 1; //The index to the unknown char in the arrays.
+	private static final char FIRST_CHAR = 32; //First char in unicode table to preload.
+	private static final char LAST_CHAR = 256; //Last char in unicode table to preload. (126 is enough for simple ASCII, 256 to include Swedish characters and some extra.)
+	private static final int CHARACTER_COUNT = LAST_CHAR - FIRST_CHAR + 1; //+1 to include LAST_CHAR.
+	private static final char UNKNOWN_CHAR = 32; //Char used for unknown input. (In this case space).
 	
 	//Tools
 	private final int maxCharCapacity;
 	private final SpriteBatcher fontBatcher;
+	private final Map<LayoutKey, TextLayout> layoutCache;
+	private final LayoutKey tempLayoutKey = new LayoutKey();
+	private final LineBreaker lineBreaker = new LineBreaker();
+	private final LineBreaker.Measurer charMeasurer = new LineBreaker.Measurer() {
+		@Override
+		public float getWidth(char c) {
+			return getCharWidth(c);
+		}
+	};
 	
 	//The font
 	private final Typeface font;
 	
 	//The bitmap font
-	private Texture bitmapFont;
+	private GlyphCache glyphCache;
 	private TextureRegion textureRegion;
-	private final TextureRegion[] charRegions;
-	private final float[] charWidths;
+	private int unknownGlyph;
 	
 	private final int size;
 	private final int spacing;
 	private final int xPadding, yPadding;
-	private int charRegionWidth, charRegionHeight;
-	private int cellWidth, cellHeight;
+	private final int maxPages;
+	private final int glyphMargin; //Distance field spread around each glyph region, 0 if not used.
+	private int charRegionHeight;
+	private int cellHeight;
 	private int textureSize;
 	private HorizontalAlignment horizontalAlignment;
 	private VerticalAlignment verticalAlignment;
 	
 	//Temporary variables
 	private final Vector2 tempVector = new Vector2(0,0);
-	private final StringBuilder tempStrBuilder;
+	private final CharArraySequence tempCharArray = new CharArraySequence();
 	
-	private FontRenderer(Typeface font, int size, int spacing, int maxCharCapacity, int xPadding, int yPadding, HorizontalAlignment horizontalAlignment, VerticalAlignment verticalAlignment) {
+	private FontRenderer(Typeface font, int size, int spacing, int maxCharCapacity, int xPadding, int yPadding, int maxPages, final int layoutCacheSize, int glyphMargin, HorizontalAlignment horizontalAlignment, VerticalAlignment verticalAlignment) {
 		this.font = font;
 		this.size = size;
 		this.spacing = spacing;
 		this.maxCharCapacity = maxCharCapacity;
 		this.xPadding = xPadding;
 		this.yPadding = yPadding;
+		this.maxPages = maxPages;
+		this.glyphMargin = glyphMargin;
 		this.horizontalAlignment = horizontalAlignment;
 		this.verticalAlignment = verticalAlignment;
 		
 		this.fontBatcher = new SpriteBatcher(maxCharCapacity);
+		if(layoutCacheSize > 0) {
+			this.layoutCache = new LinkedHashMap<LayoutKey, TextLayout>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<LayoutKey, TextLayout> eldest) {
+					return size() > layoutCacheSize;
+				}
+			};
+		} else {
+			this.layoutCache = null;
+		}
 		
-		charWidths = new float[CHARACTER_COUNT];
-		charRegions = new TextureRegion[CHARACTER_COUNT];
-		
-		load();
-		
-		//Temporary variables
-		this.tempStrBuilder = new StringBuilder(maxCharCapacity);
+		prepare();
 	}
 	
 	/*
@@ -269,7 +408,7 @@ public class FontRenderer {
 	 * @param color the color to render
 	 * @param string the string to render
 	 */
-	public void completeDraw(BaseVector2 position, double size, int color, String string) {
+	public void completeDraw(BaseVector2 position, double size, int color, CharSequence string) {
 		begin(color);
 		draw((float)position.getX(), (float)position.getY(), (float)size, string);
 		render();
@@ -285,7 +424,7 @@ public class FontRenderer {
 	 * @param color the color to render
 	 * @param string the string to render
 	 */
-	public void completeDraw(double x, double y, double size, int color, String string) {
+	public void completeDraw(double x, double y, double size, int color, CharSequence string) {
 		begin(color);
 		draw((float)x, (float)y, (float)size, string);
 		render();
@@ -301,7 +440,7 @@ public class FontRenderer {
 	 * @param color the color to render
 	 * @param string the string to render
 	 */
-	public void completeDraw(BaseVector2 position, double size, double angle, int color, String string) {
+	public void completeDraw(BaseVector2 position, double size, double angle, int color, CharSequence string) {
 		begin(color);
 		draw((float)position.getX(), (float)position.getY(), (float)size, (float)angle, string);
 		render();
@@ -317,12 +456,27 @@ public class FontRenderer {
 	 * @param color the color to render
 	 * @param string the string to render
 	 */
-	public void completeDraw(double x, double y, double size, double angle, int color, String string) {
+	public void completeDraw(double x, double y, double size, double angle, int color, CharSequence string) {
 		begin(color);
 		draw((float)x, (float)y, (float)size, (float)angle, string);
 		render();
 	}
 	
+	/**
+	 * Makes a complete rendering call with the specified parameters.
+	 * Calls the internal SpriteBatchers "begin()" and "renderBatch()" methods, so this method must not be
+	 * called while another SpriteBatcher is active (including this FontRenderer's internal one).
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param color the color to render
+	 * @param layout the layout to render
+	 */
+	public void completeDraw(double x, double y, int color, TextLayout layout) {
+		begin(color);
+		draw((float)x, (float)y, layout);
+		render();
+	}
+	
 	/**
 	 * Draws the specified string at the specified coordinates with the specified size.
 	 * May only be called after "begin()" and before "render()".
@@ -330,7 +484,7 @@ public class FontRenderer {
 	 * @param size the size
 	 * @param string the string to render
 	 */
-	public void draw(BaseVector2 position, double size, String string) {
+	public void draw(BaseVector2 position, double size, CharSequence string) {
 		draw((float)position.getX(), (float)position.getY(), (float)size, string);
 	}
 	
@@ -342,7 +496,7 @@ public class FontRenderer {
 	 * @param size the size
 	 * @param string the string to render
 	 */
-	public void draw(double x, double y, double size, String string) {
+	public void draw(double x, double y, double size, CharSequence string) {
 		draw((float)x, (float)y, (float)size, string);
 	}
 	
@@ -354,7 +508,7 @@ public class FontRenderer {
 	 * @param angle the angle
 	 * @param string the string to render
 	 */
-	public void draw(BaseVector2 position, double size, double angle, String string) {
+	public void draw(BaseVector2 position, double size, double angle, CharSequence string) {
 		draw((float)position.getX(), (float)position.getY(), (float)size, (float)angle, string);
 	}
 	
@@ -367,15 +521,36 @@ public class FontRenderer {
 	 * @param angle the angle
 	 * @param string the string to render
 	 */
-	public void draw(double x, double y, double size, double angle, String string) {
+	public void draw(double x, double y, double size, double angle, CharSequence string) {
 		draw((float)x, (float)y, (float)size, (float)angle, string);
 	}
 	
+	/**
+	 * Draws the specified layout at the specified position.
+	 * May only be called after "begin()" and before "render()".
+	 * @param position the position
+	 * @param layout the layout to render
+	 */
+	public void draw(BaseVector2 position, TextLayout layout) {
+		draw((float)position.getX(), (float)position.getY(), layout);
+	}
+	
+	/**
+	 * Draws the specified layout at the specified coordinates.
+	 * May only be called after "begin()" and before "render()".
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param layout the layout to render
+	 */
+	public void draw(double x, double y, TextLayout layout) {
+		draw((float)x, (float)y, layout);
+	}
+	
 	/**
 	 * Draws the specified string at the specified coordinates with the specified size. The string
 	 * will be split up into substrings where each substring is a row and doesn't exceed the width
-	 * of the specified width. Strings will only be split at "empty space", so if you have a word
-	 * that is longer than the specified width the behavior of this method is undefined. 
+	 * of the specified width. Strings are split at "empty space" and '\n', words that are longer
+	 * than the specified width are split in the middle. Doesn't allocate anything.
 	 * HorizontalAlignment works as usual, but VerticalAlignment takes into account the height of
 	 * the whole "block".
 	 * @param position the position
@@ -383,15 +558,15 @@ public class FontRenderer {
 	 * @param width the maximum width of the string block
 	 * @param string the string to render
 	 */
-	public void drawRowBreaking(BaseVector2 position, double size, double width, String string) {
+	public void drawRowBreaking(BaseVector2 position, double size, double width, CharSequence string) {
 		drawRowBreaking((float)position.getX(), (float)position.getY(), (float)size, (float)width, string);
 	}
 	
 	/**
 	 * Draws the specified string at the specified coordinates with the specified size. The string
 	 * will be split up into substrings where each substring is a row and doesn't exceed the width
-	 * of the specified width. Strings will only be split at "empty space", so if you have a word
-	 * that is longer than the specified width the behavior of this method is undefined. 
+	 * of the specified width. Strings are split at "empty space" and '\n', words that are longer
+	 * than the specified width are split in the middle. Doesn't allocate anything.
 	 * HorizontalAlignment works as usual, but VerticalAlignment takes into account the height of
 	 * the whole "block".
 	 * @param x the x-coordinate
@@ -400,7 +575,7 @@ public class FontRenderer {
 	 * @param width the maximum width of the string block
 	 * @param string the string to render
 	 */
-	public void drawRowBreaking(double x, double y, double size, double width, String string) {
+	public void drawRowBreaking(double x, double y, double size, double width, CharSequence string) {
 		drawRowBreaking((float)x, (float)y, (float)size, (float)width, string);
 	}
 	
@@ -411,13 +586,23 @@ public class FontRenderer {
 	
 	/**
 	 * Starts the internal SpriteBatcher.
-	 * All text rendered in this batch will be of the specified color. If you want to render with multiple colors
-	 * you will need multiple batches.
+	 * Text rendered in this batch will be of the specified color until another color is set with "setColor()".
 	 * @param color the color of the rendered text
 	 */
 	public void begin(int color) {
-		GLES10.glColor4f(Color.red(color)/255f, Color.green(color)/255f, Color.blue(color)/255f, Color.alpha(color)/255f); //Sets color
-		fontBatcher.beginBatch(bitmapFont);
+		glyphCache.beginBatch();
+		fontBatcher.beginBatch();
+		fontBatcher.setColor(color);
+	}
+	
+	/**
+	 * Sets the color of the text drawn after this call. The color is stored per vertex, so text with different
+	 * colors is still rendered in the same draw call.
+	 * May only be called after "begin()" and before "render()".
+	 * @param color the color of the rendered text
+	 */
+	public void setColor(int color) {
+		fontBatcher.setColor(color);
 	}
 	
 	/**
@@ -428,26 +613,13 @@ public class FontRenderer {
 	 * @param size the size
 	 * @param string the string to render
 	 */
-	public void draw(float x, float y, float size, String string) {
+	public void draw(float x, float y, float size, CharSequence string) {
 		//Checks if there is anything to render.
 		if(size <= 0 || string.length() < 1) {
 			return;
 		}
 		
-		//Calculates scaling factor.
-		float pixelToInternal = (size / charRegionHeight); //charRegionHeight * pixelToInternal = size
-		
-		//Fixes alignment by calculating where to start rendering the string.
-		float xItr = x + getHorizontalAdjustment(string, size, pixelToInternal);
-		float yItr = y + getVerticalAdjustment(pixelToInternal);
-		
-		//Render the string.
-		int arrayLocation = -1;
-		for(int i = 0; i < string.length(); i++) {
-			arrayLocation = getArrayLocation(string.charAt(i));
-			fontBatcher.draw(xItr, yItr, charRegionWidth*pixelToInternal, charRegionHeight*pixelToInternal, charRegions[arrayLocation]);
-			xItr += (charWidths[arrayLocation] + spacing)*pixelToInternal;
-		}
+		drawRange(x + getHorizontalAdjustment(string, 0, string.length(), size), y, size, string, 0, string.length());
 	}
 	
 	/**
@@ -459,37 +631,42 @@ public class FontRenderer {
 	 * @param angle the angle
 	 * @param string the string to render
 	 */
-	public void draw(float x, float y, float size, float angle, String string) {
+	public void draw(float x, float y, float size, float angle, CharSequence string) {
 		//Checks if there is anything to render.
 		if(size <= 0 || string.length() < 1) {
 			return;
 		}
 		
-		//Calculates scaling factor.
-		float pixelToInternal = (size / charRegionHeight); //charRegionHeight * pixelToInternal = size
-		
-		//Fixes alignment
-		tempVector.set(getHorizontalAdjustment(string, size, pixelToInternal), getVerticalAdjustment(pixelToInternal));
-		tempVector.rotate(angle);
-		float xItr = x + (float)tempVector.getX();
-		float yItr = y + (float)tempVector.getY();
+		drawRange(x, y, size, angle, string, 0, string.length());
+	}
+	
+	/**
+	 * Draws the specified layout at the specified coordinates.
+	 * May only be called after "begin()" and before "render()".
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param layout the layout to render
+	 */
+	public void draw(float x, float y, TextLayout layout) {
+		float pixelToInternal = (layout.size / charRegionHeight); //charRegionHeight * pixelToInternal = size
+		float height = (charRegionHeight + 2*glyphMargin)*pixelToInternal;
+		float margin = glyphMargin*pixelToInternal;
 		
-		//Render the string.
-		int arrayLocation = -1;
-		for(int i = 0; i < string.length(); i++) {
-			arrayLocation = getArrayLocation(string.charAt(i));
-			fontBatcher.draw(xItr, yItr, charRegionWidth*pixelToInternal, charRegionHeight*pixelToInternal, angle, charRegions[arrayLocation]);
-			tempVector.makeUnit(angle).mult((charWidths[arrayLocation] + spacing)*pixelToInternal);
-			xItr += (float)tempVector.getX();
-			yItr += (float)tempVector.getY();
+		RenderStats.glyphs(layout.charAmount);
+		TextureRegion region = null;
+		float width = 0;
+		for(int i = 0; i < layout.charAmount; i++) {
+			region = glyphCache.getRegion(getGlyph(layout.chars[i]));
+			width = region.width*pixelToInternal;
+			fontBatcher.draw(x + layout.xOffsets[i] - margin + width/2, y + layout.yOffsets[i], width, height, region);
 		}
 	}
 	
 	/**
 	 * Draws the specified string at the specified coordinates with the specified size. The string
 	 * will be split up into substrings where each substring is a row and doesn't exceed the width
-	 * of the specified width. Strings will only be split at "empty space", so if you have a word
-	 * that is longer than the specified width the behavior of this method is undefined. 
+	 * of the specified width. Strings are split at "empty space" and '\n', words that are longer
+	 * than the specified width are split in the middle. Doesn't allocate anything.
 	 * HorizontalAlignment works as usual, but VerticalAlignment takes into account the height of
 	 * the whole "block".
 	 * @param x the x-coordinate
@@ -498,8 +675,7 @@ public class FontRenderer {
 	 * @param width the maximum width of the string block
 	 * @param string the string to render
 	 */
-	@SuppressWarnings("boxing") //TODO: Petor am cry.
-	public void drawRowBreaking(float x, float y, float size, float width, String string) {
+	public void drawRowBreaking(float x, float y, float size, float width, CharSequence string) {
 		//Checks if there is anything to render.
 		if(size <= 0 || string.length() < 1) {
 			return;
@@ -510,60 +686,165 @@ public class FontRenderer {
 			return;
 		}
 		
-		//Deletes and appends string to temporary StringBuilder.
-		tempStrBuilder.delete(0, tempStrBuilder.length());
-		tempStrBuilder.append(string).append(" "); //Hack to make sure there is an index at the end of the string.
-		
-		//Creates substrings for each row
-		List<Integer> spaceIndices = getSpaceIndicies(tempStrBuilder.toString()); //Gets index for each space in string
-		List<String> subStrings = new ArrayList<String>();
-		int startIndex = 0;
-		int lastIndex = 0;
-		String str = null;
-		String lastStr = null;
-		for(Integer currentIndex : spaceIndices) {
-			str = tempStrBuilder.substring(startIndex, currentIndex);
-			if(renderedStringWidth(str, size) >= width) {
-				subStrings.add(lastStr);
-				startIndex = lastIndex + 1; //+1 so it doesn't include "space" first on next line.
-			}
-			lastIndex = currentIndex;
-			lastStr = str;
-		}
-		subStrings.add(tempStrBuilder.substring(startIndex));
-		
-		//Calculates yPos for vertical alignment.
-		float yPos;
-		switch(verticalAlignment) {
-			case TOP:
-				yPos = y;
-				break;	
-			case CENTER:
-				yPos = y + (subStrings.size()*size)/2;
-				break;
-			case BOTTOM:
-				yPos = y + (subStrings.size()*size);
-				break;
-			default:
-				throw new AssertionError(); //Should never happen.
-		}
-		
-		//Draws each substring on the correct yPos.
-		for(String subStr : subStrings) {
-			draw(x, yPos, size, subStr);
-			yPos -= size;
-		}
+		drawRowBreakingRange(x, y, size, width, string, 0, string.length());
+	}
+	
+	/**
+	 * Draws the specified characters at the specified coordinates with the specified size.
+	 * May only be called after "begin()" and before "render()".
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param size the size
+	 * @param chars the array containing the characters to render
+	 * @param offset the index of the first character
+	 * @param length the amount of characters
+	 */
+	public void draw(float x, float y, float size, char[] chars, int offset, int length) {
+		draw(x, y, size, tempCharArray.set(chars, offset, length));
+	}
+	
+	/**
+	 * Draws the specified characters at the specified coordinates with the specified size and angle.
+	 * May only be called after "begin()" and before "render()".
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param size the size
+	 * @param angle the angle
+	 * @param chars the array containing the characters to render
+	 * @param offset the index of the first character
+	 * @param length the amount of characters
+	 */
+	public void draw(float x, float y, float size, float angle, char[] chars, int offset, int length) {
+		draw(x, y, size, angle, tempCharArray.set(chars, offset, length));
+	}
+	
+	/**
+	 * Draws the specified characters at the specified coordinates with the specified size, split
+	 * into rows like "drawRowBreaking()".
+	 * May only be called after "begin()" and before "render()".
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param size the size
+	 * @param width the maximum width of the string block
+	 * @param chars the array containing the characters to render
+	 * @param offset the index of the first character
+	 * @param length the amount of characters
+	 */
+	public void drawRowBreaking(float x, float y, float size, float width, char[] chars, int offset, int length) {
+		drawRowBreaking(x, y, size, width, tempCharArray.set(chars, offset, length));
+	}
+	
+	/**
+	 * Makes a complete rendering call with the specified parameters.
+	 * Calls the internal SpriteBatchers "begin()" and "renderBatch()" methods, so this method must not be
+	 * called while another SpriteBatcher is active (including this FontRenderer's internal one).
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 * @param size the size
+	 * @param color the color to render
+	 * @param chars the array containing the characters to render
+	 * @param offset the index of the first character
+	 * @param length the amount of characters
+	 */
+	public void completeDraw(double x, double y, double size, int color, char[] chars, int offset, int length) {
+		begin(color);
+		draw((float)x, (float)y, (float)size, chars, offset, length);
+		render();
 	}
 	
 	/**
 	 * Renders the batched strings.
 	 * Also restores the default color (ARGB:1,1,1,1) with "glColor4f()".
+	 * Distance field text is rendered with blending disabled and GL_REPLACE as texture environment
+	 * mode, both are restored afterwards.
 	 * This method may only be called after "begin()" and at least one "draw()" method has been called.
 	 * After it has been called the previous condition must be re-fulfilled before it may be called again.
 	 */
 	public void render() {
-		fontBatcher.renderBatch();
-		GLES10.glColor4f(1f, 1f, 1f, 1f); //Restores default color (ARGB: 255, 255, 255, 255).
+		FrameProfiler.begin(FrameProfiler.TEXT);
+		if(glyphMargin > 0) {
+			//Distance fields are 0.5 at the outline, the alpha test cuts them off there. With
+			//GL_REPLACE the alpha is the field alone (the color still comes from the text color),
+			//so the tint alpha can't move the outline. Blending is disabled, otherwise the field
+			//would also be used as opacity and the text would fade out towards the outline.
+			boolean blend = GLState.isEnabled(GLES10.GL_BLEND);
+			GLState.disable(GLES10.GL_BLEND);
+			GLState.texEnvMode(GLES10.GL_REPLACE);
+			GLState.enable(GLES10.GL_ALPHA_TEST);
+			GLState.alphaFunc(GLES10.GL_GREATER, 0.5f);
+			fontBatcher.renderBatch();
+			GLState.disable(GLES10.GL_ALPHA_TEST);
+			GLState.texEnvMode(GLES10.GL_MODULATE);
+			if(blend) {
+				GLState.enable(GLES10.GL_BLEND);
+			}
+		} else {
+			fontBatcher.renderBatch();
+		}
+		GLState.color(1f, 1f, 1f, 1f); //Restores default color (ARGB: 255, 255, 255, 255).
+		FrameProfiler.end(FrameProfiler.TEXT);
+	}
+	
+	/*
+	 * Public methods - Text layouts
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	/**
+	 * Creates a single line TextLayout of the specified string with the specified size and the
+	 * current alignment. Drawing it gives the same result as "draw()" with the same parameters.
+	 * @param string the string
+	 * @param size the size
+	 * @return a new TextLayout
+	 */
+	public TextLayout createLayout(String string, double size) {
+		return buildLayout(string, (float)size, Float.POSITIVE_INFINITY, false);
+	}
+	
+	/**
+	 * Creates a TextLayout of the specified string broken into rows that don't exceed the
+	 * specified width, with the specified size and the current alignment. Drawing it gives the
+	 * same result as "drawRowBreaking()" with the same parameters.
+	 * @param string the string
+	 * @param size the size
+	 * @param width the maximum width of the string block
+	 * @return a new TextLayout
+	 */
+	public TextLayout createLayout(String string, double size, double width) {
+		return buildLayout(string, (float)size, (float)width, true);
+	}
+	
+	/**
+	 * Returns a single line TextLayout of the specified string, see "createLayout()". The layout
+	 * is taken from the layout cache if it's there, otherwise it's created and added to the cache.
+	 * @param string the string
+	 * @param size the size
+	 * @return the TextLayout
+	 */
+	public TextLayout getLayout(String string, double size) {
+		return getCachedLayout(string, (float)size, Float.POSITIVE_INFINITY, false);
+	}
+	
+	/**
+	 * Returns a TextLayout of the specified string broken into rows, see "createLayout()". The
+	 * layout is taken from the layout cache if it's there, otherwise it's created and added to the
+	 * cache.
+	 * @param string the string
+	 * @param size the size
+	 * @param width the maximum width of the string block
+	 * @return the TextLayout
+	 */
+	public TextLayout getLayout(String string, double size, double width) {
+		return getCachedLayout(string, (float)size, (float)width, true);
+	}
+	
+	/**
+	 * Removes all TextLayouts from the layout cache.
+	 */
+	public void clearLayoutCache() {
+		if(layoutCache != null) {
+			layoutCache.clear();
+		}
 	}
 	
 	/*
@@ -591,18 +872,21 @@ public class FontRenderer {
 	 * Reloads the FontRenderer.
 	 */
 	public void reload() {
-		load();
+		prepare();
+		upload();
+		fontBatcher.reload();
 	}
 	
 	/**
-	 * Disposes of the texture used for the generated bitmap font.
+	 * Disposes of the textures used for the generated bitmap font and the internal SpriteBatcher.
 	 */
 	public void dispose() {
-		bitmapFont.dispose();
+		glyphCache.dispose();
+		fontBatcher.dispose();
 	}
 	
 	/**
-	 * Draws the bitmap font to the specified coordinates at the specified size.
+	 * Draws the first page of the bitmap font to the specified coordinates at the specified size.
 	 * Calls the internal SpriteBatchers "begin()" and "renderBatch()" methods, so this method must not be
 	 * called while another SpriteBatcher is active (including this FontRenderer's internal one).
 	 * @param x the x-coordinate
@@ -611,27 +895,33 @@ public class FontRenderer {
 	 * @param height the height
 	 */
 	public void drawBitmapTexture(double x, double y, double width, double height) {
-		fontBatcher.beginBatch(bitmapFont);
+		fontBatcher.beginBatch(textureRegion.texture);
 		fontBatcher.draw(x, y, width, height, textureRegion);
 		fontBatcher.renderBatch();
 	}
 	
 	/**
 	 * Returns the width of the specified string rendered at the specified size.
+	 * May be called from any thread, for example the update thread of a ThreadedGLController.
 	 * @param string the string.
 	 * @param size the render size.
 	 * @return the width of the string rendered
 	 */
-	public double renderedStringWidth(String string, double size) {
-		double pixelToInternal = size / charRegionHeight; //charRegionHeight * pixelToInternal = size
-		
-		double stringWidth = 0;
-		for(int i = 0; i < string.length(); i++) {
-			stringWidth += (charWidths[getArrayLocation(string.charAt(i))] + spacing)*pixelToInternal;
-		}
-		stringWidth -= spacing*pixelToInternal; //Removes spacing width from last character.
-		
-		return stringWidth;
+	public double renderedStringWidth(CharSequence string, double size) {
+		return getRangeWidth(string, 0, string.length(), size);
+	}
+	
+	/**
+	 * Returns the width of the specified characters rendered at the specified size.
+	 * Unlike the CharSequence variant this may only be called from the OpenGL thread.
+	 * @param chars the array containing the characters
+	 * @param offset the index of the first character
+	 * @param length the amount of characters
+	 * @param size the render size.
+	 * @return the width of the characters rendered
+	 */
+	public double renderedStringWidth(char[] chars, int offset, int length, double size) {
+		return renderedStringWidth(tempCharArray.set(chars, offset, length), size);
 	}
 	
 	/**
@@ -647,20 +937,122 @@ public class FontRenderer {
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 */
 	
-	private float getHorizontalAdjustment(String string, float size, float pixelToInternal) {
-		float width = charRegionWidth * pixelToInternal;
+	private void drawRange(float xLeft, float y, float size, CharSequence text, int start, int end) {
+		//Calculates scaling factor.
+		float pixelToInternal = (size / charRegionHeight); //charRegionHeight * pixelToInternal = size
+		float height = (charRegionHeight + 2*glyphMargin)*pixelToInternal;
+		float margin = glyphMargin*pixelToInternal;
+		
+		float xItr = xLeft;
+		float yItr = y + getVerticalAdjustment(pixelToInternal);
+		
+		//Render the string, xItr is the left edge of the current glyph.
+		RenderStats.glyphs(end - start);
+		int glyph = -1;
+		TextureRegion region = null;
+		float width = 0;
+		for(int i = start; i < end; i++) {
+			glyph = getGlyph(text.charAt(i));
+			region = glyphCache.getRegion(glyph);
+			width = region.width*pixelToInternal;
+			fontBatcher.draw(xItr - margin + width/2, yItr, width, height, region);
+			xItr += (glyphCache.getAdvance(glyph) + spacing)*pixelToInternal;
+		}
+	}
+	
+	private void drawRange(float x, float y, float size, float angle, CharSequence text, int start, int end) {
+		//Calculates scaling factor.
+		float pixelToInternal = (size / charRegionHeight); //charRegionHeight * pixelToInternal = size
+		float height = (charRegionHeight + 2*glyphMargin)*pixelToInternal;
+		float margin = glyphMargin*pixelToInternal;
+		
+		//Fixes alignment
+		tempVector.set(getHorizontalAdjustment(text, start, end, size), getVerticalAdjustment(pixelToInternal));
+		tempVector.rotate(angle);
+		float xStart = x + (float)tempVector.getX();
+		float yStart = y + (float)tempVector.getY();
+		tempVector.makeUnit(angle);
+		float xDir = (float)tempVector.getX();
+		float yDir = (float)tempVector.getY();
+		
+		//Render the string, penItr is the distance from the start to the left edge of the current glyph.
+		RenderStats.glyphs(end - start);
+		int glyph = -1;
+		TextureRegion region = null;
+		float width = 0;
+		float penItr = 0;
+		for(int i = start; i < end; i++) {
+			glyph = getGlyph(text.charAt(i));
+			region = glyphCache.getRegion(glyph);
+			width = region.width*pixelToInternal;
+			fontBatcher.draw(xStart + xDir*(penItr - margin + width/2), yStart + yDir*(penItr - margin + width/2), width, height, angle, region);
+			penItr += (glyphCache.getAdvance(glyph) + spacing)*pixelToInternal;
+		}
+	}
+	
+	private void drawRowBreakingRange(float x, float y, float size, float width, CharSequence text, int start, int end) {
+		float pixelToInternal = (size / charRegionHeight); //charRegionHeight * pixelToInternal = size
+		
+		//Breaks the text into rows, widths are measured in pixels on the bitmap font.
+		int lineAmount = lineBreaker.breakLines(text, start, end, width / pixelToInternal, spacing, charMeasurer);
+		
+		//Draws each row on the correct yPos.
+		float yPos = y + getBlockAdjustment(lineAmount, size);
+		for(int line = 0; line < lineAmount; line++) {
+			float lineWidth = lineBreaker.getLineWidth(line)*pixelToInternal;
+			drawRange(x + getHorizontalAdjustment(lineWidth), yPos, size, text, lineBreaker.getLineStart(line), lineBreaker.getLineEnd(line));
+			yPos -= size;
+		}
+	}
+	
+	private double getRangeWidth(CharSequence text, int start, int end, double size) {
+		double pixelToInternal = size / charRegionHeight; //charRegionHeight * pixelToInternal = size
+		
+		double stringWidth = 0;
+		for(int i = start; i < end; i++) {
+			stringWidth += (getCharWidth(text.charAt(i)) + spacing)*pixelToInternal;
+		}
+		stringWidth -= spacing*pixelToInternal; //Removes spacing width from last character.
+		
+		return stringWidth;
+	}
+	
+	private float getHorizontalAdjustment(CharSequence text, int start, int end, float size) {
+		if(horizontalAlignment == HorizontalAlignment.LEFT) {
+			return 0; //Avoids measuring the text.
+		}
+		return getHorizontalAdjustment((float)getRangeWidth(text, start, end, size));
+	}
+	
+	private float getHorizontalAdjustment(float stringWidth) {
 		switch(this.horizontalAlignment) {
 			case LEFT:
-				return width/2;
+				return 0;
 			case RIGHT:
-				return width/2 - (float)renderedStringWidth(string, size);
+				return -stringWidth;
 			case CENTER:
-				return width/2 - (float)(renderedStringWidth(string, size)/2);
+				return -stringWidth/2;
 			default:
 				throw new AssertionError();
 		}
 	}
 	
+	/*
+	 * Rows take the height of the whole block into account, returns the y-offset of the first row.
+	 */
+	private float getBlockAdjustment(int lineAmount, float size) {
+		switch(verticalAlignment) {
+			case TOP:
+				return 0;
+			case CENTER:
+				return (lineAmount*size)/2;
+			case BOTTOM:
+				return lineAmount*size;
+			default:
+				throw new AssertionError(); //Should never happen.
+		}
+	}
+	
 	private float getVerticalAdjustment(float pixelToInternal) {
 		float height = charRegionHeight*pixelToInternal;
 		switch(this.verticalAlignment) {
@@ -675,101 +1067,159 @@ public class FontRenderer {
 		}
 	}
 	
-	private static int getArrayLocation(char c) {
-		if(c < FIRST_CHAR || c > LAST_CHAR) {
-			return UNKNOWN_CHAR_INDEX;
+	private int getGlyph(char c) {
+		if(c < FIRST_CHAR || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+			return unknownGlyph;
 		}
 		
-		return c - FIRST_CHAR;
+		int glyph = glyphCache.getGlyph(c);
+		return glyph != GlyphCache.NO_GLYPH ? glyph : unknownGlyph;
+	}
+	
+	private float getCharWidth(char c) {
+		if(c < FIRST_CHAR || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+			return glyphCache.getAdvance(UNKNOWN_CHAR);
+		}
+		
+		return glyphCache.getAdvance(c);
 	}
 	
 	/*
-	 * Private methods - Creation methods
+	 * Private methods - Text layouts
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 */
 	
-	private void load() {
-		Paint paint = getPaintFromTypeface();
-		getCharacterWidths(paint);
-		calculateVariousSizes(paint);
-		generateTexture(paint);
-		getTextureRegions();
+	private TextLayout getCachedLayout(String string, float size, float width, boolean rowBreaking) {
+		if(layoutCache == null) {
+			return buildLayout(string, size, width, rowBreaking);
+		}
+		
+		tempLayoutKey.set(string, size, width, horizontalAlignment, verticalAlignment);
+		TextLayout layout = layoutCache.get(tempLayoutKey);
+		if(layout == null) {
+			layout = buildLayout(string, size, width, rowBreaking);
+			LayoutKey key = new LayoutKey();
+			key.set(string, size, width, horizontalAlignment, verticalAlignment);
+			layoutCache.put(key, layout);
+		}
+		return layout;
 	}
 	
-	private void getTextureRegions() {		
-		float x = 0;
-		float y = 0;
+	private TextLayout buildLayout(String string, float size, float width, boolean rowBreaking) {
+		float pixelToInternal = (size / charRegionHeight); //charRegionHeight * pixelToInternal = size
+		float spacingWidth = spacing*pixelToInternal;
+		int length = string.length();
+		
+		//advanceSums[i] is the width of the first i characters, including the spacing after each.
+		float[] advanceSums = new float[length + 1];
+		for(int i = 0; i < length; i++) {
+			advanceSums[i + 1] = advanceSums[i] + getCharWidth(string.charAt(i))*pixelToInternal + spacingWidth;
+		}
+		
+		//Breaks the string into lines the same way as drawRowBreaking().
+		int lineAmount = 1;
+		int charAmount = length;
+		if(rowBreaking) {
+			lineAmount = lineBreaker.breakLines(string, 0, length, width / pixelToInternal, spacing, charMeasurer);
+			charAmount = 0;
+			for(int line = 0; line < lineAmount; line++) {
+				charAmount += lineBreaker.getLineEnd(line) - lineBreaker.getLineStart(line);
+			}
+		}
+		
+		//Calculates yPos of the first line.
+		float yPos = getVerticalAdjustment(pixelToInternal);
+		if(rowBreaking) {
+			yPos += getBlockAdjustment(lineAmount, size);
+		}
 		
-		for(int arrayLocation = 0; arrayLocation < CHARACTER_COUNT; arrayLocation++) {
-			charRegions[arrayLocation] = new TextureRegion(bitmapFont, x + xPadding, y + yPadding, charRegionWidth, charRegionHeight);
+		//Positions the characters of each line.
+		char[] chars = new char[charAmount];
+		float[] xOffsets = new float[charAmount];
+		float[] yOffsets = new float[charAmount];
+		float left = Float.POSITIVE_INFINITY;
+		float right = Float.NEGATIVE_INFINITY;
+		float top = yPos + size/2;
+		int charIndex = 0;
+		for(int line = 0; line < lineAmount; line++) {
+			int start = rowBreaking ? lineBreaker.getLineStart(line) : 0;
+			int end = rowBreaking ? lineBreaker.getLineEnd(line) : length;
+			float lineWidth = end > start ? advanceSums[end] - advanceSums[start] - spacingWidth : 0;
+			float xPos = getHorizontalAdjustment(lineWidth);
+			left = Math.min(left, xPos);
+			right = Math.max(right, xPos + lineWidth);
 			
-			x += cellWidth;
-			if((x + cellWidth) > textureSize) {
-				x = 0;
-				y += cellHeight;
+			for(int i = start; i < end; i++) {
+				chars[charIndex] = string.charAt(i);
+				xOffsets[charIndex] = xPos + advanceSums[i] - advanceSums[start];
+				yOffsets[charIndex] = yPos;
+				charIndex++;
 			}
+			yPos -= size;
 		}
+		float bottom = yPos + size/2;
+		
+		return new TextLayout(string, size, chars, xOffsets, yOffsets, charIndex, lineAmount, left, right, bottom, top);
 	}
 	
-	private void generateTexture(Paint paint) {
-		Bitmap bitmap = Bitmap.createBitmap(textureSize, textureSize, Bitmap.Config.ALPHA_8);
-		Log.d("FontRenderer", "Created new Bitmap with size: " + textureSize + "x" + textureSize);
-		Canvas canvas = new Canvas(bitmap);
-		bitmap.eraseColor(0x00000000); //Transparent Background
-		
-		drawCharsToBitmap(canvas, paint);		
+	/*
+	 * Private methods - Creation methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	//Creates the GlyphCache and rasterizes the preloaded characters, makes no OpenGL calls.
+	private void prepare() {
+		Paint paint = getPaintFromTypeface();
+		calculateVariousSizes(paint);
 		
-		this.bitmapFont = new BitmapTexture(bitmap);
-		textureRegion = new TextureRegion(bitmapFont, 0, 0, bitmapFont.getWidth(), bitmapFont.getHeight());
-	}
-
-	private void drawCharsToBitmap(Canvas canvas, Paint paint) {
 		float fontDescent = (float)Math.ceil( Math.abs(paint.getFontMetrics().descent) ); //Length between fonts baseline and "descending" parts of font.
+		float baseline = (charRegionHeight - 1) - fontDescent;
+		glyphCache = new GlyphCache(paint, charRegionHeight, xPadding, yPadding, baseline, textureSize, maxPages, glyphMargin);
+		Log.d("FontRenderer", "Created new GlyphCache with page size: " + textureSize + "x" + textureSize);
 		
-		//Calculates position of first char.
-		float x = xPadding; 
-		float y = (cellHeight - 1) - fontDescent - yPadding;
-		
-		//Loops through all chars and draws them to bitmap.
-		char[] charArray = new char[1];
+		//Preloads the common characters and pins them so they are never evicted.
 		for(char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
-			charArray[0] = c;
-			canvas.drawText(charArray, 0, 1, x, y, paint); //Draws char to array at designated position.
-			
-			//Calculates next position.
-			x += cellWidth;
-			if((x + cellWidth - xPadding) > textureSize) {
-				x = xPadding;
-				y += cellHeight;
+			if(glyphCache.getGlyph(c) == GlyphCache.NO_GLYPH) {
+				throw new RuntimeException("Couldn't fit the preloaded characters in the bitmap font.");
 			}
 		}
+		glyphCache.pin();
 		
-		//Draws the Unknown character last.
-		charArray[0] = UNKNOWN_CHAR;
-		canvas.drawText(charArray, 0, 1, x, y, paint);
+		unknownGlyph = glyphCache.getGlyph(UNKNOWN_CHAR);
+	}
+	
+	//Creates the textures of the GlyphCache, must be run on the OpenGL thread.
+	private void upload() {
+		glyphCache.upload();
+		Texture firstPage = glyphCache.getPage(0);
+		textureRegion = new TextureRegion(firstPage, 0, 0, firstPage.getWidth(), firstPage.getHeight());
 	}
 	
 	private void calculateVariousSizes(Paint paint) {
-		//Calculate charRegionWidth and cellWidth
+		//Calculate cellWidth, glyphs are stored in regions with a width that is a multiple of 4.
+		char[] charArray = new char[1];
+		float[] widthArray = new float[1];
 		float maxFontWidth = 0;
-		for(float width : charWidths) {
-			if(width > maxFontWidth) {
-				maxFontWidth = width;
+		for(char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+			charArray[0] = c;
+			paint.getTextWidths(charArray, 0, 1, widthArray);
+			if(widthArray[0] > maxFontWidth) {
+				maxFontWidth = widthArray[0];
 			}
 		}
-		this.charRegionWidth = (int)Math.ceil(maxFontWidth);
-		this.cellWidth = charRegionWidth + (2*xPadding);
+		int charRegionWidth = ((int)Math.ceil(maxFontWidth) + 2*glyphMargin + 3) & ~3;
+		int cellWidth = charRegionWidth + (2*xPadding);
 		
 		//Calculate charRegionHeight and cellHeight
 		Paint.FontMetrics fontMetrics = paint.getFontMetrics();
 		float maxFontHeight = (float) Math.ceil( Math.abs(fontMetrics.bottom) + Math.abs(fontMetrics.top) );
 		this.charRegionHeight = (int)Math.ceil(maxFontHeight);
-		this.cellHeight = charRegionHeight + (2*yPadding);
+		this.cellHeight = charRegionHeight + (2*glyphMargin) + (2*yPadding);
 		
 		//Calculate cellSize
 		int cellSize = cellWidth > cellHeight ? cellWidth : cellHeight;
 		
-		//Calculate textureSize (loops through various texture sizes until it finds one where all specified characters fit.
+		//Calculate textureSize (loops through various texture sizes until it finds one where all preloaded characters fit.
 		for(int textureSize = 128; textureSize <= 8192; textureSize *= 2) {
 			int cellsPerRowOrCol = textureSize / cellSize;
 			if(cellsPerRowOrCol*cellsPerRowOrCol >= CHARACTER_COUNT) {
@@ -783,25 +1233,6 @@ public class FontRenderer {
 		}
 	}
 
-	private void getCharacterWidths(Paint paint) {
-		char[] charArray = new char[1];
-		float[] widthArray = new float[1];
-		int arrayLocation = 0;
-		
-		for(char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
-			charArray[0] = c;
-			paint.getTextWidths(charArray, 0, 1, widthArray);
-			charWidths[arrayLocation] = widthArray[0];
-			arrayLocation++;
-		}
-		
-		//Gets unknown char width
-		char c = UNKNOWN_CHAR;
-		charArray[0] = c;
-		paint.getTextWidths(charArray, 0, 1, widthArray);
-		charWidths[arrayLocation] = widthArray[0];
-	}
-
 	private Paint getPaintFromTypeface() {
 		Paint paint = new Paint();
 		paint.setAntiAlias(true);
@@ -811,14 +1242,86 @@ public class FontRenderer {
 		return paint;
 	}
 	
-	@SuppressWarnings("boxing") //TODO: Petor am cry.
-	private static List<Integer> getSpaceIndicies(String string) {
-		List<Integer> indices = new ArrayList<Integer>();
-		for(int i = 0; i < string.length(); i++) {
-			if(string.charAt(i) == ' ') {
-				indices.add(i);
+	/*
+	 * Key used in the layout cache, mutable so lookups don't have to allocate a new key.
+	 */
+	private static final class LayoutKey {
+		private String string;
+		private float size, width;
+		private HorizontalAlignment horizontalAlignment;
+		private VerticalAlignment verticalAlignment;
+		
+		public void set(String string, float size, float width, HorizontalAlignment horizontalAlignment, VerticalAlignment verticalAlignment) {
+			this.string = string;
+			this.size = size;
+			this.width = width;
+			this.horizontalAlignment = horizontalAlignment;
+			this.verticalAlignment = verticalAlignment;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof LayoutKey)) {
+				return false;
+			}
+			LayoutKey other = (LayoutKey)obj;
+			return string.equals(other.string)
+					&& Float.floatToIntBits(size) == Float.floatToIntBits(other.size)
+					&& Float.floatToIntBits(width) == Float.floatToIntBits(other.width)
+					&& horizontalAlignment == other.horizontalAlignment
+					&& verticalAlignment == other.verticalAlignment;
+		}
+		
+		@Override
+		public int hashCode() {
+			int hash = string.hashCode();
+			hash = 31*hash + Float.floatToIntBits(size);
+			hash = 31*hash + Float.floatToIntBits(width);
+			hash = 31*hash + horizontalAlignment.hashCode();
+			hash = 31*hash + verticalAlignment.hashCode();
+			return hash;
+		}
+	}
+	
+	/*
+	 * A reusable CharSequence view of a range of a char[], so the char[] variants of the draw
+	 * methods don't have to allocate anything.
+	 */
+	private static final class CharArraySequence implements CharSequence {
+		private char[] chars;
+		private int offset, length;
+		
+		public CharArraySequence set(char[] chars, int offset, int length) {
+			if(offset < 0 || length < 0 || offset + length > chars.length) {
+				throw new IllegalArgumentException("Range [" + offset + ", " + (offset + length) + ") is out of bounds.");
 			}
+			this.chars = chars;
+			this.offset = offset;
+			this.length = length;
+			return this;
+		}
+		
+		@Override
+		public int length() {
+			return length;
+		}
+		
+		@Override
+		public char charAt(int index) {
+			return chars[offset + index];
+		}
+		
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(chars, offset + start, end - start);
+		}
+		
+		@Override
+		public String toString() {
+			return new String(chars, offset, length);
 		}
-		return indices;
 	}
 }
@@ -0,0 +1,121 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * Caps the frame rate by waiting before each frame, used by GLActivity.
+ * 
+ * Frames can only be shown at a multiple of the vsync interval, so the frame rate cap is rounded
+ * to a whole amount of vsync intervals per frame (a cap of 30 on a 60 Hz display gives 2
+ * intervals). A cap at or above the refresh rate does nothing, vsync already limits the frame
+ * rate to that.
+ * 
+ * The buffer swap usually returns at once (the buffer is only queued), so how long a frame takes
+ * to render can't be relied on to line frames up with vsync. Instead the start of each frame is
+ * scheduled on a fixed grid: a frame starts one frame time after the scheduled start of the
+ * previous one, no matter how long rendering took. Waiting is done with Thread.sleep(), which may
+ * oversleep, so the thread wakes up SLEEP_MARGIN_NANOS early to not miss the vsync. If a frame
+ * starts more than one frame time late (a long frame, or the first frame after a pause or a change
+ * of cap) the grid is restarted from the current time instead of rendering frames back to back
+ * to catch up.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-15
+ * @version 3
+ */
+public class FramePacer {
+	
+	/**
+	 * How long before the scheduled start of a frame the thread wakes up.
+	 */
+	public static final long SLEEP_MARGIN_NANOS = 1000000;
+	
+	private final long vsyncNanos;
+	private final float refreshRate;
+	private int frameRateCap = 0;
+	private long frameNanos = 0; //0 if not capped.
+	private long lastFrameStart;
+	private boolean synced = false; //Whether lastFrameStart is valid.
+	
+	/**
+	 * Creates a new FramePacer for a display with the specified refresh rate. Not capped initially.
+	 * @param refreshRate the refresh rate of the display in Hz
+	 * @throws IllegalArgumentException if refreshRate <= 0
+	 */
+	public FramePacer(float refreshRate) {
+		if(refreshRate <= 0) {
+			throw new IllegalArgumentException("Refresh rate must be > 0");
+		}
+		this.refreshRate = refreshRate;
+		this.vsyncNanos = (long)(1000000000.0 / refreshRate);
+	}
+	
+	/**
+	 * Sets the frame rate cap, 0 disables it.
+	 * @param frameRateCap the maximum amount of frames per second, or 0
+	 * @throws IllegalArgumentException if frameRateCap < 0
+	 */
+	public void setFrameRateCap(int frameRateCap) {
+		if(frameRateCap < 0) {
+			throw new IllegalArgumentException("Frame rate cap must be >= 0");
+		}
+		this.frameRateCap = frameRateCap;
+		synced = false;
+		if(frameRateCap == 0) {
+			frameNanos = 0;
+			return;
+		}
+		int vsyncsPerFrame = Math.round(refreshRate / frameRateCap);
+		frameNanos = vsyncsPerFrame <= 1 ? 0 : vsyncsPerFrame * vsyncNanos;
+	}
+	
+	/**
+	 * Returns the frame rate cap, 0 if disabled.
+	 * @return the frame rate cap
+	 */
+	public int getFrameRateCap() {
+		return frameRateCap;
+	}
+	
+	/**
+	 * Returns the time between frames the cap results in, 0 if frames aren't delayed.
+	 * @return time between frames in nanoseconds
+	 */
+	public long getFrameNanos() {
+		return frameNanos;
+	}
+	
+	/**
+	 * Returns the time between two vsyncs of the display.
+	 * @return vsync interval in nanoseconds
+	 */
+	public long getVsyncNanos() {
+		return vsyncNanos;
+	}
+	
+	/**
+	 * Waits until the next frame should start, one frame time after the scheduled start of the
+	 * previous frame. Should be called first thing each frame.
+	 */
+	public void waitForNextFrame() {
+		if(frameNanos == 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		long frameStart = lastFrameStart + frameNanos;
+		if(!synced || now - frameStart > frameNanos) {
+			//More than one frame behind, restarts the grid instead of catching up.
+			lastFrameStart = now;
+			synced = true;
+			return;
+		}
+		
+		long sleepNanos = frameStart - SLEEP_MARGIN_NANOS - now;
+		if(sleepNanos > 0) {
+			try {
+				Thread.sleep(sleepNanos / 1000000, (int)(sleepNanos % 1000000));
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		lastFrameStart = frameStart; //The scheduled start, so oversleeping doesn't add up.
+	}
+}
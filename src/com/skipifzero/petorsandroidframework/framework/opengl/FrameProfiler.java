@@ -0,0 +1,404 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Lightweight profiler measuring how each frame is split between stages such as input, update,
+ * drawing and sprite submission.
+ * 
+ * How to use:
+ * Surround the code to measure with begin(stage) and end(stage). Stages may be nested, the
+ * begun stages are kept on a preallocated stack so no objects are allocated. The built in stages
+ * are already measured by the framework:
+ * FRAME - the whole onDrawFrame() in GLActivity.
+ * SWAP - the time from the end of one frame to the start of the next, i.e. buffer swap and vsync.
+ * INPUT - PooledTouchInput.update().
+ * UPDATE and DRAW - GLScreen.update() and GLScreen.draw().
+ * SUBMIT - SpriteBatcher submitting batched sprites to OpenGL.
+ * TEXT - FontRenderer.render().
+ * More stages can be added with registerStage().
+ * 
+ * The time spent in each stage is summed per frame, and averaged over windows of WINDOW_SIZE
+ * frames. The results can be drawn as an overlay with drawOverlay(). A trace of every begin/end
+ * pair can also be captured with startTrace() and written as Chrome trace-event JSON with
+ * writeTrace(), which can be opened in chrome://tracing.
+ * 
+ * May only be used from the OpenGL thread. Calls to begin() and end() from other threads (such as
+ * the update thread of a ThreadedGLController) are ignored.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-12
+ * @version 1
+ */
+public final class FrameProfiler {
+	
+	//Built in stages
+	public static final int FRAME = 0, SWAP = 1, INPUT = 2, UPDATE = 3, DRAW = 4, SUBMIT = 5, TEXT = 6;
+	
+	public static final int MAX_STAGES = 32;
+	public static final int MAX_DEPTH = 16;
+	public static final int WINDOW_SIZE = 60;
+	
+	private static final String[] stageNames = new String[MAX_STAGES];
+	private static int stageAmount = 0;
+	
+	static {
+		registerStage("frame");
+		registerStage("swap");
+		registerStage("input");
+		registerStage("update");
+		registerStage("draw");
+		registerStage("submit");
+		registerStage("text");
+	}
+	
+	private static boolean enabled = true, enabledNextFrame = true;
+	private static Thread frameThread = null; //The thread calling beginFrame(), i.e. the OpenGL thread.
+	
+	//Stack of begun stages.
+	private static final int[] stackStages = new int[MAX_DEPTH];
+	private static final long[] stackStarts = new long[MAX_DEPTH];
+	private static int stackSize = 0;
+	
+	//Time spent in each stage in the current frame, and in the current and last finished window.
+	private static final long[] frameNanos = new long[MAX_STAGES];
+	private static final long[] windowSums = new long[MAX_STAGES], windowMaxes = new long[MAX_STAGES];
+	private static final long[] averageNanos = new long[MAX_STAGES], maxNanos = new long[MAX_STAGES];
+	private static final long[] lastFrameNanos = new long[MAX_STAGES];
+	private static int windowFrames = 0;
+	private static long lastFrameEnd = 0;
+	
+	//Trace capture
+	private static int[] traceStages;
+	private static long[] traceStarts, traceDurations;
+	private static int traceAmount = 0;
+	private static boolean tracing = false;
+	
+	private static final StringBuilder overlayBuilder = new StringBuilder(64);
+	
+	//Private to avoid instantiation.
+	private FrameProfiler() {
+		throw new AssertionError();
+	}
+	
+	/**
+	 * Registers a new stage.
+	 * @param name the name of the stage, used in the overlay and in traces
+	 * @return the id of the stage, used with begin() and end()
+	 * @throws IllegalArgumentException if name is null
+	 * @throws IllegalStateException if MAX_STAGES stages already are registered
+	 */
+	public static int registerStage(String name) {
+		if(name == null) {
+			throw new IllegalArgumentException("Name is null, not allowed.");
+		}
+		if(stageAmount == MAX_STAGES) {
+			throw new IllegalStateException("Can't register more than " + MAX_STAGES + " stages.");
+		}
+		stageNames[stageAmount] = name;
+		return stageAmount++;
+	}
+	
+	/**
+	 * Enables or disables the profiler. Takes effect at the start of the next frame.
+	 * @param enabled whether the profiler should be enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		enabledNextFrame = enabled;
+	}
+	
+	/**
+	 * Returns whether the profiler is enabled in the current frame.
+	 * @return whether the profiler is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Begins measuring the specified stage.
+	 * @param stage the stage
+	 * @throws IllegalStateException if MAX_DEPTH stages already are begun
+	 */
+	public static void begin(int stage) {
+		if(!enabled || (frameThread != null && Thread.currentThread() != frameThread)) {
+			return;
+		}
+		if(stackSize == MAX_DEPTH) {
+			throw new IllegalStateException("Can't begin more than " + MAX_DEPTH + " nested stages.");
+		}
+		stackStages[stackSize] = stage;
+		stackStarts[stackSize] = System.nanoTime();
+		stackSize++;
+	}
+	
+	/**
+	 * Ends measuring the specified stage, which must be the last begun stage.
+	 * @param stage the stage
+	 * @throws IllegalStateException if stage isn't the last begun stage
+	 */
+	public static void end(int stage) {
+		if(!enabled || (frameThread != null && Thread.currentThread() != frameThread)) {
+			return;
+		}
+		long now = System.nanoTime();
+		if(stackSize == 0 || stackStages[stackSize-1] != stage) {
+			throw new IllegalStateException("end() doesn't match the last begin().");
+		}
+		stackSize--;
+		addTime(stage, stackStarts[stackSize], now);
+	}
+	
+	/**
+	 * Starts a new frame, called by GLActivity at the start of onDrawFrame(). The time since the
+	 * last frame ended is counted as SWAP.
+	 */
+	public static void beginFrame() {
+		frameThread = Thread.currentThread();
+		enabled = enabledNextFrame;
+		if(!enabled) {
+			lastFrameEnd = 0;
+			return;
+		}
+		long now = System.nanoTime();
+		if(lastFrameEnd != 0) {
+			addTime(SWAP, lastFrameEnd, now);
+		}
+		stackSize = 0;
+		begin(FRAME);
+	}
+	
+	/**
+	 * Ends the current frame, called by GLActivity at the end of onDrawFrame().
+	 * @throws IllegalStateException if a stage begun during the frame wasn't ended
+	 */
+	public static void endFrame() {
+		if(!enabled) {
+			return;
+		}
+		if(stackSize > 1) {
+			int unended = stackStages[stackSize-1];
+			stackSize = 0;
+			throw new IllegalStateException("Stage \"" + stageNames[unended] + "\" was begun but never ended.");
+		}
+		end(FRAME);
+		
+		windowFrames++;
+		for(int i = 0; i < stageAmount; i++) {
+			lastFrameNanos[i] = frameNanos[i];
+			windowSums[i] += frameNanos[i];
+			if(frameNanos[i] > windowMaxes[i]) {
+				windowMaxes[i] = frameNanos[i];
+			}
+			frameNanos[i] = 0;
+			
+			if(windowFrames == WINDOW_SIZE) {
+				averageNanos[i] = windowSums[i] / WINDOW_SIZE;
+				maxNanos[i] = windowMaxes[i];
+				windowSums[i] = 0;
+				windowMaxes[i] = 0;
+			}
+		}
+		if(windowFrames == WINDOW_SIZE) {
+			windowFrames = 0;
+		}
+		lastFrameEnd = System.nanoTime();
+	}
+	
+	/**
+	 * Clears the stack and all measured times, but not a captured trace. Called by GLActivity when
+	 * the surface is created.
+	 */
+	public static void reset() {
+		stackSize = 0;
+		lastFrameEnd = 0;
+		windowFrames = 0;
+		for(int i = 0; i < MAX_STAGES; i++) {
+			frameNanos[i] = 0;
+			windowSums[i] = 0;
+			windowMaxes[i] = 0;
+			averageNanos[i] = 0;
+			maxNanos[i] = 0;
+			lastFrameNanos[i] = 0;
+		}
+	}
+	
+	/**
+	 * Returns the amount of registered stages. Stage ids go from 0 to this value - 1.
+	 * @return amount of registered stages
+	 */
+	public static int getStageAmount() {
+		return stageAmount;
+	}
+	
+	/**
+	 * Returns the name of the specified stage.
+	 * @param stage the stage
+	 * @return name of the stage
+	 */
+	public static String getStageName(int stage) {
+		return stageNames[stage];
+	}
+	
+	/**
+	 * Returns the time spent in the specified stage in the last frame.
+	 * @param stage the stage
+	 * @return time in nanoseconds
+	 */
+	public static long getLastFrameNanos(int stage) {
+		return lastFrameNanos[stage];
+	}
+	
+	/**
+	 * Returns the average time per frame spent in the specified stage in the last finished window.
+	 * @param stage the stage
+	 * @return time in nanoseconds
+	 */
+	public static long getAverageNanos(int stage) {
+		return averageNanos[stage];
+	}
+	
+	/**
+	 * Returns the maximum time per frame spent in the specified stage in the last finished window.
+	 * @param stage the stage
+	 * @return time in nanoseconds
+	 */
+	public static long getMaxNanos(int stage) {
+		return maxNanos[stage];
+	}
+	
+	/**
+	 * Draws one line per stage with its average and maximum time in milliseconds, starting at the
+	 * specified position and going downwards. May only be called between begin() and render() of
+	 * the FontRenderer. Only meant for debugging. The lines are built in a reused StringBuilder, so
+	 * nothing is allocated.
+	 * @param fontRenderer the FontRenderer to draw with
+	 * @param x the x-coordinate of the first line
+	 * @param y the y-coordinate of the first line
+	 * @param size the size of the text, also used as line height
+	 */
+	public static void drawOverlay(FontRenderer fontRenderer, float x, float y, float size) {
+		for(int i = 0; i < stageAmount; i++) {
+			overlayBuilder.setLength(0);
+			overlayBuilder.append(stageNames[i]).append(": ");
+			appendMillis(overlayBuilder, averageNanos[i]);
+			overlayBuilder.append(" ms (max ");
+			appendMillis(overlayBuilder, maxNanos[i]);
+			overlayBuilder.append(" ms)");
+			fontRenderer.draw(x, y - i*size, size, overlayBuilder);
+		}
+	}
+	
+	/**
+	 * Starts capturing a trace of every begin/end pair. The capture stops automatically when the
+	 * specified amount of events have been captured. Any previously captured trace is discarded.
+	 * @param maxEvents the maximum amount of events to capture
+	 * @throws IllegalArgumentException if maxEvents <= 0
+	 */
+	public static void startTrace(int maxEvents) {
+		if(maxEvents <= 0) {
+			throw new IllegalArgumentException("Max events must be > 0");
+		}
+		if(traceStages == null || traceStages.length != maxEvents) {
+			traceStages = new int[maxEvents];
+			traceStarts = new long[maxEvents];
+			traceDurations = new long[maxEvents];
+		}
+		traceAmount = 0;
+		tracing = true;
+	}
+	
+	/**
+	 * Stops capturing the trace. The captured events are kept until the next startTrace().
+	 */
+	public static void stopTrace() {
+		tracing = false;
+	}
+	
+	/**
+	 * Returns whether a trace is being captured.
+	 * @return whether a trace is being captured
+	 */
+	public static boolean isTracing() {
+		return tracing;
+	}
+	
+	/**
+	 * Returns the amount of captured trace events.
+	 * @return amount of captured trace events
+	 */
+	public static int getTraceEventAmount() {
+		return traceAmount;
+	}
+	
+	/**
+	 * Writes the captured trace to the specified file in the Chrome trace-event JSON format, as
+	 * complete ("X") events with timestamps in microseconds.
+	 * @param file the file to write to, overwritten if it exists
+	 * @throws RuntimeException if the file couldn't be written
+	 */
+	public static void writeTrace(File file) {
+		long origin = traceAmount > 0 ? traceStarts[0] : 0;
+		for(int i = 1; i < traceAmount; i++) {
+			origin = Math.min(origin, traceStarts[i]);
+		}
+		
+		PrintWriter out = null;
+		try {
+			out = new PrintWriter(new FileWriter(file));
+			out.println("{\"traceEvents\":[");
+			for(int i = 0; i < traceAmount; i++) {
+				out.print("{\"name\":\"");
+				out.print(stageNames[traceStages[i]].replace("\\", "\\\\").replace("\"", "\\\""));
+				out.print("\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":");
+				out.print((traceStarts[i] - origin) / 1000.0);
+				out.print(",\"dur\":");
+				out.print(traceDurations[i] / 1000.0);
+				out.println(i == traceAmount - 1 ? "}" : "},");
+			}
+			out.println("],\"displayTimeUnit\":\"ms\"}");
+			
+			if(out.checkError()) {
+				throw new IOException();
+			}
+		} catch(IOException e) {
+			throw new RuntimeException("Couldn't write trace to file: \"" + file + "\"", e);
+		} finally {
+			if(out != null) {
+				out.close();
+			}
+		}
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private static void addTime(int stage, long start, long end) {
+		frameNanos[stage] += end - start;
+		if(tracing) {
+			traceStages[traceAmount] = stage;
+			traceStarts[traceAmount] = start;
+			traceDurations[traceAmount] = end - start;
+			traceAmount++;
+			if(traceAmount == traceStages.length) {
+				tracing = false;
+			}
+		}
+	}
+	
+	//Appends nanoseconds as milliseconds with two decimals.
+	private static void appendMillis(StringBuilder builder, long nanos) {
+		long hundredths = (nanos + 5000) / 10000;
+		builder.append(hundredths / 100).append('.');
+		long fraction = hundredths % 100;
+		if(fraction < 10) {
+			builder.append('0');
+		}
+		builder.append(fraction);
+	}
+}
@@ -0,0 +1,366 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the duration of each frame, used to find the spikes (GC pauses, texture uploads,
+ * GLController changes, etc) that are hidden by an fps counter.
+ * 
+ * Durations are stored in two ways. A ring buffer keeps the exact durations of the most recent
+ * frames, and a log-linear histogram (in the style of HdrHistogram) counts every frame since the
+ * last reset. The histogram has 16 linear sub-buckets per power of two of microseconds, so
+ * percentiles are accurate to within 1/16 (6.25%) of the value while using a fixed amount of
+ * memory. Frames longer than the target frame time (a missed vsync) and twice the target frame
+ * time are also counted as jank. The target is 60 Hz (16.7 ms) unless set with
+ * setTargetFrameNanos(), GLActivity sets it from the refresh rate and the frame rate cap.
+ * 
+ * GLActivity records every frame in its FrameTimeHistogram, available through
+ * getFrameTimeHistogram().
+ * 
+ * Thread safety:
+ * Only one thread may call record(). Every other method may be called from any thread without
+ * locking, the values read may lag behind the writing thread by a frame. reset() only requests a
+ * reset, which is done by the writing thread at the start of the next record().
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-11
+ * @version 2
+ */
+public class FrameTimeHistogram {
+	
+	public static final int DEFAULT_RING_CAPACITY = 600;
+	
+	/**
+	 * Default jank threshold, one missed vsync at 60 Hz.
+	 */
+	public static final long JANK_NANOS = 16700000L;
+	
+	/**
+	 * Default severe jank threshold, two missed vsyncs at 60 Hz.
+	 */
+	public static final long SEVERE_JANK_NANOS = 33300000L;
+	
+	private static final long THRESHOLD_ROUNDING = 100000; //Thresholds are rounded up to 0.1 ms.
+	
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_AMOUNT = (32 - SUB_BUCKET_BITS) * SUB_BUCKETS; //Enough for Integer.MAX_VALUE microseconds.
+	
+	//Ring buffer with the latest durations in nanoseconds, and the total amount of recorded frames.
+	private final AtomicLongArray ring;
+	private final int ringCapacity;
+	private volatile long writeCount = 0;
+	
+	//Histogram, durations are counted in microseconds.
+	private final AtomicIntegerArray buckets = new AtomicIntegerArray(BUCKET_AMOUNT);
+	private volatile int frameAmount = 0, jankFrames = 0, severeJankFrames = 0;
+	private volatile long maxNanos = 0;
+	private volatile long jankNanos = JANK_NANOS, severeJankNanos = SEVERE_JANK_NANOS;
+	
+	private volatile boolean resetRequested = false;
+	
+	/**
+	 * Creates a new FrameTimeHistogram with a ring buffer of the default capacity.
+	 */
+	public FrameTimeHistogram() {
+		this(DEFAULT_RING_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new FrameTimeHistogram with a ring buffer of the specified capacity.
+	 * @param ringCapacity the amount of recent frame durations to keep
+	 * @throws IllegalArgumentException if ringCapacity <= 0
+	 */
+	public FrameTimeHistogram(int ringCapacity) {
+		if(ringCapacity <= 0) {
+			throw new IllegalArgumentException("Ring capacity must be > 0");
+		}
+		this.ringCapacity = ringCapacity;
+		this.ring = new AtomicLongArray(ringCapacity);
+	}
+	
+	/**
+	 * Sets the time each frame is supposed to take, frames longer than it (rounded up to 0.1 ms)
+	 * are counted as jank and frames longer than twice it as severe jank. Frames already counted
+	 * are not recounted.
+	 * @param targetFrameNanos the target frame time in nanoseconds
+	 * @throws IllegalArgumentException if targetFrameNanos <= 0
+	 */
+	public void setTargetFrameNanos(long targetFrameNanos) {
+		if(targetFrameNanos <= 0) {
+			throw new IllegalArgumentException("Target frame time must be > 0");
+		}
+		jankNanos = roundUpThreshold(targetFrameNanos);
+		severeJankNanos = roundUpThreshold(2*targetFrameNanos);
+	}
+	
+	/**
+	 * Returns the jank threshold, frames longer than it are counted as jank.
+	 * @return jank threshold in nanoseconds
+	 */
+	public long getJankNanos() {
+		return jankNanos;
+	}
+	
+	/**
+	 * Returns the severe jank threshold, frames longer than it are counted as severe jank.
+	 * @return severe jank threshold in nanoseconds
+	 */
+	public long getSevereJankNanos() {
+		return severeJankNanos;
+	}
+	
+	/**
+	 * Records the duration of a frame. May only be called from one thread.
+	 * @param nanos the duration of the frame in nanoseconds
+	 */
+	public void record(long nanos) {
+		if(resetRequested) {
+			clear();
+		}
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		
+		long index = writeCount;
+		ring.lazySet((int)(index % ringCapacity), nanos);
+		writeCount = index + 1;
+		
+		buckets.incrementAndGet(getBucket(nanos));
+		frameAmount++;
+		if(nanos > jankNanos) {
+			jankFrames++;
+			if(nanos > severeJankNanos) {
+				severeJankFrames++;
+			}
+		}
+		if(nanos > maxNanos) {
+			maxNanos = nanos;
+		}
+	}
+	
+	/**
+	 * Requests that everything recorded is cleared. The reset is done at the start of the next
+	 * call to record().
+	 */
+	public void reset() {
+		resetRequested = true;
+	}
+	
+	/**
+	 * Returns the amount of frames counted by the histogram since the last reset.
+	 * @return amount of frames
+	 */
+	public int getFrameAmount() {
+		return frameAmount;
+	}
+	
+	/**
+	 * Returns the amount of frames longer than the jank threshold since the last reset.
+	 * @return amount of jank frames
+	 */
+	public int getJankFrames() {
+		return jankFrames;
+	}
+	
+	/**
+	 * Returns the amount of frames longer than the severe jank threshold since the last reset.
+	 * @return amount of severe jank frames
+	 */
+	public int getSevereJankFrames() {
+		return severeJankFrames;
+	}
+	
+	/**
+	 * Returns the duration of the longest frame since the last reset.
+	 * @return longest duration in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	/**
+	 * Returns the duration at the specified percentile, i.e. the duration that the specified
+	 * percentage of frames were shorter than or equal to. The returned value is the upper bound of
+	 * the histogram bucket the percentile falls in, but never more than the max.
+	 * @param percentile the percentile, between 0 and 100
+	 * @return duration in nanoseconds, 0 if no frames have been recorded
+	 * @throws IllegalArgumentException if percentile < 0 or percentile > 100
+	 */
+	public long getPercentileNanos(double percentile) {
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be >= 0 and <= 100");
+		}
+		long total = 0;
+		for(int i = 0; i < BUCKET_AMOUNT; i++) {
+			total += buckets.get(i);
+		}
+		if(total == 0) {
+			return 0;
+		}
+		
+		long target = (long)Math.ceil(total * percentile / 100.0);
+		if(target < 1) {
+			target = 1;
+		}
+		long count = 0;
+		for(int i = 0; i < BUCKET_AMOUNT; i++) {
+			count += buckets.get(i);
+			if(count >= target) {
+				return Math.min(getBucketUpperBound(i) * 1000L + 999L, maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+	
+	/**
+	 * Returns the median frame duration.
+	 * @return the 50th percentile in nanoseconds
+	 */
+	public long getP50Nanos() {
+		return getPercentileNanos(50);
+	}
+	
+	/**
+	 * Returns the 95th percentile frame duration.
+	 * @return the 95th percentile in nanoseconds
+	 */
+	public long getP95Nanos() {
+		return getPercentileNanos(95);
+	}
+	
+	/**
+	 * Returns the 99th percentile frame duration.
+	 * @return the 99th percentile in nanoseconds
+	 */
+	public long getP99Nanos() {
+		return getPercentileNanos(99);
+	}
+	
+	/**
+	 * Returns the amount of durations currently stored in the ring buffer.
+	 * @return amount of recent durations available
+	 */
+	public int getRecentAmount() {
+		return (int)Math.min(writeCount, ringCapacity);
+	}
+	
+	/**
+	 * Returns a recent frame duration from the ring buffer, 0 is the latest frame.
+	 * @param age how many frames ago, must be less than getRecentAmount()
+	 * @return duration in nanoseconds
+	 * @throws IllegalArgumentException if age < 0 or age >= getRecentAmount()
+	 */
+	public long getRecentNanos(int age) {
+		long count = writeCount;
+		if(age < 0 || age >= Math.min(count, ringCapacity)) {
+			throw new IllegalArgumentException("Age must be >= 0 and < amount of recent frames");
+		}
+		return ring.get((int)((count - 1 - age) % ringCapacity));
+	}
+	
+	/**
+	 * Writes a report to the specified file. The report contains the percentiles, the jank counts,
+	 * every non-empty histogram bucket and the durations in the ring buffer, oldest first.
+	 * @param file the file to write to, overwritten if it exists
+	 * @throws RuntimeException if the file couldn't be written
+	 */
+	public void dump(File file) {
+		PrintWriter out = null;
+		try {
+			out = new PrintWriter(new FileWriter(file));
+			out.println("frames " + frameAmount);
+			out.println("jank_frames_over_" + jankNanos / 1000000.0 + "ms " + jankFrames);
+			out.println("jank_frames_over_" + severeJankNanos / 1000000.0 + "ms " + severeJankFrames);
+			out.println("p50_ms " + getP50Nanos() / 1000000.0);
+			out.println("p95_ms " + getP95Nanos() / 1000000.0);
+			out.println("p99_ms " + getP99Nanos() / 1000000.0);
+			out.println("max_ms " + maxNanos / 1000000.0);
+			
+			out.println();
+			out.println("bucket_from_us bucket_to_us count");
+			for(int i = 0; i < BUCKET_AMOUNT; i++) {
+				int count = buckets.get(i);
+				if(count != 0) {
+					out.println(getBucketLowerBound(i) + " " + getBucketUpperBound(i) + " " + count);
+				}
+			}
+			
+			out.println();
+			out.println("recent_frames_ms");
+			int recentAmount = getRecentAmount();
+			for(int age = recentAmount - 1; age >= 0; age--) {
+				out.println(getRecentNanos(age) / 1000000.0);
+			}
+			
+			if(out.checkError()) {
+				throw new IOException();
+			}
+		} catch(IOException e) {
+			throw new RuntimeException("Couldn't write frame times to file: \"" + file + "\"", e);
+		} finally {
+			if(out != null) {
+				out.close();
+			}
+		}
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	//Only called from the writing thread.
+	private void clear() {
+		resetRequested = false;
+		for(int i = 0; i < BUCKET_AMOUNT; i++) {
+			buckets.set(i, 0);
+		}
+		writeCount = 0;
+		frameAmount = 0;
+		jankFrames = 0;
+		severeJankFrames = 0;
+		maxNanos = 0;
+	}
+	
+	private static long roundUpThreshold(long nanos) {
+		return (nanos + THRESHOLD_ROUNDING - 1) / THRESHOLD_ROUNDING * THRESHOLD_ROUNDING;
+	}
+	
+	/*
+	 * Values below SUB_BUCKETS microseconds get one bucket each. Above that every power of two is
+	 * split into SUB_BUCKETS linear buckets.
+	 */
+	private static int getBucket(long nanos) {
+		long micros = nanos / 1000;
+		int value = micros > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)micros;
+		if(value < SUB_BUCKETS) {
+			return value;
+		}
+		int exponent = 31 - Integer.numberOfLeadingZeros(value);
+		int subBucket = (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	private static long getBucketLowerBound(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int subBucket = bucket % SUB_BUCKETS;
+		return (long)(SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+	
+	private static long getBucketUpperBound(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return getBucketLowerBound(bucket) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -0,0 +1,42 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * Holds the GLBackend all framework classes call OpenGL through.
+ * 
+ * By default a GLES11Backend is used. Another backend, such as a HeadlessGLBackend, can be set
+ * with setBackend() before any framework class is used. GLState.invalidate() should be called
+ * whenever the backend is changed.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-10
+ * @version 1
+ */
+public final class GL {
+	
+	private static GLBackend backend = new GLES11Backend();
+	
+	//Private to avoid instantiation.
+	private GL() {
+		throw new AssertionError();
+	}
+	
+	/**
+	 * Returns the current GLBackend.
+	 * @return the current GLBackend
+	 */
+	public static GLBackend get() {
+		return backend;
+	}
+	
+	/**
+	 * Sets the GLBackend used by the framework.
+	 * @param backend the new GLBackend
+	 * @throws IllegalArgumentException if backend is null
+	 */
+	public static void setBackend(GLBackend backend) {
+		if(backend == null) {
+			throw new IllegalArgumentException("GLBackend is null, not allowed.");
+		}
+		GL.backend = backend;
+	}
+}
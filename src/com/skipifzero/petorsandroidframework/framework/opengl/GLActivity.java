@@ -21,14 +21,24 @@ import com.skipifzero.petorsandroidframework.framework.input.BackKeyInput;
  * Extend this class, implement the needed methods, supply a GLController to start with and
  * start this Activity.
  * 
+ * If the current GLController is a FixedTimestepGLController its logic is updated with a fixed
+ * timestep and it's drawn with an interpolation alpha, otherwise update() is simply called once
+ * per frame with the time since the last frame. If it's a ThreadedGLController its logic runs on a
+ * separate update thread, see ThreadedGLController.
+ * 
  * Inspired by similar class found in Beginning Android Games by Mario Zechner.
  * 
  * @author Peter Hillerström
  * @since 2013-04-03
- * @version 3
+ * @version 4
  */
 public abstract class GLActivity extends Activity implements Renderer {
 	
+	/**
+	 * The maximum time per frame spent on uploads during changeGLControllerAsync().
+	 */
+	public static final long UPLOAD_BUDGET_NANOS = 4000000;
+	
 	//States used to make sure everything in the GLController happens on the rendering thread.
 	private enum State {
 		STARTING, RUNNING, PAUSING, FINISHING, SLEEPING;
@@ -46,6 +56,25 @@ public abstract class GLActivity extends Activity implements Renderer {
 	private int fps = 0;
 	private double deltaTime = 0;
 	private StringBuilder fpsBuilder = new StringBuilder("FPS: ");
+	private final FrameTimeHistogram frameTimes = new FrameTimeHistogram();
+	
+	//Time not yet simulated by a FixedTimestepGLController, in seconds.
+	private double accumulator = 0;
+	
+	//Runs the logic of a ThreadedGLController, null otherwise.
+	private UpdateThread updateThread = null;
+	
+	//Frame pacing
+	private FramePacer framePacer;
+	private volatile boolean renderContinuously = true;
+	
+	//Resolution scaling
+	private volatile int surfaceWidth = 0, surfaceHeight = 0;
+	private ResolutionScaler resolutionScaler = null;
+	private volatile float resolutionScale = 1;
+	
+	//Ongoing asynchronous change of GLController, null if none.
+	private GLControllerTransition transition = null;
 	
 	private BackKeyInput keyInput;
 	
@@ -64,10 +93,18 @@ public abstract class GLActivity extends Activity implements Renderer {
 		this.setVolumeControlStream(AudioManager.STREAM_MUSIC);
 		
 		glSurfaceView = new GLSurfaceView(this);
+		GLSurfaceConfig surfaceConfig = getGLSurfaceConfig();
+		if(surfaceConfig != null) {
+			glSurfaceView.setEGLConfigChooser(surfaceConfig);
+		}
 		glSurfaceView.setRenderer(this);
 		
 		setContentView(glSurfaceView);
 		
+		float refreshRate = getWindowManager().getDefaultDisplay().getRefreshRate();
+		framePacer = new FramePacer(refreshRate > 0 ? refreshRate : 60); //Some devices report 0.
+		frameTimes.setTargetFrameNanos(getTargetFrameNanos());
+		
 		keyInput = new BackKeyInput(glSurfaceView, false);
 	}
 	
@@ -85,6 +122,7 @@ public abstract class GLActivity extends Activity implements Renderer {
 			} else {
 				state = State.PAUSING;
 			}
+			glSurfaceView.requestRender(); //Makes sure a frame is drawn if only rendering when dirty.
 			
 			//Wait for rendering thread to finish cleaning up.
 			try {
@@ -104,12 +142,17 @@ public abstract class GLActivity extends Activity implements Renderer {
 	
 	@Override
 	public void onSurfaceCreated(GL10 unused, EGLConfig config) {
+		GLState.newContext(); //New OpenGL context, tracked state and old ids are lost.
+		RenderStats.reset();
+		FrameProfiler.reset();
+		
 		//Resets fps counter.
 		startTime = System.nanoTime();
 		lastFPSCount = startTime;
 		frameCount = 0;
 		fps = 0;
 		deltaTime = 0;
+		accumulator = 0;
 		
 		synchronized(this) {
 			if(state == State.STARTING) { //Gets initial GLController if program is starting up.
@@ -117,12 +160,22 @@ public abstract class GLActivity extends Activity implements Renderer {
 			}
 			state = State.RUNNING; //Surface was created, so program is running.
 			glController.onResume();
+			startUpdateThread();
+			if(transition != null) {
+				transition = transition.restart(); //The uploads were lost with the old context.
+			}
 		}
 	}
 	
 	@Override
 	public void onSurfaceChanged(GL10 unused, int width, int height) {
-		//Do nothing.
+		surfaceWidth = width;
+		surfaceHeight = height;
+		
+		//The surface is smaller than the view when rendering at a reduced resolution.
+		int viewWidth = glSurfaceView.getWidth();
+		int viewHeight = glSurfaceView.getHeight();
+		Camera2D.setResolutionScale(viewWidth > 0 ? (float)width / viewWidth : 1, viewHeight > 0 ? (float)height / viewHeight : 1);
 	}
 	
 	@Override
@@ -135,9 +188,20 @@ public abstract class GLActivity extends Activity implements Renderer {
 		
 		switch(localState) {
 			case RUNNING:
-				//Calculates delta.
-				deltaTime = (System.nanoTime()-startTime) / 1000000000.0;
-				startTime = System.nanoTime();
+				framePacer.waitForNextFrame();
+				FrameProfiler.beginFrame();
+				
+				//Calculates delta and records the frame time.
+				long now = System.nanoTime();
+				long frameNanos = now - startTime;
+				deltaTime = frameNanos / 1000000000.0;
+				startTime = now;
+				if(renderContinuously) { //Time between frames rendered on demand isn't frame time.
+					frameTimes.record(frameNanos);
+					if(resolutionScaler != null && resolutionScaler.update(frameTimes, getTargetFrameNanos())) {
+						setResolutionScale(resolutionScaler.getScale());
+					}
+				}
 				
 				//Calculates current fps.
 				frameCount++;
@@ -152,12 +216,35 @@ public abstract class GLActivity extends Activity implements Renderer {
 					lastFPSCount = System.nanoTime();
 				}
 				
-				//Updates current GLController and GLView
-				glController.update(deltaTime, fps);
+				//Advances asynchronous change of GLController, may change the current GLController.
+				if(transition != null) {
+					updateTransition();
+				}
+				
+				//Updates current GLController and GLView, or draws the loading view.
+				if(transition != null && transition.getLoadingView() != null) {
+					FrameProfiler.begin(FrameProfiler.DRAW);
+					transition.getLoadingView().draw(deltaTime, fps);
+					FrameProfiler.end(FrameProfiler.DRAW);
+				} else if(glController instanceof FixedTimestepGLController) {
+					updateFixedTimestep((FixedTimestepGLController)glController);
+				} else if(glController instanceof ThreadedGLController) {
+					FrameProfiler.begin(FrameProfiler.DRAW);
+					((ThreadedGLController)glController).render(deltaTime, fps, updateThread.acquireLatest());
+					FrameProfiler.end(FrameProfiler.DRAW);
+				} else {
+					glController.update(deltaTime, fps);
+				}
+				RenderStats.endFrame();
+				FrameProfiler.endFrame();
 				break;
 			
 			case PAUSING:
+				stopUpdateThread();
 				glController.onPause();
+				if(transition != null) {
+					transition.suspend(); //Cancels the loader while the context is still alive.
+				}
 				synchronized(this) {
 					this.state = State.SLEEPING;
 					this.notifyAll();
@@ -165,6 +252,8 @@ public abstract class GLActivity extends Activity implements Renderer {
 				break;
 			
 			case FINISHING:
+				stopUpdateThread();
+				cancelTransition();
 				glController.onPause();
 				glController.dispose();
 				synchronized(this) {
@@ -205,10 +294,22 @@ public abstract class GLActivity extends Activity implements Renderer {
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 */
 	
+	/**
+	 * This method returns the GLSurfaceConfig describing the framebuffer to use. Can be overridden,
+	 * returns null by default which means GLSurfaceView chooses its default config (usually RGB888
+	 * with a 16 bit depth buffer). Is called once in onCreate().
+	 * @return the GLSurfaceConfig to use, or null
+	 */
+	public GLSurfaceConfig getGLSurfaceConfig() {
+		return null;
+	}
+	
 	/**
 	 * Changes GLController
-	 * Can be called from anywhere within a GLController. Will pause and dipose of old GLController.
+	 * Can be called from anywhere within a GLController, except from the update thread of a
+	 * ThreadedGLController. Will pause and dipose of old GLController.
 	 * @throws IllegalArgumentException if new GLController is null
+	 * @throws IllegalStateException if called from the update thread
 	 * @param glController the new GLController
 	 */
 	@Deprecated //TODO: Not really deprecated, but is needed to make sure people don't use wrong method in project.
@@ -216,6 +317,8 @@ public abstract class GLActivity extends Activity implements Renderer {
 		if(glController == null) {
 			throw new IllegalArgumentException("New GLController is null, not allowed.");
 		}
+		stopUpdateThread();
+		cancelTransition();
 		
 		//Dispose of old GLController
 		this.glController.onPause();
@@ -224,27 +327,74 @@ public abstract class GLActivity extends Activity implements Renderer {
 		//Resumes new GLController
 		glController.onResume();
 		this.glController = glController;
+		accumulator = 0;
+		startUpdateThread();
 		
 		catchBackKey(glController.catchBackKey());
+		glSurfaceView.requestRender(); //The new GLController should be drawn even if rendering when dirty.
 	}
 	
 	/**
 	 * Special version of changeGLController(), won't call pause() or dispose() in old GLController. 
 	 * Can for example be used if assets are transferred between GLController's.
-	 * Can be called from anywhere within a GLController. Will pause and dispose of old GLController.
+	 * Can be called from anywhere within a GLController, except from the update thread of a
+	 * ThreadedGLController. Will pause and dispose of old GLController.
 	 * @throws IllegalArgumentException if new GLController is null
+	 * @throws IllegalStateException if called from the update thread
 	 * @param glController the new GLController
 	 */
 	public void changeGLControllerDontDispose(GLController glController) {
 		if(glController == null) {
 			throw new IllegalArgumentException("New GLController is null, not allowed.");
 		}
+		stopUpdateThread();
+		cancelTransition();
 		
 		//Resumes new GLController
 		glController.onResume();
 		this.glController = glController;
+		accumulator = 0;
+		startUpdateThread();
 		
 		catchBackKey(glController.catchBackKey());
+		glSurfaceView.requestRender(); //The new GLController should be drawn even if rendering when dirty.
+	}
+	
+	/**
+	 * Changes GLController without hitches. The specified GLControllerLoader loads the assets of
+	 * the new GLController on a background thread, while the OpenGL uploads it queues are run on the
+	 * rendering thread, at most UPLOAD_BUDGET_NANOS per frame. When everything is loaded the new
+	 * GLController is created and replaces the current one, which is paused and disposed.
+	 * 
+	 * Until then the current GLController keeps running as usual, or if a loading view is
+	 * specified it is drawn instead (the current GLController isn't updated meanwhile). The
+	 * loading view is resumed now and disposed when the change is done, it should be cheap to
+	 * create and draw.
+	 * 
+	 * Calling this again, or calling changeGLController(), cancels an ongoing change, in which case
+	 * GLControllerLoader.cancel() is called instead. If the activity is paused during the change
+	 * the loader is cancelled too, and the change starts over when the activity is resumed since
+	 * the OpenGL context was lost. Must be called from the rendering thread.
+	 * @param loader the GLControllerLoader loading the new GLController
+	 * @param loadingView the GLView to draw while loading, or null to keep running the current
+	 * GLController
+	 * @throws IllegalArgumentException if loader is null
+	 */
+	public void changeGLControllerAsync(GLControllerLoader loader, GLView loadingView) {
+		if(loader == null) {
+			throw new IllegalArgumentException("GLControllerLoader is null, not allowed.");
+		}
+		cancelTransition();
+		transition = new GLControllerTransition(loader, loadingView);
+		transition.start();
+	}
+	
+	/**
+	 * Returns whether an asynchronous change of GLController is ongoing.
+	 * @return whether the GLController is being changed
+	 */
+	public boolean isChangingGLController() {
+		return transition != null;
 	}
 	
 	/**
@@ -255,6 +405,136 @@ public abstract class GLActivity extends Activity implements Renderer {
 		return glController;
 	}
 	
+	/**
+	 * Sets the frame rate cap, 0 disables it (default). The cap is rounded to a whole amount of
+	 * vsync intervals per frame, see FramePacer. Should be called from the GLController.
+	 * @param frameRateCap the maximum amount of frames per second, or 0
+	 * @throws IllegalArgumentException if frameRateCap < 0
+	 */
+	public void setFrameRateCap(int frameRateCap) {
+		framePacer.setFrameRateCap(frameRateCap);
+		frameTimes.setTargetFrameNanos(getTargetFrameNanos()); //Paced frames aren't jank.
+	}
+	
+	/**
+	 * Returns the frame rate cap, 0 if disabled.
+	 * @return the frame rate cap
+	 */
+	public int getFrameRateCap() {
+		return framePacer.getFrameRateCap();
+	}
+	
+	/**
+	 * Sets whether frames should be rendered continuously (default) or only when requested. When
+	 * not rendering continuously a frame is only rendered after requestRender() is called or input
+	 * (touch or key events) is received, which saves battery in menus and paused screens. Note that
+	 * the delta time of the first frame after being woken up includes the time spent idle.
+	 * @param renderContinuously whether to render continuously
+	 */
+	public void setRenderContinuously(boolean renderContinuously) {
+		this.renderContinuously = renderContinuously;
+		glSurfaceView.setRenderMode(renderContinuously ? GLSurfaceView.RENDERMODE_CONTINUOUSLY : GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+	}
+	
+	/**
+	 * Returns whether frames are rendered continuously.
+	 * @return whether frames are rendered continuously
+	 */
+	public boolean isRenderingContinuously() {
+		return renderContinuously;
+	}
+	
+	/**
+	 * Requests that a frame is rendered. Only needed when not rendering continuously, may be
+	 * called from any thread.
+	 */
+	public void requestRender() {
+		glSurfaceView.requestRender();
+	}
+	
+	/**
+	 * Sets the resolution scale, the surface is rendered at the size of the GLSurfaceView times
+	 * this scale and then upscaled by the display hardware. Lowering the scale lowers the amount
+	 * of pixels rendered, which helps on fill-rate limited devices. Camera2D adjusts the viewport
+	 * automatically and touch coordinates are unaffected, so game code doesn't need to change.
+	 * Resizing the surface causes a hitch, so the scale shouldn't be changed often.
+	 * @param scale the resolution scale, 1 for full resolution
+	 * @throws IllegalArgumentException if scale <= 0 or scale > 1
+	 */
+	public void setResolutionScale(final float scale) {
+		if(scale <= 0 || scale > 1) {
+			throw new IllegalArgumentException("Resolution scale must be > 0 and <= 1");
+		}
+		if(scale == resolutionScale) {
+			return;
+		}
+		resolutionScale = scale;
+		
+		//The SurfaceHolder may only be changed on the UI thread.
+		runOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				if(scale == 1) {
+					glSurfaceView.getHolder().setSizeFromLayout();
+					return;
+				}
+				int width = Math.max(1, Math.round(glSurfaceView.getWidth() * scale));
+				int height = Math.max(1, Math.round(glSurfaceView.getHeight() * scale));
+				glSurfaceView.getHolder().setFixedSize(width, height);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the current resolution scale.
+	 * @return the resolution scale
+	 */
+	public float getResolutionScale() {
+		return resolutionScale;
+	}
+	
+	/**
+	 * Sets the ResolutionScaler choosing the resolution scale from the measured frame times, null
+	 * disables dynamic resolution and restores full resolution. Should be called from the
+	 * GLController.
+	 * @param resolutionScaler the ResolutionScaler, or null
+	 */
+	public void setResolutionScaler(ResolutionScaler resolutionScaler) {
+		this.resolutionScaler = resolutionScaler;
+		if(resolutionScaler == null) {
+			setResolutionScale(1);
+		} else {
+			setResolutionScale(resolutionScaler.getScale());
+		}
+	}
+	
+	/**
+	 * Returns the width of the surface rendered to in pixels. Smaller than the width of the
+	 * GLSurfaceView when rendering at a reduced resolution.
+	 * @return surface width
+	 */
+	public int getSurfaceWidth() {
+		return surfaceWidth;
+	}
+	
+	/**
+	 * Returns the height of the surface rendered to in pixels. Smaller than the height of the
+	 * GLSurfaceView when rendering at a reduced resolution.
+	 * @return surface height
+	 */
+	public int getSurfaceHeight() {
+		return surfaceHeight;
+	}
+	
+	/**
+	 * Returns the FrameTimeHistogram recording the duration of every frame. May be queried from
+	 * any thread.
+	 * @return the FrameTimeHistogram of this GLActivity
+	 */
+	public FrameTimeHistogram getFrameTimeHistogram() {
+		return frameTimes;
+	}
+	
 	/**
 	 * Returns the width of the GLSurfaceView in pixels.
 	 * @return width
@@ -297,4 +577,85 @@ public abstract class GLActivity extends Activity implements Renderer {
 	public void catchBackKey(boolean catchBackKey) {
 		keyInput.catchBackKey(catchBackKey);
 	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private void startUpdateThread() {
+		if(glController instanceof ThreadedGLController) {
+			updateThread = new UpdateThread((ThreadedGLController)glController);
+			updateThread.start();
+		}
+	}
+	
+	private void stopUpdateThread() {
+		if(updateThread == null) {
+			return;
+		}
+		if(Thread.currentThread() == updateThread) {
+			throw new IllegalStateException("GLController can't be changed from the update thread.");
+		}
+		updateThread.shutdown();
+		updateThread = null;
+	}
+	
+	//The time per frame the frame rate cap or the display refresh rate allows.
+	private long getTargetFrameNanos() {
+		long frameNanos = framePacer.getFrameNanos();
+		return frameNanos != 0 ? frameNanos : framePacer.getVsyncNanos();
+	}
+	
+	//Runs uploads, and changes GLController when the transition is done.
+	private void updateTransition() {
+		GLControllerTransition finishedTransition = transition;
+		if(!finishedTransition.update(UPLOAD_BUDGET_NANOS)) {
+			return;
+		}
+		transition = null; //Cleared first so changeGLController() doesn't cancel it.
+		changeGLController(finishedTransition.finish());
+	}
+	
+	private void cancelTransition() {
+		if(transition != null) {
+			transition.cancel();
+			transition = null;
+		}
+	}
+	
+	/*
+	 * Runs one frame of a FixedTimestepGLController. Stops early if the controller is changed
+	 * during the frame, since the old one has been paused and disposed.
+	 */
+	private void updateFixedTimestep(FixedTimestepGLController controller) {
+		controller.update(deltaTime, fps);
+		if(glController != controller) {
+			return;
+		}
+		
+		double timestep = controller.getTimestep();
+		int maxSteps = controller.getMaxStepsPerFrame();
+		accumulator += deltaTime;
+		
+		FrameProfiler.begin(FrameProfiler.UPDATE);
+		for(int steps = 0; accumulator >= timestep && steps < maxSteps; steps++) {
+			controller.fixedUpdate(timestep);
+			accumulator -= timestep;
+			if(glController != controller) {
+				FrameProfiler.end(FrameProfiler.UPDATE);
+				return;
+			}
+		}
+		FrameProfiler.end(FrameProfiler.UPDATE);
+		
+		//Device can't keep up, drops the whole timesteps that couldn't be simulated.
+		if(accumulator >= timestep) {
+			accumulator %= timestep;
+		}
+		
+		FrameProfiler.begin(FrameProfiler.DRAW);
+		controller.draw(deltaTime, fps, accumulator / timestep);
+		FrameProfiler.end(FrameProfiler.DRAW);
+	}
 }
@@ -0,0 +1,70 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.nio.Buffer;
+
+import android.graphics.Bitmap;
+
+/**
+ * An interface for the OpenGL calls made by the framework. All framework classes call OpenGL
+ * through the GLBackend returned by GL.get(), which makes it possible to replace OpenGL with for
+ * example a HeadlessGLBackend when running on a plain JVM.
+ * 
+ * The methods mirror the static methods in GLES10, GLES11 and GLUtils with the same names and
+ * parameters, see the OpenGL ES 1.1 documentation for what they do. Constants are taken from
+ * GLES10 and GLES11 as usual.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-10
+ * @version 1
+ */
+public interface GLBackend {
+	
+	//Textures
+	public void glGenTextures(int n, int[] textures, int offset);
+	public void glDeleteTextures(int n, int[] textures, int offset);
+	public void glBindTexture(int target, int texture);
+	public void glTexParameterf(int target, int pname, float param);
+	public void glTexEnvf(int target, int pname, float param);
+	public void texImage2D(int target, int level, Bitmap bitmap, int border);
+	public void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap);
+	
+	//State
+	public void glEnable(int cap);
+	public void glDisable(int cap);
+	public void glEnableClientState(int array);
+	public void glDisableClientState(int array);
+	public void glBlendFunc(int sfactor, int dfactor);
+	public void glAlphaFunc(int func, float ref);
+	public void glColor4f(float red, float green, float blue, float alpha);
+	
+	//Matrices and viewport
+	public void glMatrixMode(int mode);
+	public void glLoadIdentity();
+	public void glPushMatrix();
+	public void glPopMatrix();
+	public void glTranslatef(float x, float y, float z);
+	public void glOrthof(float left, float right, float bottom, float top, float zNear, float zFar);
+	public void glViewport(int x, int y, int width, int height);
+	
+	//Client side arrays
+	public void glVertexPointer(int size, int type, int stride, Buffer pointer);
+	public void glColorPointer(int size, int type, int stride, Buffer pointer);
+	public void glTexCoordPointer(int size, int type, int stride, Buffer pointer);
+	public void glDrawElements(int mode, int count, int type, Buffer indices);
+	
+	//Buffer objects
+	public void glGenBuffers(int n, int[] buffers, int offset);
+	public void glDeleteBuffers(int n, int[] buffers, int offset);
+	public void glBindBuffer(int target, int buffer);
+	public void glBufferData(int target, int size, Buffer data, int usage);
+	public void glBufferSubData(int target, int offset, int size, Buffer data);
+	public void glVertexPointer(int size, int type, int stride, int offset);
+	public void glColorPointer(int size, int type, int stride, int offset);
+	public void glTexCoordPointer(int size, int type, int stride, int offset);
+	public void glDrawElements(int mode, int count, int type, int offset);
+	
+	//Drawing
+	public void glDrawArrays(int mode, int first, int count);
+	public void glClearColor(float red, float green, float blue, float alpha);
+	public void glClear(int mask);
+}
@@ -0,0 +1,48 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * Loads the assets of a GLController in the background, used with
+ * GLActivity.changeGLControllerAsync().
+ * 
+ * load() is called on a background thread and should do all the slow work, such as decoding
+ * bitmaps, while adding only the OpenGL parts (creating textures from the decoded bitmaps etc)
+ * to the GLUploadQueue. Those are run on the OpenGL thread a few at a time each frame. When
+ * load() has returned and every upload has been run createGLController() is called on the OpenGL
+ * thread, and the returned GLController replaces the current one.
+ * 
+ * If the change is cancelled (by another change of GLController or by the activity finishing)
+ * cancel() is called instead of createGLController(), and must dispose of everything the uploads
+ * that have been run created.
+ * 
+ * The OpenGL context is lost when the activity is paused. If that happens during the change
+ * cancel() is called before pausing, and once the activity is resumed the change starts over:
+ * load() is called again with a new GLUploadQueue. So a loader must be able to load more than
+ * once after cancel(), load() is never called concurrently though.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-18
+ * @version 3
+ */
+public interface GLControllerLoader {
+	
+	/**
+	 * Called on a background thread. Loads everything the GLController needs, OpenGL work must be
+	 * added to the specified GLUploadQueue. May not make OpenGL calls directly.
+	 * @param uploads the GLUploadQueue for OpenGL work
+	 */
+	public void load(GLUploadQueue uploads);
+	
+	/**
+	 * Called on the OpenGL thread when loading and all uploads are finished. Should be fast, since
+	 * everything has already been loaded.
+	 * @return the new GLController, may not be null
+	 */
+	public GLController createGLController();
+	
+	/**
+	 * Called on the OpenGL thread if the change of GLController is cancelled. Should dispose of
+	 * everything created by the uploads that have been run (textures etc), the uploads that haven't
+	 * been run never will be. load() may still be running on the background thread.
+	 */
+	public void cancel();
+}
@@ -0,0 +1,168 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import android.os.Process;
+
+/**
+ * An ongoing asynchronous change of GLController, used by GLActivity. Runs the GLControllerLoader
+ * on a background thread and its uploads on the OpenGL thread.
+ * 
+ * The OpenGL context is lost when the activity is paused, and with it everything the uploads
+ * created. So the transition is suspended when pausing (the loader is cancelled while the context
+ * is still alive) and restarted from the beginning with a new transition when the surface is
+ * created again. The restarted transition waits for the old loader thread to finish before
+ * calling load() again.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-18
+ * @version 3
+ */
+final class GLControllerTransition implements Runnable {
+	
+	private final GLControllerLoader loader;
+	private final GLView loadingView;
+	private final GLUploadQueue uploads = new GLUploadQueue();
+	private final Thread previousThread; //Loader thread of the suspended transition, or null.
+	private Thread thread = null;
+	private boolean loadingViewResumed = false;
+	private boolean suspended = false;
+	
+	private volatile boolean loaded = false;
+	private volatile Throwable error = null;
+	
+	GLControllerTransition(GLControllerLoader loader, GLView loadingView) {
+		this(loader, loadingView, null);
+	}
+	
+	private GLControllerTransition(GLControllerLoader loader, GLView loadingView, Thread previousThread) {
+		this.loader = loader;
+		this.loadingView = loadingView;
+		this.previousThread = previousThread;
+	}
+	
+	/**
+	 * Starts loading on a background thread.
+	 */
+	void start() {
+		resumeLoadingView();
+		thread = new Thread(this, "GLControllerLoader");
+		thread.start();
+	}
+	
+	@Override
+	public void run() {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND); //Don't steal time from the OpenGL thread.
+		try {
+			if(previousThread != null) {
+				previousThread.join(); //load() is never called concurrently.
+			}
+			loader.load(uploads);
+			loaded = true;
+		} catch(Throwable t) {
+			error = t; //Rethrown on the OpenGL thread.
+		}
+	}
+	
+	/**
+	 * Runs uploads for at most the specified time. Called each frame on the OpenGL thread.
+	 * @param budgetNanos the time budget in nanoseconds
+	 * @return whether loading and all uploads are finished
+	 * @throws RuntimeException if the loader threw an exception
+	 */
+	boolean update(long budgetNanos) {
+		if(error != null) {
+			throw new RuntimeException("Exception while loading GLController.", error);
+		}
+		uploads.process(budgetNanos);
+		return loaded && uploads.isEmpty(); //Everything was added before loaded was set.
+	}
+	
+	/**
+	 * Creates the new GLController and disposes the loading view. Called on the OpenGL thread once
+	 * update() has returned true.
+	 * @return the new GLController
+	 * @throws IllegalStateException if the loader returned null
+	 */
+	GLController finish() {
+		GLController glController = loader.createGLController();
+		if(glController == null) {
+			throw new IllegalStateException("GLControllerLoader returned null GLController.");
+		}
+		disposeLoadingView();
+		return glController;
+	}
+	
+	/**
+	 * Cancels the transition. The loader thread can't be stopped, but its remaining uploads are
+	 * never run. The loader is told to dispose of what the uploads already run have created.
+	 */
+	void cancel() {
+		if(!suspended) {
+			uploads.clear();
+			loader.cancel();
+		}
+		disposeLoadingView();
+	}
+	
+	/**
+	 * Suspends the transition before the OpenGL context is lost, must be called while it's still
+	 * alive. The remaining uploads are never run, the loader is cancelled and the loading view is
+	 * paused. Continued with restart().
+	 */
+	void suspend() {
+		if(suspended) {
+			return;
+		}
+		uploads.clear();
+		loader.cancel();
+		pauseLoadingView();
+		suspended = true;
+	}
+	
+	/**
+	 * Restarts the transition from the beginning in a new OpenGL context, suspends it first if it
+	 * hasn't been. The loader's load() is called again once the old loader thread has finished.
+	 * @return the new, started transition replacing this one
+	 */
+	GLControllerTransition restart() {
+		suspend();
+		GLControllerTransition restarted = new GLControllerTransition(loader, loadingView, thread);
+		restarted.start();
+		return restarted;
+	}
+	
+	/**
+	 * Returns the loading view, or null if there is none.
+	 * @return the loading view
+	 */
+	GLView getLoadingView() {
+		return loadingView;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	//Resumes the loading view, if there is one and it isn't already resumed.
+	private void resumeLoadingView() {
+		if(loadingView != null && !loadingViewResumed) {
+			loadingView.onResume();
+			loadingViewResumed = true;
+		}
+	}
+	
+	//Pauses the loading view, if there is one and it isn't already paused.
+	private void pauseLoadingView() {
+		if(loadingView != null && loadingViewResumed) {
+			loadingView.onPause();
+			loadingViewResumed = false;
+		}
+	}
+	
+	private void disposeLoadingView() {
+		pauseLoadingView(); //Already paused if the activity was paused first.
+		if(loadingView != null) {
+			loadingView.dispose();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.nio.Buffer;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES11;
+import android.opengl.GLUtils;
+
+/**
+ * The default GLBackend, simply passes every call on to GLES11 (which includes GLES10) and
+ * GLUtils.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-10
+ * @version 1
+ */
+public class GLES11Backend implements GLBackend {
+	
+	@Override
+	public void glGenTextures(int n, int[] textures, int offset) {
+		GLES11.glGenTextures(n, textures, offset);
+	}
+	
+	@Override
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		GLES11.glDeleteTextures(n, textures, offset);
+	}
+	
+	@Override
+	public void glBindTexture(int target, int texture) {
+		GLES11.glBindTexture(target, texture);
+	}
+	
+	@Override
+	public void glTexParameterf(int target, int pname, float param) {
+		GLES11.glTexParameterf(target, pname, param);
+	}
+	
+	@Override
+	public void glTexEnvf(int target, int pname, float param) {
+		GLES11.glTexEnvf(target, pname, param);
+	}
+	
+	@Override
+	public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+		GLUtils.texImage2D(target, level, bitmap, border);
+	}
+	
+	@Override
+	public void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap) {
+		GLUtils.texSubImage2D(target, level, xoffset, yoffset, bitmap);
+	}
+	
+	@Override
+	public void glEnable(int cap) {
+		GLES11.glEnable(cap);
+	}
+	
+	@Override
+	public void glDisable(int cap) {
+		GLES11.glDisable(cap);
+	}
+	
+	@Override
+	public void glEnableClientState(int array) {
+		GLES11.glEnableClientState(array);
+	}
+	
+	@Override
+	public void glDisableClientState(int array) {
+		GLES11.glDisableClientState(array);
+	}
+	
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) {
+		GLES11.glBlendFunc(sfactor, dfactor);
+	}
+	
+	@Override
+	public void glAlphaFunc(int func, float ref) {
+		GLES11.glAlphaFunc(func, ref);
+	}
+	
+	@Override
+	public void glColor4f(float red, float green, float blue, float alpha) {
+		GLES11.glColor4f(red, green, blue, alpha);
+	}
+	
+	@Override
+	public void glMatrixMode(int mode) {
+		GLES11.glMatrixMode(mode);
+	}
+	
+	@Override
+	public void glLoadIdentity() {
+		GLES11.glLoadIdentity();
+	}
+	
+	@Override
+	public void glPushMatrix() {
+		GLES11.glPushMatrix();
+	}
+	
+	@Override
+	public void glPopMatrix() {
+		GLES11.glPopMatrix();
+	}
+	
+	@Override
+	public void glTranslatef(float x, float y, float z) {
+		GLES11.glTranslatef(x, y, z);
+	}
+	
+	@Override
+	public void glOrthof(float left, float right, float bottom, float top, float zNear, float zFar) {
+		GLES11.glOrthof(left, right, bottom, top, zNear, zFar);
+	}
+	
+	@Override
+	public void glViewport(int x, int y, int width, int height) {
+		GLES11.glViewport(x, y, width, height);
+	}
+	
+	@Override
+	public void glVertexPointer(int size, int type, int stride, Buffer pointer) {
+		GLES11.glVertexPointer(size, type, stride, pointer);
+	}
+	
+	@Override
+	public void glColorPointer(int size, int type, int stride, Buffer pointer) {
+		GLES11.glColorPointer(size, type, stride, pointer);
+	}
+	
+	@Override
+	public void glTexCoordPointer(int size, int type, int stride, Buffer pointer) {
+		GLES11.glTexCoordPointer(size, type, stride, pointer);
+	}
+	
+	@Override
+	public void glDrawElements(int mode, int count, int type, Buffer indices) {
+		GLES11.glDrawElements(mode, count, type, indices);
+	}
+	
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		GLES11.glGenBuffers(n, buffers, offset);
+	}
+	
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		GLES11.glDeleteBuffers(n, buffers, offset);
+	}
+	
+	@Override
+	public void glBindBuffer(int target, int buffer) {
+		GLES11.glBindBuffer(target, buffer);
+	}
+	
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		GLES11.glBufferData(target, size, data, usage);
+	}
+	
+	@Override
+	public void glBufferSubData(int target, int offset, int size, Buffer data) {
+		GLES11.glBufferSubData(target, offset, size, data);
+	}
+	
+	@Override
+	public void glVertexPointer(int size, int type, int stride, int offset) {
+		GLES11.glVertexPointer(size, type, stride, offset);
+	}
+	
+	@Override
+	public void glColorPointer(int size, int type, int stride, int offset) {
+		GLES11.glColorPointer(size, type, stride, offset);
+	}
+	
+	@Override
+	public void glTexCoordPointer(int size, int type, int stride, int offset) {
+		GLES11.glTexCoordPointer(size, type, stride, offset);
+	}
+	
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		GLES11.glDrawElements(mode, count, type, offset);
+	}
+	
+	@Override
+	public void glDrawArrays(int mode, int first, int count) {
+		GLES11.glDrawArrays(mode, first, count);
+	}
+	
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		GLES11.glClearColor(red, green, blue, alpha);
+	}
+	
+	@Override
+	public void glClear(int mask) {
+		GLES11.glClear(mask);
+	}
+}
@@ -28,8 +28,12 @@ public abstract class GLScreen implements GLController, GLView {
 		
 	@Override
 	public final void update(double deltaTime, int fps) {
+		FrameProfiler.begin(FrameProfiler.UPDATE);
 		update(fps, deltaTime);
+		FrameProfiler.end(FrameProfiler.UPDATE);
+		FrameProfiler.begin(FrameProfiler.DRAW);
 		draw(deltaTime, fps);
+		FrameProfiler.end(FrameProfiler.DRAW);
 	}
 	
 	/**
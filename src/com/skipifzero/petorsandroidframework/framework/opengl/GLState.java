@@ -0,0 +1,365 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import android.opengl.GLES10;
+import android.opengl.GLES11;
+
+/**
+ * A cache of the OpenGL state changed by the framework. Calls that wouldn't change anything are
+ * skipped, and the amount of skipped calls is counted.
+ * 
+ * All framework classes change the tracked state through this class, and so should code using
+ * the framework. If the tracked state is changed directly with OpenGL calls invalidate() must be
+ * called afterwards. The state is lost together with the OpenGL context, so newContext() (which also
+ * invalidates the state) is called automatically by GLActivity when the surface is created.
+ * 
+ * May only be used from the OpenGL thread.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-09
+ * @version 2
+ */
+public final class GLState {
+	
+	private static final int UNKNOWN = -1;
+	
+	//Textures and buffers
+	private static int boundTexture = UNKNOWN;
+	private static int boundArrayBuffer = UNKNOWN, boundElementArrayBuffer = UNKNOWN;
+	
+	//Client states, 1 if enabled, 0 if disabled, UNKNOWN if unknown.
+	private static int vertexArray = UNKNOWN, colorArray = UNKNOWN, textureCoordArray = UNKNOWN;
+	
+	//Capabilities, same as client states.
+	private static int blend = UNKNOWN, texture2D = UNKNOWN, alphaTest = UNKNOWN;
+	
+	private static int blendSrc = UNKNOWN, blendDst = UNKNOWN;
+	private static int alphaFunc = UNKNOWN;
+	private static float alphaRef;
+	private static boolean colorKnown = false;
+	private static float red, green, blue, alpha;
+	private static int matrixMode = UNKNOWN;
+	private static int texEnvMode = UNKNOWN;
+	
+	private static int skippedCalls = 0;
+	private static int context = 0;
+	private static final int[] tempIds = new int[1]; //Used by deleteTexture() to not allocate an array per call.
+	
+	//Private to avoid instantiation.
+	private GLState() {
+		throw new AssertionError();
+	}
+	
+	/**
+	 * Must be called when a new OpenGL context is created. Forgets all tracked state and marks
+	 * ids created in the old context as invalid, see getContext().
+	 */
+	public static void newContext() {
+		context++;
+		invalidate();
+	}
+	
+	/**
+	 * Returns a number identifying the current OpenGL context, changed by every call to
+	 * newContext(). Ids created in another context are no longer valid and must not be deleted.
+	 * @return the current context
+	 */
+	public static int getContext() {
+		return context;
+	}
+	
+	/**
+	 * Forgets all tracked state, the next call to each method will always reach OpenGL. Must be
+	 * called when the OpenGL context is recreated or after the tracked state has been changed
+	 * without going through this class.
+	 */
+	public static void invalidate() {
+		boundTexture = UNKNOWN;
+		boundArrayBuffer = UNKNOWN;
+		boundElementArrayBuffer = UNKNOWN;
+		vertexArray = UNKNOWN;
+		colorArray = UNKNOWN;
+		textureCoordArray = UNKNOWN;
+		blend = UNKNOWN;
+		texture2D = UNKNOWN;
+		alphaTest = UNKNOWN;
+		blendSrc = UNKNOWN;
+		blendDst = UNKNOWN;
+		alphaFunc = UNKNOWN;
+		colorKnown = false;
+		matrixMode = UNKNOWN;
+		texEnvMode = UNKNOWN;
+	}
+	
+	/**
+	 * Binds the texture with the specified id to GL_TEXTURE_2D.
+	 * @param id the texture id, 0 to unbind
+	 */
+	public static void bindTexture(int id) {
+		if(boundTexture == id) {
+			skippedCalls++;
+			return;
+		}
+		GL.get().glBindTexture(GLES10.GL_TEXTURE_2D, id);
+		RenderStats.textureBind();
+		boundTexture = id;
+	}
+	
+	/**
+	 * Returns the id of the texture bound to GL_TEXTURE_2D.
+	 * @return the bound texture id, or -1 if unknown
+	 */
+	public static int getBoundTexture() {
+		return boundTexture;
+	}
+	
+	/**
+	 * Deletes the texture with the specified id. If it's bound OpenGL reverts the binding to 0.
+	 * @param id the texture id
+	 */
+	public static void deleteTexture(int id) {
+		tempIds[0] = id;
+		GL.get().glDeleteTextures(1, tempIds, 0);
+		if(boundTexture == id) {
+			boundTexture = 0;
+		}
+	}
+	
+	/**
+	 * Binds the buffer object with the specified id to the specified target.
+	 * @param target GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER
+	 * @param id the buffer id, 0 to unbind
+	 */
+	public static void bindBuffer(int target, int id) {
+		if(target == GLES11.GL_ARRAY_BUFFER) {
+			if(boundArrayBuffer == id) {
+				skippedCalls++;
+				return;
+			}
+			boundArrayBuffer = id;
+		} else if(target == GLES11.GL_ELEMENT_ARRAY_BUFFER) {
+			if(boundElementArrayBuffer == id) {
+				skippedCalls++;
+				return;
+			}
+			boundElementArrayBuffer = id;
+		}
+		GL.get().glBindBuffer(target, id);
+		RenderStats.bufferBind();
+	}
+	
+	/**
+	 * Deletes the specified buffer objects. Bindings to deleted buffers revert to 0.
+	 * @param n the amount of buffers
+	 * @param ids array with the buffer ids
+	 * @param offset offset in ids
+	 */
+	public static void deleteBuffers(int n, int[] ids, int offset) {
+		GL.get().glDeleteBuffers(n, ids, offset);
+		for(int i = offset; i < offset + n; i++) {
+			if(boundArrayBuffer == ids[i]) {
+				boundArrayBuffer = 0;
+			}
+			if(boundElementArrayBuffer == ids[i]) {
+				boundElementArrayBuffer = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Enables the specified client state. GL_VERTEX_ARRAY, GL_COLOR_ARRAY and
+	 * GL_TEXTURE_COORD_ARRAY are tracked, others are always passed on.
+	 * @param array the client state
+	 */
+	public static void enableClientState(int array) {
+		setClientState(array, true);
+	}
+	
+	/**
+	 * Disables the specified client state. GL_VERTEX_ARRAY, GL_COLOR_ARRAY and
+	 * GL_TEXTURE_COORD_ARRAY are tracked, others are always passed on.
+	 * @param array the client state
+	 */
+	public static void disableClientState(int array) {
+		setClientState(array, false);
+	}
+	
+	/**
+	 * Enables the specified capability. GL_BLEND, GL_TEXTURE_2D and GL_ALPHA_TEST are tracked,
+	 * others are always passed on.
+	 * @param cap the capability
+	 */
+	public static void enable(int cap) {
+		setCapability(cap, true);
+	}
+	
+	/**
+	 * Disables the specified capability. GL_BLEND, GL_TEXTURE_2D and GL_ALPHA_TEST are tracked,
+	 * others are always passed on.
+	 * @param cap the capability
+	 */
+	public static void disable(int cap) {
+		setCapability(cap, false);
+	}
+	
+	/**
+	 * Returns whether the specified tracked capability is enabled. Unknown state, for example
+	 * after invalidate(), is reported as disabled.
+	 * @param cap GL_BLEND, GL_TEXTURE_2D or GL_ALPHA_TEST
+	 * @return whether the capability is enabled
+	 * @throws IllegalArgumentException if the capability isn't tracked
+	 */
+	public static boolean isEnabled(int cap) {
+		switch(cap) {
+		case GLES10.GL_BLEND: return blend == 1;
+		case GLES10.GL_TEXTURE_2D: return texture2D == 1;
+		case GLES10.GL_ALPHA_TEST: return alphaTest == 1;
+		default: throw new IllegalArgumentException("Capability must be GL_BLEND, GL_TEXTURE_2D or GL_ALPHA_TEST");
+		}
+	}
+	
+	/**
+	 * Sets the blend function.
+	 * @param src the source factor
+	 * @param dst the destination factor
+	 */
+	public static void blendFunc(int src, int dst) {
+		if(blendSrc == src && blendDst == dst) {
+			skippedCalls++;
+			return;
+		}
+		GL.get().glBlendFunc(src, dst);
+		blendSrc = src;
+		blendDst = dst;
+	}
+	
+	/**
+	 * Sets the alpha test function.
+	 * @param func the comparison function
+	 * @param ref the reference value
+	 */
+	public static void alphaFunc(int func, float ref) {
+		if(alphaFunc == func && alphaRef == ref) {
+			skippedCalls++;
+			return;
+		}
+		GL.get().glAlphaFunc(func, ref);
+		alphaFunc = func;
+		alphaRef = ref;
+	}
+	
+	/**
+	 * Sets the current color.
+	 * @param red the red component
+	 * @param green the green component
+	 * @param blue the blue component
+	 * @param alpha the alpha component
+	 */
+	public static void color(float red, float green, float blue, float alpha) {
+		if(colorKnown && GLState.red == red && GLState.green == green && GLState.blue == blue && GLState.alpha == alpha) {
+			skippedCalls++;
+			return;
+		}
+		GL.get().glColor4f(red, green, blue, alpha);
+		GLState.red = red;
+		GLState.green = green;
+		GLState.blue = blue;
+		GLState.alpha = alpha;
+		colorKnown = true;
+	}
+	
+	/**
+	 * Forgets the current color. Must be called after drawing with a color array, since the
+	 * current color is undefined afterwards.
+	 */
+	public static void invalidateColor() {
+		colorKnown = false;
+	}
+	
+	/**
+	 * Sets the texture environment mode (GL_TEXTURE_ENV_MODE), GL_MODULATE by default.
+	 * @param mode the texture environment mode
+	 */
+	public static void texEnvMode(int mode) {
+		if(texEnvMode == mode) {
+			skippedCalls++;
+			return;
+		}
+		GL.get().glTexEnvf(GLES10.GL_TEXTURE_ENV, GLES10.GL_TEXTURE_ENV_MODE, mode);
+		texEnvMode = mode;
+	}
+	
+	/**
+	 * Sets the current matrix mode.
+	 * @param mode the matrix mode
+	 */
+	public static void matrixMode(int mode) {
+		if(matrixMode == mode) {
+			skippedCalls++;
+			return;
+		}
+		GL.get().glMatrixMode(mode);
+		matrixMode = mode;
+	}
+	
+	/**
+	 * Returns the amount of skipped calls since the last call to resetSkippedCalls().
+	 * @return amount of skipped calls
+	 */
+	public static int getSkippedCalls() {
+		return skippedCalls;
+	}
+	
+	/**
+	 * Resets the amount of skipped calls.
+	 */
+	public static void resetSkippedCalls() {
+		skippedCalls = 0;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private static void setClientState(int array, boolean enabled) {
+		int value = enabled ? 1 : 0;
+		int current;
+		switch(array) {
+		case GLES10.GL_VERTEX_ARRAY: current = vertexArray; vertexArray = value; break;
+		case GLES10.GL_COLOR_ARRAY: current = colorArray; colorArray = value; break;
+		case GLES10.GL_TEXTURE_COORD_ARRAY: current = textureCoordArray; textureCoordArray = value; break;
+		default: current = UNKNOWN; break;
+		}
+		
+		if(current == value) {
+			skippedCalls++;
+			return;
+		}
+		if(enabled) {
+			GL.get().glEnableClientState(array);
+		} else {
+			GL.get().glDisableClientState(array);
+		}
+	}
+	
+	private static void setCapability(int cap, boolean enabled) {
+		int value = enabled ? 1 : 0;
+		int current;
+		switch(cap) {
+		case GLES10.GL_BLEND: current = blend; blend = value; break;
+		case GLES10.GL_TEXTURE_2D: current = texture2D; texture2D = value; break;
+		case GLES10.GL_ALPHA_TEST: current = alphaTest; alphaTest = value; break;
+		default: current = UNKNOWN; break;
+		}
+		
+		if(current == value) {
+			skippedCalls++;
+			return;
+		}
+		if(enabled) {
+			GL.get().glEnable(cap);
+		} else {
+			GL.get().glDisable(cap);
+		}
+	}
+}
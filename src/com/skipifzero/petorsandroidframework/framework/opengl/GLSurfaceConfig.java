@@ -0,0 +1,270 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+import android.opengl.GLSurfaceView;
+import android.util.Log;
+
+/**
+ * Immutable description of the framebuffer a GLActivity should use, created with a
+ * GLSurfaceConfig.Builder and returned from GLActivity.getGLSurfaceConfig().
+ * 
+ * The default configuration is the cheapest possible for 2D rendering: RGB565 with no depth
+ * buffer, no stencil buffer and no multisampling. A smaller framebuffer means less memory
+ * bandwidth per pixel, which matters on fill-rate limited devices.
+ * 
+ * Not every device has a config matching exactly, so instead of requiring an exact match every
+ * available config is scored by how far it is from the wanted one and the best is chosen. Missing
+ * depth or stencil bits that were asked for and slow (non-conformant or software) configs weigh the
+ * most, then wrong multisampling, then wrong color bits and last unneeded depth and stencil bits.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-16
+ * @version 1
+ */
+public class GLSurfaceConfig implements GLSurfaceView.EGLConfigChooser {
+	
+	/**
+	 * Color formats of the framebuffer.
+	 */
+	public enum ColorFormat {
+		RGB565(5, 6, 5, 0), RGB888(8, 8, 8, 0), RGBA8888(8, 8, 8, 8);
+		
+		private final int red, green, blue, alpha;
+		
+		private ColorFormat(int red, int green, int blue, int alpha) {
+			this.red = red;
+			this.green = green;
+			this.blue = blue;
+			this.alpha = alpha;
+		}
+	}
+	
+	/**
+	 * Builder used for building a GLSurfaceConfig.
+	 */
+	public static class Builder {
+		public static final ColorFormat DEFAULT_COLOR_FORMAT = ColorFormat.RGB565;
+		public static final int DEFAULT_DEPTH_BITS = 0, DEFAULT_STENCIL_BITS = 0, DEFAULT_SAMPLES = 0;
+		
+		private ColorFormat colorFormat;
+		private int depthBits, stencilBits, samples;
+		
+		public Builder() {
+			reset();
+		}
+		
+		/**
+		 * Resets all settings to their defaults.
+		 * @return this
+		 */
+		public Builder reset() {
+			this.colorFormat = DEFAULT_COLOR_FORMAT;
+			this.depthBits = DEFAULT_DEPTH_BITS;
+			this.stencilBits = DEFAULT_STENCIL_BITS;
+			this.samples = DEFAULT_SAMPLES;
+			return this;
+		}
+		
+		/**
+		 * Sets the color format of the framebuffer.
+		 * @param colorFormat the color format
+		 * @return this
+		 * @throws IllegalArgumentException if colorFormat is null
+		 */
+		public Builder setColorFormat(ColorFormat colorFormat) {
+			if(colorFormat == null) {
+				throw new IllegalArgumentException("ColorFormat is null, not allowed.");
+			}
+			this.colorFormat = colorFormat;
+			return this;
+		}
+		
+		/**
+		 * Sets the amount of depth buffer bits, 0 for no depth buffer.
+		 * @param depthBits the amount of depth bits
+		 * @return this
+		 * @throws IllegalArgumentException if depthBits < 0
+		 */
+		public Builder setDepthBits(int depthBits) {
+			if(depthBits < 0) {
+				throw new IllegalArgumentException("Depth bits must be >= 0");
+			}
+			this.depthBits = depthBits;
+			return this;
+		}
+		
+		/**
+		 * Sets the amount of stencil buffer bits, 0 for no stencil buffer.
+		 * @param stencilBits the amount of stencil bits
+		 * @return this
+		 * @throws IllegalArgumentException if stencilBits < 0
+		 */
+		public Builder setStencilBits(int stencilBits) {
+			if(stencilBits < 0) {
+				throw new IllegalArgumentException("Stencil bits must be >= 0");
+			}
+			this.stencilBits = stencilBits;
+			return this;
+		}
+		
+		/**
+		 * Sets the amount of samples per pixel used for multisample anti-aliasing (MSAA), 0 for no
+		 * multisampling.
+		 * @param samples the amount of samples
+		 * @return this
+		 * @throws IllegalArgumentException if samples < 0
+		 */
+		public Builder setSamples(int samples) {
+			if(samples < 0) {
+				throw new IllegalArgumentException("Samples must be >= 0");
+			}
+			this.samples = samples;
+			return this;
+		}
+		
+		/**
+		 * Builds a GLSurfaceConfig with the current settings.
+		 * @return the GLSurfaceConfig
+		 */
+		public GLSurfaceConfig build() {
+			return new GLSurfaceConfig(colorFormat, depthBits, stencilBits, samples);
+		}
+	}
+	
+	//Penalties used when scoring configs.
+	private static final int SLOW_CONFIG_PENALTY = 100000;
+	private static final int MISSING_BIT_PENALTY = 1000;
+	private static final int SAMPLE_PENALTY = 50;
+	private static final int COLOR_BIT_PENALTY = 10;
+	private static final int EXTRA_BIT_PENALTY = 2;
+	
+	private final ColorFormat colorFormat;
+	private final int depthBits, stencilBits, samples;
+	private final int[] value = new int[1];
+	
+	private GLSurfaceConfig(ColorFormat colorFormat, int depthBits, int stencilBits, int samples) {
+		this.colorFormat = colorFormat;
+		this.depthBits = depthBits;
+		this.stencilBits = stencilBits;
+		this.samples = samples;
+	}
+	
+	/**
+	 * Chooses the available config closest to this configuration. Called by GLSurfaceView.
+	 * @throws IllegalArgumentException if no config is available at all
+	 */
+	@Override
+	public EGLConfig chooseConfig(EGL10 egl, EGLDisplay display) {
+		//No attributes, returns every config that can be used for OpenGL ES 1.x window surfaces.
+		int[] attributes = {EGL10.EGL_NONE};
+		int[] configAmount = new int[1];
+		if(!egl.eglChooseConfig(display, attributes, null, 0, configAmount) || configAmount[0] <= 0) {
+			throw new IllegalArgumentException("No EGL configs available.");
+		}
+		EGLConfig[] configs = new EGLConfig[configAmount[0]];
+		if(!egl.eglChooseConfig(display, attributes, configs, configs.length, configAmount)) {
+			throw new IllegalArgumentException("Couldn't get EGL configs.");
+		}
+		
+		EGLConfig bestConfig = null;
+		int bestScore = Integer.MAX_VALUE;
+		for(int i = 0; i < configAmount[0]; i++) {
+			if(configs[i] == null) {
+				continue;
+			}
+			int score = score(egl, display, configs[i]);
+			if(score < bestScore) {
+				bestScore = score;
+				bestConfig = configs[i];
+			}
+		}
+		if(bestConfig == null) {
+			throw new IllegalArgumentException("No EGL config chosen.");
+		}
+		
+		Log.d("GLSurfaceConfig", "Chose config R" + get(egl, display, bestConfig, EGL10.EGL_RED_SIZE)
+				+ "G" + get(egl, display, bestConfig, EGL10.EGL_GREEN_SIZE)
+				+ "B" + get(egl, display, bestConfig, EGL10.EGL_BLUE_SIZE)
+				+ "A" + get(egl, display, bestConfig, EGL10.EGL_ALPHA_SIZE)
+				+ " depth " + get(egl, display, bestConfig, EGL10.EGL_DEPTH_SIZE)
+				+ " stencil " + get(egl, display, bestConfig, EGL10.EGL_STENCIL_SIZE)
+				+ " samples " + get(egl, display, bestConfig, EGL10.EGL_SAMPLES));
+		return bestConfig;
+	}
+	
+	/**
+	 * Returns the color format.
+	 * @return the color format
+	 */
+	public ColorFormat getColorFormat() {
+		return colorFormat;
+	}
+	
+	/**
+	 * Returns the amount of depth bits.
+	 * @return the amount of depth bits
+	 */
+	public int getDepthBits() {
+		return depthBits;
+	}
+	
+	/**
+	 * Returns the amount of stencil bits.
+	 * @return the amount of stencil bits
+	 */
+	public int getStencilBits() {
+		return stencilBits;
+	}
+	
+	/**
+	 * Returns the amount of samples per pixel.
+	 * @return the amount of samples
+	 */
+	public int getSamples() {
+		return samples;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	//Lower is better.
+	private int score(EGL10 egl, EGLDisplay display, EGLConfig config) {
+		int score = 0;
+		if(get(egl, display, config, EGL10.EGL_CONFIG_CAVEAT) == EGL10.EGL_SLOW_CONFIG) {
+			score += SLOW_CONFIG_PENALTY;
+		}
+		
+		score += COLOR_BIT_PENALTY * Math.abs(get(egl, display, config, EGL10.EGL_RED_SIZE) - colorFormat.red);
+		score += COLOR_BIT_PENALTY * Math.abs(get(egl, display, config, EGL10.EGL_GREEN_SIZE) - colorFormat.green);
+		score += COLOR_BIT_PENALTY * Math.abs(get(egl, display, config, EGL10.EGL_BLUE_SIZE) - colorFormat.blue);
+		score += COLOR_BIT_PENALTY * Math.abs(get(egl, display, config, EGL10.EGL_ALPHA_SIZE) - colorFormat.alpha);
+		
+		score += bufferPenalty(get(egl, display, config, EGL10.EGL_DEPTH_SIZE), depthBits);
+		score += bufferPenalty(get(egl, display, config, EGL10.EGL_STENCIL_SIZE), stencilBits);
+		
+		int configSamples = get(egl, display, config, EGL10.EGL_SAMPLE_BUFFERS) > 0 ? get(egl, display, config, EGL10.EGL_SAMPLES) : 0;
+		score += SAMPLE_PENALTY * Math.abs(configSamples - samples);
+		
+		return score;
+	}
+	
+	private static int bufferPenalty(int bits, int wantedBits) {
+		if(bits < wantedBits) {
+			return MISSING_BIT_PENALTY * (wantedBits - bits);
+		}
+		return EXTRA_BIT_PENALTY * (bits - wantedBits);
+	}
+	
+	//Returns the value of the specified attribute, 0 if it couldn't be read.
+	private int get(EGL10 egl, EGLDisplay display, EGLConfig config, int attribute) {
+		if(egl.eglGetConfigAttrib(display, config, attribute, value)) {
+			return value[0];
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,73 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A queue of OpenGL work (typically texture uploads) added from background threads and executed
+ * incrementally on the OpenGL thread, a limited amount of time per frame.
+ * 
+ * How to use:
+ * Do everything that doesn't need OpenGL (decoding bitmaps, building data) on the background
+ * thread, and add() a Runnable doing only the OpenGL part, for example creating a BitmapTexture
+ * from an already decoded Bitmap (FontRenderer.Builder.build(GLUploadQueue) does this for fonts).
+ * The OpenGL thread calls process() once per frame, which runs queued uploads in the order they
+ * were added until the time budget is used up.
+ * 
+ * add() may be called from any thread, process() only from the OpenGL thread.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-18
+ * @version 1
+ */
+public class GLUploadQueue {
+	
+	private final ConcurrentLinkedQueue<Runnable> uploads = new ConcurrentLinkedQueue<Runnable>();
+	
+	/**
+	 * Adds an upload to the queue. May be called from any thread.
+	 * @param upload the upload, run on the OpenGL thread
+	 * @throws IllegalArgumentException if upload is null
+	 */
+	public void add(Runnable upload) {
+		if(upload == null) {
+			throw new IllegalArgumentException("Upload is null, not allowed.");
+		}
+		uploads.add(upload);
+	}
+	
+	/**
+	 * Runs queued uploads until the queue is empty or the specified time budget is used up. At
+	 * least one upload is run if the queue isn't empty, so progress is always made even if a single
+	 * upload takes longer than the budget. May only be called from the OpenGL thread.
+	 * @param budgetNanos the time budget in nanoseconds
+	 * @return the amount of uploads run
+	 */
+	public int process(long budgetNanos) {
+		long deadline = System.nanoTime() + budgetNanos;
+		int amount = 0;
+		Runnable upload;
+		while((upload = uploads.poll()) != null) {
+			upload.run();
+			amount++;
+			if(System.nanoTime() >= deadline) {
+				break;
+			}
+		}
+		return amount;
+	}
+	
+	/**
+	 * Returns whether the queue is empty.
+	 * @return whether the queue is empty
+	 */
+	public boolean isEmpty() {
+		return uploads.isEmpty();
+	}
+	
+	/**
+	 * Removes all queued uploads without running them.
+	 */
+	public void clear() {
+		uploads.clear();
+	}
+}
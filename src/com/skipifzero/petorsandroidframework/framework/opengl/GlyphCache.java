@@ -0,0 +1,581 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * A cache of rasterized glyphs used by FontRenderer. Glyphs are rasterized with the specified
+ * Paint the first time they are requested and packed into fixed-size atlas pages, so fonts with
+ * large character sets (CJK, Cyrillic, Greek, etc) don't need a huge bitmap up front.
+ * 
+ * Packing:
+ * Each page is divided into shelves one cell high (all glyphs of a font have the same height),
+ * glyphs are placed on the first shelf with enough room left. New pages are created when needed
+ * up to the specified maximum amount of pages. When all pages are full the least recently used
+ * shelf is evicted, together with all glyphs on it. Shelves used since the last call to
+ * beginBatch() are never evicted, neither are shelves pinned with pin() (used for the preloaded
+ * characters).
+ * 
+ * Chars below 512 are looked up in an array, other chars in an open addressing hash map with
+ * primitive keys, so lookups don't allocate anything.
+ * 
+ * Distance fields:
+ * If a distance field spread is specified the glyphs are stored as signed distance fields (see
+ * DistanceField) instead of coverage. Each glyph is rasterized 4 times larger than its region
+ * and gets a margin as wide as the spread on every side, so the field has room to fall off
+ * outside the outline. The pages use linear filtering.
+ * 
+ * Staging:
+ * Until upload() is called the pages only exist as bitmaps, glyphs are rasterized into them
+ * without any OpenGL calls and nothing is evicted. So a GlyphCache can be created and filled with
+ * the preloaded characters on a background thread, and then handed to the OpenGL thread which
+ * only has to create the textures.
+ * 
+ * May only be used from the OpenGL thread, except for getAdvance(char). It never touches the
+ * cache, chars below 512 are looked up in a table filled in the constructor and other chars are
+ * measured with a separate Paint under a lock.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-19
+ * @version 4
+ */
+final class GlyphCache {
+	
+	/**
+	 * Returned by getGlyph() if the glyph couldn't be rasterized.
+	 */
+	public static final int NO_GLYPH = -1;
+	
+	private static final int NO_SHELF = -1;
+	private static final int DIRECT_AMOUNT = 512; //Chars below this are looked up in directGlyphs.
+	private static final int INITIAL_GLYPH_CAPACITY = 256;
+	private static final int INITIAL_MAP_CAPACITY = 64;
+	private static final int DISTANCE_FIELD_SCALE = 4; //Glyphs are rasterized this many times larger.
+	
+	private final Paint paint;
+	private final int regionHeight, cellHeight;
+	private final int xPadding, yPadding;
+	private final float baseline;
+	private final int pageSize, maxPages;
+	private final int shelvesPerPage;
+	
+	//Distance fields
+	private final int margin; //Also the spread of the distance field, 0 if not used.
+	private final Paint hiResPaint;
+	private final DistanceField distanceField;
+	private byte[] hiResPixels = new byte[0];
+	private byte[] fieldPixels = new byte[0];
+	
+	//Pages
+	private final BitmapTexture[] pages;
+	private final Bitmap[] stagedPages; //Pages not yet uploaded, null after upload().
+	private int pageAmount = 0;
+	private boolean staging = true;
+	private Bitmap blankShelf = null;
+	
+	//Shelves, shelf i is on page i / shelvesPerPage.
+	private int[] shelfX = new int[0]; //The x-coordinate of the free part of the shelf.
+	private int[] shelfLastUse = new int[0];
+	private boolean[] shelfPinned = new boolean[0];
+	private int shelfAmount = 0;
+	
+	//Glyphs
+	private char[] glyphChars = new char[INITIAL_GLYPH_CAPACITY];
+	private float[] glyphAdvances = new float[INITIAL_GLYPH_CAPACITY];
+	private int[] glyphShelves = new int[INITIAL_GLYPH_CAPACITY];
+	private int[] glyphX = new int[INITIAL_GLYPH_CAPACITY], glyphY = new int[INITIAL_GLYPH_CAPACITY];
+	private int[] glyphWidths = new int[INITIAL_GLYPH_CAPACITY];
+	private TextureRegion[] glyphRegions = new TextureRegion[INITIAL_GLYPH_CAPACITY];
+	private int[] freeGlyphs = new int[INITIAL_GLYPH_CAPACITY];
+	private int glyphAmount = 0, freeAmount = 0;
+	
+	//Char to glyph maps, map keys are char + 1 so 0 can mean empty.
+	private final int[] directGlyphs = new int[DIRECT_AMOUNT];
+	private int[] mapKeys = new int[INITIAL_MAP_CAPACITY];
+	private int[] mapValues = new int[INITIAL_MAP_CAPACITY];
+	private int mapSize = 0;
+	
+	private int currentUse = 1;
+	
+	//Used by getAdvance(char), directAdvances is never written after the constructor.
+	private final float[] directAdvances = new float[DIRECT_AMOUNT];
+	private final Paint measurePaint;
+	private final char[] measureChars = new char[1];
+	private final float[] measureWidths = new float[1];
+	
+	//Temporary variables
+	private final char[] tempChars = new char[1];
+	private final float[] tempWidths = new float[1];
+	
+	/**
+	 * Creates a new GlyphCache, no pages are created until the first glyph is rasterized. Makes no
+	 * OpenGL calls, the GlyphCache is staging until upload() is called.
+	 * @param paint the Paint to rasterize glyphs with
+	 * @param regionHeight the height of each glyph region
+	 * @param xPadding the horizontal padding around each glyph
+	 * @param yPadding the vertical padding around each glyph
+	 * @param baseline the y-coordinate of the baseline inside a glyph region
+	 * @param pageSize the width and height of each page
+	 * @param maxPages the maximum amount of pages
+	 * @param distanceFieldSpread the spread of the distance fields in pixels, 0 to store coverage
+	 */
+	public GlyphCache(Paint paint, int regionHeight, int xPadding, int yPadding, float baseline, int pageSize, int maxPages, int distanceFieldSpread) {
+		this.paint = paint;
+		this.regionHeight = regionHeight;
+		this.margin = distanceFieldSpread;
+		this.cellHeight = regionHeight + 2*margin + 2*yPadding;
+		this.xPadding = xPadding;
+		this.yPadding = yPadding;
+		this.baseline = baseline;
+		this.pageSize = pageSize;
+		this.maxPages = maxPages;
+		this.shelvesPerPage = pageSize / cellHeight;
+		if(shelvesPerPage < 1) {
+			throw new IllegalArgumentException("pageSize must be >= the height of a glyph.");
+		}
+		this.pages = new BitmapTexture[maxPages];
+		this.stagedPages = new Bitmap[maxPages];
+		
+		if(distanceFieldSpread > 0) {
+			this.hiResPaint = new Paint(paint);
+			this.hiResPaint.setTextSize(paint.getTextSize()*DISTANCE_FIELD_SCALE);
+			this.distanceField = new DistanceField();
+		} else {
+			this.hiResPaint = null;
+			this.distanceField = null;
+		}
+		
+		Arrays.fill(directGlyphs, NO_GLYPH);
+		
+		//Measured one at a time, like rasterize() does, so neighbours can't affect the widths.
+		this.measurePaint = new Paint(paint);
+		for(char c = 0; c < DIRECT_AMOUNT; c++) {
+			measureChars[0] = c;
+			measurePaint.getTextWidths(measureChars, 0, 1, measureWidths);
+			directAdvances[c] = measureWidths[0];
+		}
+	}
+	
+	/**
+	 * Creates textures of the pages staged so far, after this glyphs are rasterized directly into
+	 * the textures. Must be called on the OpenGL thread before any TextureRegion or page is used.
+	 * Does nothing if already called.
+	 */
+	public void upload() {
+		if(!staging) {
+			return;
+		}
+		int boundTexture = GLState.getBoundTexture();
+		for(int i = 0; i < pageAmount; i++) {
+			pages[i] = new BitmapTexture(stagedPages[i]);
+			stagedPages[i].recycle();
+			stagedPages[i] = null;
+			if(distanceField != null) {
+				pages[i].setSmoothing(true); //Distance fields must be interpolated.
+			}
+		}
+		restoreBinding(boundTexture);
+		for(int glyph = 0; glyph < glyphAmount; glyph++) {
+			createRegion(glyph);
+		}
+		staging = false;
+	}
+	
+	/**
+	 * Marks the start of a new batch. Glyphs requested after this call are guaranteed to stay
+	 * cached until the next call.
+	 */
+	public void beginBatch() {
+		currentUse++;
+	}
+	
+	/**
+	 * Returns the glyph for the specified char, rasterizes it if it isn't cached.
+	 * @param c the char
+	 * @return the glyph, or NO_GLYPH if there is no room left for it
+	 */
+	public int getGlyph(char c) {
+		int glyph = lookup(c);
+		if(glyph == NO_GLYPH) {
+			glyph = rasterize(c);
+			if(glyph == NO_GLYPH) {
+				return NO_GLYPH;
+			}
+		}
+		shelfLastUse[glyphShelves[glyph]] = currentUse;
+		return glyph;
+	}
+	
+	/**
+	 * Returns the TextureRegion of the specified glyph. Only valid until the glyph is evicted.
+	 * The region includes the distance field margin on every side, if any.
+	 * @param glyph the glyph
+	 * @return the TextureRegion
+	 */
+	public TextureRegion getRegion(int glyph) {
+		return glyphRegions[glyph];
+	}
+	
+	/**
+	 * Returns the advance (width) of the specified glyph in pixels.
+	 * @param glyph the glyph
+	 * @return the advance
+	 */
+	public float getAdvance(int glyph) {
+		return glyphAdvances[glyph];
+	}
+	
+	/**
+	 * Returns the advance (width) of the specified char in pixels without rasterizing it. May be
+	 * called from any thread.
+	 * @param c the char
+	 * @return the advance
+	 */
+	public float getAdvance(char c) {
+		if(c < DIRECT_AMOUNT) {
+			return directAdvances[c];
+		}
+		synchronized(measurePaint) {
+			measureChars[0] = c;
+			measurePaint.getTextWidths(measureChars, 0, 1, measureWidths);
+			return measureWidths[0];
+		}
+	}
+	
+	/**
+	 * Pins all shelves containing glyphs, they will never be evicted.
+	 */
+	public void pin() {
+		for(int i = 0; i < shelfAmount; i++) {
+			if(shelfX[i] > 0) {
+				shelfPinned[i] = true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the specified page.
+	 * @param index the index of the page
+	 * @return the page
+	 */
+	public Texture getPage(int index) {
+		if(index < 0 || index >= pageAmount) {
+			throw new IllegalArgumentException("Index must be >= 0 and < " + pageAmount);
+		}
+		return pages[index];
+	}
+	
+	/**
+	 * Returns the amount of created pages.
+	 * @return amount of pages
+	 */
+	public int getPageAmount() {
+		return pageAmount;
+	}
+	
+	/**
+	 * Returns the amount of cached glyphs.
+	 * @return amount of glyphs
+	 */
+	public int getGlyphAmount() {
+		return glyphAmount - freeAmount;
+	}
+	
+	/**
+	 * Disposes of all pages.
+	 */
+	public void dispose() {
+		for(int i = 0; i < pageAmount; i++) {
+			if(staging) {
+				stagedPages[i].recycle();
+			} else {
+				pages[i].dispose();
+			}
+		}
+		if(blankShelf != null) {
+			blankShelf.recycle();
+		}
+	}
+	
+	/*
+	 * Private methods - Rasterizing and packing
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private int rasterize(char c) {
+		tempChars[0] = c;
+		paint.getTextWidths(tempChars, 0, 1, tempWidths);
+		float advance = tempWidths[0];
+		
+		//Rows of ALPHA_8 bitmaps are 4 byte aligned, so the width is rounded up to a multiple of 4.
+		int bitmapWidth = ((int)Math.ceil(advance) + 2*margin + 3) & ~3;
+		int bitmapHeight = regionHeight + 2*margin;
+		if(bitmapWidth < 4) {
+			bitmapWidth = 4;
+		}
+		if(bitmapWidth + 2*xPadding > pageSize) {
+			bitmapWidth = (pageSize - 2*xPadding) & ~3;
+		}
+		int cellWidth = bitmapWidth + 2*xPadding;
+		
+		//Creating pages and uploading glyphs binds textures, the binding is restored afterwards so
+		//an active SpriteBatcher isn't affected.
+		int boundTexture = staging ? -1 : GLState.getBoundTexture();
+		int shelf = findShelf(cellWidth);
+		if(shelf == NO_SHELF) {
+			restoreBinding(boundTexture);
+			return NO_GLYPH;
+		}
+		int page = shelf / shelvesPerPage;
+		int x = shelfX[shelf] + xPadding;
+		int y = (shelf % shelvesPerPage)*cellHeight + yPadding;
+		shelfX[shelf] += cellWidth;
+		
+		Bitmap bitmap = distanceField != null ? rasterizeDistanceField(bitmapWidth, bitmapHeight) : rasterizeCoverage(bitmapWidth, bitmapHeight);
+		if(staging) {
+			new Canvas(stagedPages[page]).drawBitmap(bitmap, x, y, null); //Page is transparent, so this is a plain copy.
+		} else {
+			pages[page].update(x, y, bitmap);
+		}
+		bitmap.recycle();
+		restoreBinding(boundTexture);
+		
+		int glyph = newGlyph();
+		glyphChars[glyph] = c;
+		glyphAdvances[glyph] = advance;
+		glyphShelves[glyph] = shelf;
+		glyphX[glyph] = x;
+		glyphY[glyph] = y;
+		glyphWidths[glyph] = bitmapWidth;
+		put(c, glyph);
+		if(!staging) {
+			createRegion(glyph);
+		}
+		return glyph;
+	}
+	
+	private void createRegion(int glyph) {
+		glyphRegions[glyph] = new TextureRegion(pages[glyphShelves[glyph] / shelvesPerPage], glyphX[glyph], glyphY[glyph], glyphWidths[glyph], regionHeight + 2*margin);
+	}
+	
+	private Bitmap rasterizeCoverage(int width, int height) {
+		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+		bitmap.eraseColor(0x00000000); //Transparent Background
+		new Canvas(bitmap).drawText(tempChars, 0, 1, 0, baseline, paint);
+		return bitmap;
+	}
+	
+	private Bitmap rasterizeDistanceField(int width, int height) {
+		int hiResWidth = width*DISTANCE_FIELD_SCALE;
+		int hiResHeight = height*DISTANCE_FIELD_SCALE;
+		if(hiResPixels.length < hiResWidth*hiResHeight) {
+			hiResPixels = new byte[hiResWidth*hiResHeight];
+		}
+		if(fieldPixels.length < width*height) {
+			fieldPixels = new byte[width*height];
+		}
+		
+		//Widths are multiples of 4, so the rows of the ALPHA_8 bitmaps have no row padding. The
+		//field is sampled half a pixel past the center of each block, so the glyph is moved too.
+		Bitmap hiRes = Bitmap.createBitmap(hiResWidth, hiResHeight, Bitmap.Config.ALPHA_8);
+		hiRes.eraseColor(0x00000000); //Transparent Background
+		float offset = 0.5f;
+		new Canvas(hiRes).drawText(tempChars, 0, 1, margin*DISTANCE_FIELD_SCALE + offset, (margin + baseline)*DISTANCE_FIELD_SCALE + offset, hiResPaint);
+		hiRes.copyPixelsToBuffer(ByteBuffer.wrap(hiResPixels, 0, hiResWidth*hiResHeight));
+		hiRes.recycle();
+		
+		distanceField.generate(hiResPixels, hiResWidth, hiResHeight, DISTANCE_FIELD_SCALE, margin, fieldPixels);
+		
+		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+		bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(fieldPixels, 0, width*height));
+		return bitmap;
+	}
+	
+	private int findShelf(int cellWidth) {
+		//First shelf with room left.
+		for(int i = 0; i < shelfAmount; i++) {
+			if(shelfX[i] + cellWidth <= pageSize) {
+				return i;
+			}
+		}
+		
+		//New page.
+		if(pageAmount < maxPages) {
+			int firstShelf = shelfAmount;
+			addPage();
+			return firstShelf;
+		}
+		
+		//Least recently used shelf not used in the current batch. Nothing is evicted while staging.
+		if(staging) {
+			return NO_SHELF;
+		}
+		int lru = NO_SHELF;
+		for(int i = 0; i < shelfAmount; i++) {
+			if(shelfPinned[i] || shelfLastUse[i] == currentUse) {
+				continue;
+			}
+			if(lru == NO_SHELF || shelfLastUse[i] - shelfLastUse[lru] < 0) {
+				lru = i;
+			}
+		}
+		if(lru != NO_SHELF) {
+			evict(lru);
+		}
+		return lru;
+	}
+	
+	private void addPage() {
+		Bitmap bitmap = Bitmap.createBitmap(pageSize, pageSize, Bitmap.Config.ALPHA_8);
+		bitmap.eraseColor(0x00000000); //Transparent Background
+		if(staging) {
+			stagedPages[pageAmount] = bitmap; //Uploaded in upload().
+		} else {
+			pages[pageAmount] = new BitmapTexture(bitmap);
+			bitmap.recycle();
+			if(distanceField != null) {
+				pages[pageAmount].setSmoothing(true); //Distance fields must be interpolated.
+			}
+		}
+		pageAmount++;
+		
+		int newShelfAmount = shelfAmount + shelvesPerPage;
+		shelfX = Arrays.copyOf(shelfX, newShelfAmount);
+		shelfLastUse = Arrays.copyOf(shelfLastUse, newShelfAmount);
+		shelfPinned = Arrays.copyOf(shelfPinned, newShelfAmount);
+		shelfAmount = newShelfAmount;
+	}
+	
+	private void evict(int shelf) {
+		for(int glyph = 0; glyph < glyphAmount; glyph++) {
+			if(glyphRegions[glyph] != null && glyphShelves[glyph] == shelf) {
+				remove(glyphChars[glyph]);
+				glyphRegions[glyph] = null;
+				freeGlyphs[freeAmount++] = glyph;
+			}
+		}
+		
+		//Clears the shelf so old glyphs can't bleed into the padding of new ones.
+		if(blankShelf == null) {
+			blankShelf = Bitmap.createBitmap(pageSize, cellHeight, Bitmap.Config.ALPHA_8);
+			blankShelf.eraseColor(0x00000000);
+		}
+		pages[shelf / shelvesPerPage].update(0, (shelf % shelvesPerPage)*cellHeight, blankShelf);
+		shelfX[shelf] = 0;
+	}
+	
+	private int newGlyph() {
+		if(freeAmount > 0) {
+			return freeGlyphs[--freeAmount];
+		}
+		if(glyphAmount == glyphChars.length) {
+			int capacity = glyphChars.length * 2;
+			glyphChars = Arrays.copyOf(glyphChars, capacity);
+			glyphAdvances = Arrays.copyOf(glyphAdvances, capacity);
+			glyphShelves = Arrays.copyOf(glyphShelves, capacity);
+			glyphX = Arrays.copyOf(glyphX, capacity);
+			glyphY = Arrays.copyOf(glyphY, capacity);
+			glyphWidths = Arrays.copyOf(glyphWidths, capacity);
+			glyphRegions = Arrays.copyOf(glyphRegions, capacity);
+			freeGlyphs = Arrays.copyOf(freeGlyphs, capacity);
+		}
+		return glyphAmount++;
+	}
+	
+	private static void restoreBinding(int texture) {
+		if(texture >= 0) {
+			GLState.bindTexture(texture);
+		}
+	}
+	
+	/*
+	 * Private methods - Char to glyph map
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private int lookup(char c) {
+		if(c < DIRECT_AMOUNT) {
+			return directGlyphs[c];
+		}
+		int mask = mapKeys.length - 1;
+		for(int i = hash(c) & mask; mapKeys[i] != 0; i = (i + 1) & mask) {
+			if(mapKeys[i] == c + 1) {
+				return mapValues[i];
+			}
+		}
+		return NO_GLYPH;
+	}
+	
+	private void put(char c, int glyph) {
+		if(c < DIRECT_AMOUNT) {
+			directGlyphs[c] = glyph;
+			return;
+		}
+		if((mapSize + 1) * 2 > mapKeys.length) {
+			growMap();
+		}
+		int mask = mapKeys.length - 1;
+		int i = hash(c) & mask;
+		while(mapKeys[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		mapKeys[i] = c + 1;
+		mapValues[i] = glyph;
+		mapSize++;
+	}
+	
+	private void remove(char c) {
+		if(c < DIRECT_AMOUNT) {
+			directGlyphs[c] = NO_GLYPH;
+			return;
+		}
+		int mask = mapKeys.length - 1;
+		int i = hash(c) & mask;
+		while(mapKeys[i] != c + 1) {
+			if(mapKeys[i] == 0) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		
+		//Backward shift deletion, moves later entries of the probe sequence into the hole so no
+		//tombstones are needed.
+		int j = i;
+		while(true) {
+			j = (j + 1) & mask;
+			if(mapKeys[j] == 0) {
+				break;
+			}
+			int home = hash((char)(mapKeys[j] - 1)) & mask;
+			if(((j - home) & mask) >= ((j - i) & mask)) {
+				mapKeys[i] = mapKeys[j];
+				mapValues[i] = mapValues[j];
+				i = j;
+			}
+		}
+		mapKeys[i] = 0;
+		mapSize--;
+	}
+	
+	private void growMap() {
+		int[] oldKeys = mapKeys;
+		int[] oldValues = mapValues;
+		mapKeys = new int[oldKeys.length * 2];
+		mapValues = new int[oldKeys.length * 2];
+		mapSize = 0;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != 0) {
+				put((char)(oldKeys[i] - 1), oldValues[i]);
+			}
+		}
+	}
+	
+	private static int hash(char c) {
+		int h = c * 0x9E3779B1;
+		return h ^ (h >>> 16);
+	}
+}
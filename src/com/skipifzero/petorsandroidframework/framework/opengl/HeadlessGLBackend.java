@@ -0,0 +1,364 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.nio.Buffer;
+
+import android.graphics.Bitmap;
+
+/**
+ * A GLBackend that doesn't render anything, it only records the commands it receives and counts
+ * draw calls, drawn indices and binds. Used to benchmark and test the rendering pipeline without
+ * a device or an OpenGL context.
+ * 
+ * How to use:
+ * Set it with GL.setBackend() (and call GLState.invalidate()), run the code to test, and check
+ * the counters or the recorded commands. reset() clears everything recorded so far. Texture and
+ * buffer ids are generated from a counter, so they are never 0.
+ * 
+ * Each command is recorded as one of the command constants in this class. Recording the command
+ * log can be turned off with setRecordCommands(false) when only the counters are of interest.
+ * 
+ * HeadlessRenderCheck (in the sample app package) is an example that runs on a plain JVM, see it
+ * for how to run it with android.jar on the classpath.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-10
+ * @version 1
+ */
+public class HeadlessGLBackend implements GLBackend {
+	
+	//Commands
+	public static final int GEN_TEXTURES = 0, DELETE_TEXTURES = 1, BIND_TEXTURE = 2, TEX_PARAMETER = 3, TEX_IMAGE_2D = 4;
+	public static final int ENABLE = 5, DISABLE = 6, ENABLE_CLIENT_STATE = 7, DISABLE_CLIENT_STATE = 8, BLEND_FUNC = 9, COLOR = 10;
+	public static final int MATRIX_MODE = 11, LOAD_IDENTITY = 12, PUSH_MATRIX = 13, POP_MATRIX = 14, TRANSLATE = 15, ORTHO = 16, VIEWPORT = 17;
+	public static final int VERTEX_POINTER = 18, COLOR_POINTER = 19, TEX_COORD_POINTER = 20;
+	public static final int GEN_BUFFERS = 21, DELETE_BUFFERS = 22, BIND_BUFFER = 23, BUFFER_DATA = 24, BUFFER_SUB_DATA = 25;
+	public static final int DRAW_ELEMENTS = 26, DRAW_ARRAYS = 27, TEX_SUB_IMAGE_2D = 28, ALPHA_FUNC = 29;
+	public static final int CLEAR_COLOR = 30, CLEAR = 31, TEX_ENV = 32;
+	private static final int COMMAND_AMOUNT = 33;
+	
+	private boolean recordCommands = true;
+	private int[] commands = new int[1024];
+	private int commandAmount;
+	private final int[] commandCounts = new int[COMMAND_AMOUNT];
+	
+	private int drawCalls, drawnIndices, textureBinds, bufferBinds, uploadedBytes;
+	private int nextId = 1;
+	
+	/**
+	 * Sets whether commands should be recorded in the command log. The counters are always
+	 * updated.
+	 * @param recordCommands whether commands should be recorded
+	 */
+	public void setRecordCommands(boolean recordCommands) {
+		this.recordCommands = recordCommands;
+	}
+	
+	/**
+	 * Clears the command log and all counters.
+	 */
+	public void reset() {
+		commandAmount = 0;
+		for(int i = 0; i < COMMAND_AMOUNT; i++) {
+			commandCounts[i] = 0;
+		}
+		drawCalls = 0;
+		drawnIndices = 0;
+		textureBinds = 0;
+		bufferBinds = 0;
+		uploadedBytes = 0;
+	}
+	
+	/**
+	 * Returns the amount of commands in the command log.
+	 * @return amount of recorded commands
+	 */
+	public int getCommandAmount() {
+		return commandAmount;
+	}
+	
+	/**
+	 * Returns the command at the specified index in the command log.
+	 * @param index the index
+	 * @return the command
+	 */
+	public int getCommand(int index) {
+		if(index < 0 || index >= commandAmount) {
+			throw new IllegalArgumentException("Index must be >= 0 and < " + commandAmount);
+		}
+		return commands[index];
+	}
+	
+	/**
+	 * Returns how many times the specified command has been received since the last reset.
+	 * Counted even if commands aren't recorded.
+	 * @param command the command
+	 * @return amount of times the command was received
+	 */
+	public int getCommandCount(int command) {
+		return commandCounts[command];
+	}
+	
+	/**
+	 * Returns the amount of draw calls (glDrawElements and glDrawArrays).
+	 * @return amount of draw calls
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+	
+	/**
+	 * Returns the amount of indices drawn, i.e. the sum of the count parameter of all draw calls.
+	 * For glDrawArrays that is the amount of vertices, for glDrawElements the amount of indices.
+	 * @return amount of drawn indices
+	 */
+	public int getDrawnIndices() {
+		return drawnIndices;
+	}
+	
+	/**
+	 * Returns the amount of glBindTexture calls.
+	 * @return amount of texture binds
+	 */
+	public int getTextureBinds() {
+		return textureBinds;
+	}
+	
+	/**
+	 * Returns the amount of glBindBuffer calls.
+	 * @return amount of buffer binds
+	 */
+	public int getBufferBinds() {
+		return bufferBinds;
+	}
+	
+	/**
+	 * Returns the amount of bytes uploaded with glBufferData and glBufferSubData.
+	 * @return amount of uploaded bytes
+	 */
+	public int getUploadedBytes() {
+		return uploadedBytes;
+	}
+	
+	@Override
+	public void glGenTextures(int n, int[] textures, int offset) {
+		record(GEN_TEXTURES);
+		generateIds(n, textures, offset);
+	}
+	
+	@Override
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		record(DELETE_TEXTURES);
+	}
+	
+	@Override
+	public void glBindTexture(int target, int texture) {
+		record(BIND_TEXTURE);
+		textureBinds++;
+	}
+	
+	@Override
+	public void glTexParameterf(int target, int pname, float param) {
+		record(TEX_PARAMETER);
+	}
+	
+	@Override
+	public void glTexEnvf(int target, int pname, float param) {
+		record(TEX_ENV);
+	}
+	
+	@Override
+	public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+		record(TEX_IMAGE_2D);
+	}
+	
+	@Override
+	public void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap) {
+		record(TEX_SUB_IMAGE_2D);
+	}
+	
+	@Override
+	public void glEnable(int cap) {
+		record(ENABLE);
+	}
+	
+	@Override
+	public void glDisable(int cap) {
+		record(DISABLE);
+	}
+	
+	@Override
+	public void glEnableClientState(int array) {
+		record(ENABLE_CLIENT_STATE);
+	}
+	
+	@Override
+	public void glDisableClientState(int array) {
+		record(DISABLE_CLIENT_STATE);
+	}
+	
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) {
+		record(BLEND_FUNC);
+	}
+	
+	@Override
+	public void glAlphaFunc(int func, float ref) {
+		record(ALPHA_FUNC);
+	}
+	
+	@Override
+	public void glColor4f(float red, float green, float blue, float alpha) {
+		record(COLOR);
+	}
+	
+	@Override
+	public void glMatrixMode(int mode) {
+		record(MATRIX_MODE);
+	}
+	
+	@Override
+	public void glLoadIdentity() {
+		record(LOAD_IDENTITY);
+	}
+	
+	@Override
+	public void glPushMatrix() {
+		record(PUSH_MATRIX);
+	}
+	
+	@Override
+	public void glPopMatrix() {
+		record(POP_MATRIX);
+	}
+	
+	@Override
+	public void glTranslatef(float x, float y, float z) {
+		record(TRANSLATE);
+	}
+	
+	@Override
+	public void glOrthof(float left, float right, float bottom, float top, float zNear, float zFar) {
+		record(ORTHO);
+	}
+	
+	@Override
+	public void glViewport(int x, int y, int width, int height) {
+		record(VIEWPORT);
+	}
+	
+	@Override
+	public void glVertexPointer(int size, int type, int stride, Buffer pointer) {
+		record(VERTEX_POINTER);
+	}
+	
+	@Override
+	public void glColorPointer(int size, int type, int stride, Buffer pointer) {
+		record(COLOR_POINTER);
+	}
+	
+	@Override
+	public void glTexCoordPointer(int size, int type, int stride, Buffer pointer) {
+		record(TEX_COORD_POINTER);
+	}
+	
+	@Override
+	public void glDrawElements(int mode, int count, int type, Buffer indices) {
+		record(DRAW_ELEMENTS);
+		drawCalls++;
+		drawnIndices += count;
+	}
+	
+	@Override
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		record(GEN_BUFFERS);
+		generateIds(n, buffers, offset);
+	}
+	
+	@Override
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		record(DELETE_BUFFERS);
+	}
+	
+	@Override
+	public void glBindBuffer(int target, int buffer) {
+		record(BIND_BUFFER);
+		bufferBinds++;
+	}
+	
+	@Override
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		record(BUFFER_DATA);
+		if(data != null) {
+			uploadedBytes += size;
+		}
+	}
+	
+	@Override
+	public void glBufferSubData(int target, int offset, int size, Buffer data) {
+		record(BUFFER_SUB_DATA);
+		uploadedBytes += size;
+	}
+	
+	@Override
+	public void glVertexPointer(int size, int type, int stride, int offset) {
+		record(VERTEX_POINTER);
+	}
+	
+	@Override
+	public void glColorPointer(int size, int type, int stride, int offset) {
+		record(COLOR_POINTER);
+	}
+	
+	@Override
+	public void glTexCoordPointer(int size, int type, int stride, int offset) {
+		record(TEX_COORD_POINTER);
+	}
+	
+	@Override
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		record(DRAW_ELEMENTS);
+		drawCalls++;
+		drawnIndices += count;
+	}
+	
+	@Override
+	public void glDrawArrays(int mode, int first, int count) {
+		record(DRAW_ARRAYS);
+		drawCalls++;
+		drawnIndices += count;
+	}
+	
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		record(CLEAR_COLOR);
+	}
+	
+	@Override
+	public void glClear(int mask) {
+		record(CLEAR);
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private void record(int command) {
+		commandCounts[command]++;
+		if(!recordCommands) {
+			return;
+		}
+		if(commandAmount == commands.length) {
+			int[] newCommands = new int[commands.length * 2];
+			System.arraycopy(commands, 0, newCommands, 0, commandAmount);
+			commands = newCommands;
+		}
+		commands[commandAmount++] = command;
+	}
+	
+	private void generateIds(int n, int[] ids, int offset) {
+		for(int i = offset; i < offset + n; i++) {
+			ids[i] = nextId++;
+		}
+	}
+}
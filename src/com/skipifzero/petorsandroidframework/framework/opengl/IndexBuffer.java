@@ -0,0 +1,131 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import android.opengl.GLES10;
+import android.opengl.GLES11;
+
+/**
+ * Indices that can be shared by several Vertices, so Vertices with the same index pattern (for
+ * example the chunks of a TileMap) don't need their own copy of the indices. Set with the Vertices
+ * constructor taking an IndexBuffer.
+ * 
+ * If a vertex buffer object is used the indices are uploaded once to a single index buffer
+ * object, no matter how many Vertices use them. Buffer objects are lost together with the OpenGL
+ * context, so reload() must be called when the context is recreated.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-19
+ * @version 1
+ */
+public class IndexBuffer {
+	
+	private static final int INDICES_SIZE = 2;
+	
+	private final ShortBuffer indices;
+	private final boolean useVBO;
+	private int bufferId;
+	private boolean bufferCreated;
+	private final int[] tempIds = new int[1];
+	
+	/**
+	 * Creates a new IndexBuffer containing the specified indices.
+	 * @param indices the indices
+	 * @param useVBO whether a vertex buffer object (OpenGL ES 1.1) should be used
+	 */
+	public IndexBuffer(short[] indices, boolean useVBO) {
+		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(INDICES_SIZE * indices.length);
+		byteBuffer.order(ByteOrder.nativeOrder());
+		this.indices = byteBuffer.asShortBuffer();
+		this.indices.put(indices);
+		this.indices.flip();
+		this.useVBO = useVBO;
+	}
+	
+	/**
+	 * Creates an IndexBuffer with the index pattern for the specified amount of quads (two
+	 * triangles each), the same pattern as used by SpriteBatcher. First quad is 0 1 2 2 3 0,
+	 * second is 4 5 6 6 7 4, etc.
+	 * @param quadAmount the amount of quads
+	 * @param useVBO whether a vertex buffer object (OpenGL ES 1.1) should be used
+	 * @return the new IndexBuffer
+	 * @throws IllegalArgumentException if quadAmount <= 0 or quadAmount > SpriteBatcher.MAX_CAPACITY
+	 */
+	public static IndexBuffer createQuadIndices(int quadAmount, boolean useVBO) {
+		if(quadAmount <= 0 || quadAmount > SpriteBatcher.MAX_CAPACITY) {
+			throw new IllegalArgumentException("Quad amount must be > 0 and <= " + SpriteBatcher.MAX_CAPACITY);
+		}
+		short[] indices = new short[quadAmount*6];
+		int j = 0;
+		for(int i = 0; i < indices.length; i += 6, j += 4) {
+			indices[i + 0] = (short)(j + 0);
+			indices[i + 1] = (short)(j + 1);
+			indices[i + 2] = (short)(j + 2);
+			indices[i + 3] = (short)(j + 2);
+			indices[i + 4] = (short)(j + 3);
+			indices[i + 5] = (short)(j + 0);
+		}
+		return new IndexBuffer(indices, useVBO);
+	}
+	
+	/**
+	 * Returns the amount of indices.
+	 * @return amount of indices
+	 */
+	public int size() {
+		return indices.limit();
+	}
+	
+	/**
+	 * Recreates the index buffer object. Must be called after the OpenGL context has been lost,
+	 * the indices will be uploaded again the next time they are drawn. Does nothing if a vertex
+	 * buffer object isn't used.
+	 */
+	public void reload() {
+		//The old buffer died with the old context, so it shouldn't be deleted.
+		bufferCreated = false;
+	}
+	
+	/**
+	 * Deletes the index buffer object. Does nothing if a vertex buffer object isn't used.
+	 */
+	public void dispose() {
+		if(!bufferCreated) {
+			return;
+		}
+		tempIds[0] = bufferId;
+		GLState.deleteBuffers(1, tempIds, 0);
+		bufferCreated = false;
+	}
+	
+	/*
+	 * Package-private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	/*
+	 * Draws the bound vertices with the specified range of these indices, used by Vertices.
+	 */
+	void draw(int primitiveType, int offset, int amount) {
+		if(useVBO) {
+			if(!bufferCreated) {
+				GL.get().glGenBuffers(1, tempIds, 0);
+				bufferId = tempIds[0];
+				bufferCreated = true;
+				
+				indices.position(0);
+				GLState.bindBuffer(GLES11.GL_ELEMENT_ARRAY_BUFFER, bufferId);
+				GL.get().glBufferData(GLES11.GL_ELEMENT_ARRAY_BUFFER, indices.limit() * INDICES_SIZE, indices, GLES11.GL_STATIC_DRAW);
+			} else {
+				GLState.bindBuffer(GLES11.GL_ELEMENT_ARRAY_BUFFER, bufferId);
+			}
+			GL.get().glDrawElements(primitiveType, amount, GLES10.GL_UNSIGNED_SHORT, offset * INDICES_SIZE);
+			GLState.bindBuffer(GLES11.GL_ELEMENT_ARRAY_BUFFER, 0);
+			return;
+		}
+		indices.position(offset);
+		GL.get().glDrawElements(primitiveType, amount, GLES10.GL_UNSIGNED_SHORT, indices);
+	}
+}
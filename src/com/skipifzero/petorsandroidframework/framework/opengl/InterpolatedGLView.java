@@ -0,0 +1,22 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * A GLView drawing state updated with a fixed timestep, see FixedTimestepGLController.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-13
+ * @version 1
+ */
+public interface InterpolatedGLView extends GLView {
+	
+	/**
+	 * Should be called once each frame from the current FixedTimestepGLControllers draw method.
+	 * Positions etc should be interpolated between the previous and the current logic state
+	 * with alpha.
+	 * @param deltaTime the time in seconds since the last frame
+	 * @param fps the amount of rendered frames the last second
+	 * @param alpha how far the time of this frame is between the previous logic state (0) and the
+	 * current logic state (1)
+	 */
+	public void draw(double deltaTime, int fps, double alpha);
+}
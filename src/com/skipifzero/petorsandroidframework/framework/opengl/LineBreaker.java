@@ -0,0 +1,178 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.util.Arrays;
+
+/**
+ * Breaks ranges of CharSequences into lines that aren't wider than a specified width. Used by
+ * FontRenderer, but works with any Measurer so it can be used (and tested) without OpenGL.
+ * 
+ * Lines are broken greedily in a single pass: at the last space before the line becomes too wide,
+ * or in the middle of a word if the word doesn't fit on a line of its own. The space a line is
+ * broken at is not included in either line, and neither are any other spaces at the end of a
+ * line, so the width of a line is the width of its visible text. A '\n' always breaks the line
+ * and isn't included either.
+ * 
+ * The result is stored in primitive arrays that are reused between calls, they only grow if more
+ * lines than ever before are needed. So breaking lines doesn't allocate anything once the arrays
+ * are large enough. Not thread safe.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-19
+ * @version 2
+ */
+public final class LineBreaker {
+	
+	/**
+	 * Measures the width of characters.
+	 */
+	public interface Measurer {
+		
+		/**
+		 * Returns the width of the specified character.
+		 * @param c the character
+		 * @return the width
+		 */
+		public float getWidth(char c);
+	}
+	
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private int[] lineStarts = new int[INITIAL_CAPACITY];
+	private int[] lineEnds = new int[INITIAL_CAPACITY];
+	private float[] lineWidths = new float[INITIAL_CAPACITY];
+	private int lineAmount = 0;
+	
+	/**
+	 * Breaks the specified range of the specified CharSequence into lines. A line is broken before
+	 * it becomes at least as wide as the specified width, unless it only contains one character.
+	 * @param text the CharSequence
+	 * @param start the index of the first character
+	 * @param end the index after the last character
+	 * @param maxWidth the width lines must be less than
+	 * @param spacing the spacing added between characters
+	 * @param measurer the Measurer to measure characters with
+	 * @return the amount of lines
+	 */
+	public int breakLines(CharSequence text, int start, int end, float maxWidth, float spacing, Measurer measurer) {
+		if(start < 0 || end > text.length() || start > end) {
+			throw new IllegalArgumentException("Range [" + start + ", " + end + ") is out of bounds.");
+		}
+		lineAmount = 0;
+		
+		int lineStart = start;
+		float lineWidth = 0; //Width of [lineStart, i) including spacing after each character.
+		int lastBreak = -1; //Index of the last space on the line.
+		float breakWidth = 0; //Width of [lineStart, lastBreak) including spacing.
+		float afterBreakWidth = 0; //Width of [lineStart, lastBreak] including spacing.
+		
+		for(int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			
+			if(c == '\n') {
+				addLine(text, lineStart, i, lineWidth - spacing, spacing, measurer);
+				lineStart = i + 1;
+				lineWidth = 0;
+				lastBreak = -1;
+				continue;
+			}
+			
+			float width = measurer.getWidth(c);
+			if(c == ' ') {
+				//Spaces never break lines themselves, they are hanging at the end of the line.
+				lastBreak = i;
+				breakWidth = lineWidth;
+				lineWidth += width + spacing;
+				afterBreakWidth = lineWidth;
+				continue;
+			}
+			
+			if(lineWidth + width >= maxWidth && i > lineStart) {
+				//Breaks at the last space if there is one.
+				if(lastBreak > lineStart) {
+					addLine(text, lineStart, lastBreak, breakWidth - spacing, spacing, measurer);
+					lineStart = lastBreak + 1;
+					lineWidth -= afterBreakWidth;
+					lastBreak = -1;
+				}
+				//Breaks mid-word if the rest of the word still doesn't fit.
+				if(lineWidth + width >= maxWidth && i > lineStart) {
+					addLine(text, lineStart, i, lineWidth - spacing, spacing, measurer);
+					lineStart = i;
+					lineWidth = 0;
+					lastBreak = -1;
+				}
+			}
+			lineWidth += width + spacing;
+		}
+		addLine(text, lineStart, end, lineWidth - spacing, spacing, measurer);
+		
+		return lineAmount;
+	}
+	
+	/**
+	 * Returns the amount of lines from the last call to breakLines().
+	 * @return amount of lines
+	 */
+	public int getLineAmount() {
+		return lineAmount;
+	}
+	
+	/**
+	 * Returns the index of the first character of the specified line.
+	 * @param line the line
+	 * @return the index of the first character
+	 */
+	public int getLineStart(int line) {
+		checkLine(line);
+		return lineStarts[line];
+	}
+	
+	/**
+	 * Returns the index after the last character of the specified line.
+	 * @param line the line
+	 * @return the index after the last character
+	 */
+	public int getLineEnd(int line) {
+		checkLine(line);
+		return lineEnds[line];
+	}
+	
+	/**
+	 * Returns the width of the specified line.
+	 * @param line the line
+	 * @return the width
+	 */
+	public float getLineWidth(int line) {
+		checkLine(line);
+		return lineWidths[line];
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	//Adds the line [start, end) without its trailing spaces, width includes them.
+	private void addLine(CharSequence text, int start, int end, float width, float spacing, Measurer measurer) {
+		while(end > start && text.charAt(end - 1) == ' ') {
+			end--;
+			width -= measurer.getWidth(' ') + spacing;
+		}
+		if(lineAmount == lineStarts.length) {
+			int capacity = lineStarts.length * 2;
+			lineStarts = Arrays.copyOf(lineStarts, capacity);
+			lineEnds = Arrays.copyOf(lineEnds, capacity);
+			lineWidths = Arrays.copyOf(lineWidths, capacity);
+		}
+		lineStarts[lineAmount] = start;
+		lineEnds[lineAmount] = end;
+		lineWidths[lineAmount] = end > start ? width : 0;
+		lineAmount++;
+	}
+	
+	private void checkLine(int line) {
+		if(line < 0 || line >= lineAmount) {
+			throw new IllegalArgumentException("Line must be >= 0 and < " + lineAmount);
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import android.graphics.Color;
+
+/**
+ * A queue of sprite draws which are sorted by layer and Texture before being rendered with a
+ * SpriteBatcher.
+ * 
+ * How to use:
+ * Draw sprites in whatever order is logical for the game, specifying the layer each sprite belongs
+ * to. Sprites in lower layers are drawn first. At the end of the frame call render() with a
+ * SpriteBatcher. The draws are then sorted so that all sprites in the same layer using the same
+ * Texture are next to each other, which results in the fewest possible Texture binds and draw
+ * calls. The sort is stable, so sprites in the same layer and on the same Texture are drawn in
+ * the order they were added.
+ * 
+ * The draws are stored in arrays of primitives, so no objects are created per draw. The arrays
+ * grow when needed, which should only happen during the first frames.
+ * 
+ * A RenderQueue can also be filled on another thread and handed over to the OpenGL thread, see
+ * RenderQueueBuffer. The filling thread can then call sort() itself, so the OpenGL thread only has
+ * to replay() the draws.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-04
+ * @version 2
+ */
+public class RenderQueue {
+	
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_BUCKETS = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_BUCKETS - 1;
+	
+	//Draw records
+	private int size;
+	private float[] xs, ys, widths, heights, angles;
+	private int[] colors;
+	private TextureRegion[] regions;
+	
+	//Sorting, keys are in insertion order, sortKeys and tempKeys are scratch arrays for the sort.
+	private long[] keys, sortKeys, tempKeys;
+	private int[] order, tempOrder;
+	private final int[] bucketCounts = new int[RADIX_BUCKETS];
+	private boolean sorted = false;
+	
+	//Textures used this frame, the index of a Texture is used in the sort key.
+	private Texture[] textures = new Texture[8];
+	private int textureAmount;
+	
+	/**
+	 * Creates a new RenderQueue with the specified initial capacity.
+	 * @param initialCapacity the amount of draws that can be queued before the queue has to grow
+	 * @throws IllegalArgumentException if initialCapacity <= 0
+	 */
+	public RenderQueue(int initialCapacity) {
+		if(initialCapacity <= 0) {
+			throw new IllegalArgumentException("Initial capacity must be > 0");
+		}
+		allocate(initialCapacity);
+		this.size = 0;
+	}
+	
+	/**
+	 * Queues the specified TextureRegion with the specified size to the specified coordinates.
+	 * @param layer the layer, lower layers are drawn first
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param texRegion the TextureRegion
+	 */
+	public void draw(int layer, float x, float y, float width, float height, TextureRegion texRegion) {
+		draw(layer, x, y, width, height, 0, texRegion, Color.WHITE);
+	}
+	
+	/**
+	 * Queues the specified TextureRegion with the specified size and color to the specified coordinates.
+	 * @param layer the layer, lower layers are drawn first
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 */
+	public void draw(int layer, float x, float y, float width, float height, TextureRegion texRegion, int color) {
+		draw(layer, x, y, width, height, 0, texRegion, color);
+	}
+	
+	/**
+	 * Queues the specified TextureRegion with the specified size to the specified coordinates rotated to the specified angle.
+	 * @param layer the layer, lower layers are drawn first
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param angle the angle
+	 * @param texRegion the TextureRegion
+	 */
+	public void draw(int layer, float x, float y, float width, float height, float angle, TextureRegion texRegion) {
+		draw(layer, x, y, width, height, angle, texRegion, Color.WHITE);
+	}
+	
+	/**
+	 * Queues the specified TextureRegion with the specified size and color to the specified coordinates rotated to the specified angle.
+	 * @param layer the layer, lower layers are drawn first
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param angle the angle
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 */
+	public void draw(int layer, float x, float y, float width, float height, float angle, TextureRegion texRegion, int color) {
+		if(size == xs.length) {
+			grow();
+		}
+		
+		xs[size] = x;
+		ys[size] = y;
+		widths[size] = width;
+		heights[size] = height;
+		angles[size] = angle;
+		colors[size] = color;
+		regions[size] = texRegion;
+		
+		//Layer in the upper 32 bits (sign bit flipped so negative layers sort first), Texture in the lower.
+		long layerBits = (layer ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+		keys[size] = (layerBits << 32) | textureIndex(texRegion.texture);
+		
+		size++;
+		sorted = false;
+	}
+	
+	/**
+	 * Sorts the queued draws and renders them with the specified SpriteBatcher. The queue is
+	 * cleared afterwards.
+	 * Must not be called while the SpriteBatcher is in the middle of a batch.
+	 * @param batcher the SpriteBatcher to render with
+	 */
+	public void render(SpriteBatcher batcher) {
+		replay(batcher);
+		clear();
+	}
+	
+	/**
+	 * Sorts the queued draws and renders them with the specified SpriteBatcher without clearing
+	 * the queue, so the same draws can be rendered again.
+	 * Must not be called while the SpriteBatcher is in the middle of a batch.
+	 * @param batcher the SpriteBatcher to render with
+	 */
+	public void replay(SpriteBatcher batcher) {
+		if(size == 0) {
+			return;
+		}
+		
+		sort();
+		
+		batcher.beginBatch(); //Multi-texture batch, the batcher flushes when the Texture changes.
+		for(int i = 0; i < size; i++) {
+			int j = order[i];
+			if(angles[j] == 0) {
+				batcher.draw(xs[j], ys[j], widths[j], heights[j], regions[j], colors[j]);
+			} else {
+				batcher.draw(xs[j], ys[j], widths[j], heights[j], angles[j], regions[j], colors[j]);
+			}
+		}
+		batcher.renderBatch();
+	}
+	
+	/**
+	 * Sorts the queued draws by layer and Texture. Done automatically when rendering, but can be
+	 * called in advance, for example on the thread filling the queue. Does nothing if the queue
+	 * is already sorted.
+	 */
+	public void sort() {
+		if(sorted) {
+			return;
+		}
+		radixSort();
+		sorted = true;
+	}
+	
+	/**
+	 * Removes all queued draws without rendering them.
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			regions[i] = null;
+		}
+		for(int i = 0; i < textureAmount; i++) {
+			textures[i] = null;
+		}
+		size = 0;
+		textureAmount = 0;
+	}
+	
+	/**
+	 * Returns the amount of queued draws.
+	 * @return amount of queued draws
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	/*
+	 * Returns the index of the specified Texture in this frame, adding it if it's new. Only a
+	 * handful of Textures are expected per frame, so a linear search is fast enough.
+	 */
+	private int textureIndex(Texture texture) {
+		for(int i = 0; i < textureAmount; i++) {
+			if(textures[i] == texture) {
+				return i;
+			}
+		}
+		if(textureAmount == textures.length) {
+			Texture[] newTextures = new Texture[textures.length * 2];
+			System.arraycopy(textures, 0, newTextures, 0, textureAmount);
+			textures = newTextures;
+		}
+		textures[textureAmount] = texture;
+		return textureAmount++;
+	}
+	
+	/*
+	 * Stable LSD radix sort of the draw order by key, one byte per pass. Passes where every key
+	 * has the same digit are skipped, so usually only a few passes are made. The keys are copied
+	 * first, so keys[i] always belongs to draw i even if more draws are added after sorting.
+	 */
+	private void radixSort() {
+		for(int i = 0; i < size; i++) {
+			order[i] = i;
+			sortKeys[i] = keys[i];
+		}
+		
+		for(int shift = 0; shift < 64; shift += RADIX_BITS) {
+			for(int i = 0; i < RADIX_BUCKETS; i++) {
+				bucketCounts[i] = 0;
+			}
+			for(int i = 0; i < size; i++) {
+				bucketCounts[(int)(sortKeys[i] >>> shift) & RADIX_MASK]++;
+			}
+			if(bucketCounts[(int)(sortKeys[0] >>> shift) & RADIX_MASK] == size) {
+				continue; //Every key has the same digit, nothing to sort.
+			}
+			
+			//Converts counts to start positions.
+			int position = 0;
+			for(int i = 0; i < RADIX_BUCKETS; i++) {
+				int count = bucketCounts[i];
+				bucketCounts[i] = position;
+				position += count;
+			}
+			
+			for(int i = 0; i < size; i++) {
+				int destination = bucketCounts[(int)(sortKeys[i] >>> shift) & RADIX_MASK]++;
+				tempKeys[destination] = sortKeys[i];
+				tempOrder[destination] = order[i];
+			}
+			
+			long[] swapKeys = sortKeys;
+			sortKeys = tempKeys;
+			tempKeys = swapKeys;
+			int[] swapOrder = order;
+			order = tempOrder;
+			tempOrder = swapOrder;
+		}
+	}
+	
+	private void grow() {
+		int oldCapacity = xs.length;
+		float[] oldXs = xs, oldYs = ys, oldWidths = widths, oldHeights = heights, oldAngles = angles;
+		int[] oldColors = colors;
+		TextureRegion[] oldRegions = regions;
+		long[] oldKeys = keys;
+		
+		allocate(oldCapacity * 2);
+		
+		System.arraycopy(oldXs, 0, xs, 0, oldCapacity);
+		System.arraycopy(oldYs, 0, ys, 0, oldCapacity);
+		System.arraycopy(oldWidths, 0, widths, 0, oldCapacity);
+		System.arraycopy(oldHeights, 0, heights, 0, oldCapacity);
+		System.arraycopy(oldAngles, 0, angles, 0, oldCapacity);
+		System.arraycopy(oldColors, 0, colors, 0, oldCapacity);
+		System.arraycopy(oldRegions, 0, regions, 0, oldCapacity);
+		System.arraycopy(oldKeys, 0, keys, 0, oldCapacity);
+	}
+	
+	private void allocate(int capacity) {
+		xs = new float[capacity];
+		ys = new float[capacity];
+		widths = new float[capacity];
+		heights = new float[capacity];
+		angles = new float[capacity];
+		colors = new int[capacity];
+		regions = new TextureRegion[capacity];
+		keys = new long[capacity];
+		sortKeys = new long[capacity];
+		tempKeys = new long[capacity];
+		order = new int[capacity];
+		tempOrder = new int[capacity];
+	}
+}
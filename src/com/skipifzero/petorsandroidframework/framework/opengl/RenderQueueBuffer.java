@@ -0,0 +1,86 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer of RenderQueues, used to hand complete frames of draws from one
+ * producing thread (typically an update thread) to the OpenGL thread.
+ * 
+ * How to use:
+ * The producer calls beginWrite() to get an empty RenderQueue, fills it and then calls publish().
+ * The OpenGL thread calls acquireLatest() each frame and replays the returned queue. With three
+ * queues the producer always has one to write to, the consumer always has one to read from, and
+ * the third holds the latest published frame, so neither thread ever waits for the other. If the
+ * producer publishes several frames between two acquires only the latest is rendered, if it
+ * publishes none the previous frame is returned again.
+ * 
+ * Only one thread may produce and only one thread may consume.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-14
+ * @version 1
+ */
+public class RenderQueueBuffer {
+	
+	private static final int INDEX_MASK = 3;
+	private static final int FRESH = 4; //Set when the ready queue hasn't been acquired yet.
+	
+	private final RenderQueue[] queues = new RenderQueue[3];
+	
+	//Index of the queue ready to be acquired, and the fresh flag.
+	private final AtomicInteger readyState = new AtomicInteger(1);
+	private int writeIndex = 0; //Only used by the producer.
+	private int readIndex = 2; //Only used by the consumer.
+	
+	/**
+	 * Creates a new RenderQueueBuffer with three RenderQueues of the specified initial capacity.
+	 * @param initialCapacity the initial capacity of each RenderQueue
+	 * @throws IllegalArgumentException if initialCapacity <= 0
+	 */
+	public RenderQueueBuffer(int initialCapacity) {
+		for(int i = 0; i < queues.length; i++) {
+			queues[i] = new RenderQueue(initialCapacity);
+		}
+	}
+	
+	/**
+	 * Returns the cleared RenderQueue the producer should write the next frame to.
+	 * @return the RenderQueue to write to
+	 */
+	public RenderQueue beginWrite() {
+		RenderQueue queue = queues[writeIndex];
+		queue.clear();
+		return queue;
+	}
+	
+	/**
+	 * Sorts the RenderQueue returned by beginWrite() and makes it the latest published frame.
+	 */
+	public void publish() {
+		queues[writeIndex].sort();
+		int oldState = readyState.getAndSet(writeIndex | FRESH);
+		writeIndex = oldState & INDEX_MASK;
+	}
+	
+	/**
+	 * Returns the latest published RenderQueue. Returns the same queue as the last call if nothing
+	 * has been published since then. The queue may be read until the next call, but not modified.
+	 * @return the latest published RenderQueue
+	 */
+	public RenderQueue acquireLatest() {
+		if((readyState.get() & FRESH) != 0) {
+			int oldState = readyState.getAndSet(readIndex);
+			readIndex = oldState & INDEX_MASK;
+		}
+		return queues[readIndex];
+	}
+	
+	/**
+	 * Returns whether a frame has been published since the last call to acquireLatest(). May be
+	 * called from any thread.
+	 * @return whether there is a new frame
+	 */
+	public boolean hasNewFrame() {
+		return (readyState.get() & FRESH) != 0;
+	}
+}
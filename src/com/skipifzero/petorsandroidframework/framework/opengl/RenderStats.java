@@ -0,0 +1,214 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * Per frame statistics of the work done by the rendering classes in the framework, used to find
+ * batching regressions.
+ * 
+ * Vertices counts draw calls and drawn indices (the count of each draw call, so a sprite drawn with
+ * indices counts as 6 even though it has 4 vertices), GLState counts texture and buffer binds that
+ * actually reached OpenGL, SpriteBatcher counts rendered and culled sprites and FontRenderer counts
+ * drawn glyphs. Since SpriteCache, TileMap and ParticleSystem draw through Vertices and
+ * SpriteBatcher they are included automatically.
+ * 
+ * GLActivity calls endFrame() after each frame, which stores the values of the frame in a rolling
+ * window and resets the counters. The values of the last frame and the min, average and max over
+ * the window can then be read from anywhere on the OpenGL thread, for example from a GLController.
+ * The counters are plain ints, so the statistics are cheap enough to leave on in production builds.
+ * 
+ * May only be used from the OpenGL thread.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-11
+ * @version 1
+ */
+public final class RenderStats {
+	
+	/**
+	 * The statistics that are counted.
+	 */
+	public enum Stat {
+		DRAW_CALLS, INDICES, TEXTURE_BINDS, BUFFER_BINDS, SPRITES, CULLED_SPRITES, GLYPHS;
+	}
+	
+	public static final int DEFAULT_WINDOW_SIZE = 60;
+	
+	private static final int STAT_AMOUNT = Stat.values().length;
+	private static final int DRAW_CALLS = Stat.DRAW_CALLS.ordinal(), INDICES = Stat.INDICES.ordinal();
+	private static final int TEXTURE_BINDS = Stat.TEXTURE_BINDS.ordinal(), BUFFER_BINDS = Stat.BUFFER_BINDS.ordinal();
+	private static final int SPRITES = Stat.SPRITES.ordinal(), CULLED_SPRITES = Stat.CULLED_SPRITES.ordinal(), GLYPHS = Stat.GLYPHS.ordinal();
+	
+	//Counters for the current frame, indexed by ordinal.
+	private static final int[] current = new int[STAT_AMOUNT];
+	
+	//Rolling window with the values of the last frames, history[stat][frame].
+	private static int[][] history = new int[STAT_AMOUNT][DEFAULT_WINDOW_SIZE];
+	private static int windowSize = DEFAULT_WINDOW_SIZE;
+	private static int lastFrameIndex = -1;
+	private static int frameAmount = 0;
+	
+	//Private to avoid instantiation.
+	private RenderStats() {
+		throw new AssertionError();
+	}
+	
+	/**
+	 * Ends the current frame. Stores its values in the rolling window and resets the counters.
+	 * Called by GLActivity after each frame.
+	 */
+	public static void endFrame() {
+		lastFrameIndex = (lastFrameIndex + 1) % windowSize;
+		for(int i = 0; i < STAT_AMOUNT; i++) {
+			history[i][lastFrameIndex] = current[i];
+			current[i] = 0;
+		}
+		if(frameAmount < windowSize) {
+			frameAmount++;
+		}
+	}
+	
+	/**
+	 * Clears the counters and the rolling window.
+	 */
+	public static void reset() {
+		for(int i = 0; i < STAT_AMOUNT; i++) {
+			current[i] = 0;
+		}
+		lastFrameIndex = -1;
+		frameAmount = 0;
+	}
+	
+	/**
+	 * Sets the amount of frames in the rolling window. Clears the window.
+	 * @param windowSize the amount of frames
+	 * @throws IllegalArgumentException if windowSize <= 0
+	 */
+	public static void setWindowSize(int windowSize) {
+		if(windowSize <= 0) {
+			throw new IllegalArgumentException("Window size must be > 0");
+		}
+		if(windowSize != RenderStats.windowSize) {
+			history = new int[STAT_AMOUNT][windowSize];
+			RenderStats.windowSize = windowSize;
+		}
+		reset();
+	}
+	
+	/**
+	 * Returns the amount of frames in the rolling window.
+	 * @return amount of frames in the rolling window
+	 */
+	public static int getWindowSize() {
+		return windowSize;
+	}
+	
+	/**
+	 * Returns the amount of frames currently stored in the rolling window, at most the window size.
+	 * @return amount of stored frames
+	 */
+	public static int getFrameAmount() {
+		return frameAmount;
+	}
+	
+	/**
+	 * Returns the value of the specified statistic in the current, unfinished, frame.
+	 * @param stat the statistic
+	 * @return value so far this frame
+	 */
+	public static int getCurrent(Stat stat) {
+		return current[stat.ordinal()];
+	}
+	
+	/**
+	 * Returns the value of the specified statistic in the last finished frame, 0 if there is none.
+	 * @param stat the statistic
+	 * @return value in the last frame
+	 */
+	public static int getLastFrame(Stat stat) {
+		if(frameAmount == 0) {
+			return 0;
+		}
+		return history[stat.ordinal()][lastFrameIndex];
+	}
+	
+	/**
+	 * Returns the minimum value of the specified statistic in the rolling window, 0 if empty.
+	 * @param stat the statistic
+	 * @return minimum value in the rolling window
+	 */
+	public static int getMin(Stat stat) {
+		if(frameAmount == 0) {
+			return 0;
+		}
+		int[] values = history[stat.ordinal()];
+		int min = Integer.MAX_VALUE;
+		for(int i = 0; i < frameAmount; i++) {
+			if(values[i] < min) {
+				min = values[i];
+			}
+		}
+		return min;
+	}
+	
+	/**
+	 * Returns the maximum value of the specified statistic in the rolling window, 0 if empty.
+	 * @param stat the statistic
+	 * @return maximum value in the rolling window
+	 */
+	public static int getMax(Stat stat) {
+		int[] values = history[stat.ordinal()];
+		int max = 0;
+		for(int i = 0; i < frameAmount; i++) {
+			if(values[i] > max) {
+				max = values[i];
+			}
+		}
+		return max;
+	}
+	
+	/**
+	 * Returns the average value of the specified statistic in the rolling window, 0 if empty.
+	 * @param stat the statistic
+	 * @return average value in the rolling window
+	 */
+	public static double getAverage(Stat stat) {
+		if(frameAmount == 0) {
+			return 0;
+		}
+		int[] values = history[stat.ordinal()];
+		long sum = 0;
+		for(int i = 0; i < frameAmount; i++) {
+			sum += values[i];
+		}
+		return (double)sum / frameAmount;
+	}
+	
+	/*
+	 * Counters, called by the rendering classes.
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	static void drawCall(int indexAmount) {
+		current[DRAW_CALLS]++;
+		current[INDICES] += indexAmount;
+	}
+	
+	static void textureBind() {
+		current[TEXTURE_BINDS]++;
+	}
+	
+	static void bufferBind() {
+		current[BUFFER_BINDS]++;
+	}
+	
+	static void sprites(int amount) {
+		current[SPRITES] += amount;
+	}
+	
+	static void culledSprite() {
+		current[CULLED_SPRITES]++;
+	}
+	
+	static void glyphs(int amount) {
+		current[GLYPHS] += amount;
+	}
+}
@@ -0,0 +1,140 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * Chooses the resolution scale GLActivity renders at, based on measured frame times. Used to stay
+ * at the target frame rate on fill-rate limited devices by rendering fewer pixels.
+ * 
+ * Every window of frames the recent frame times in a FrameTimeHistogram are checked. If too many
+ * frames missed the target frame time the scale is lowered one step. Frame times can't show how
+ * much headroom there is when the frame rate is limited by vsync, so instead the scale is raised
+ * one step after a number of windows without missed frames. Every time a raise is followed by a
+ * drop the amount of windows needed for the next raise is doubled, so the scale settles instead of
+ * oscillating. The window after a change is ignored, since resizing the surface causes a hitch.
+ * 
+ * Used by GLActivity.setResolutionScaler(), which applies the scale with
+ * SurfaceHolder.setFixedSize(). The display hardware then upscales the smaller surface for free,
+ * and Camera2D adjusts the viewport automatically.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-17
+ * @version 1
+ */
+public class ResolutionScaler {
+	
+	public static final float DEFAULT_MIN_SCALE = 0.5f, DEFAULT_STEP = 0.125f;
+	
+	private static final int WINDOW_FRAMES = 60;
+	private static final int MAX_MISSED_FRAMES = 6; //10% of a window.
+	private static final double MISS_THRESHOLD = 1.2; //A frame is missed if it takes 20% longer than the target.
+	private static final int INITIAL_RAISE_WINDOWS = 3, MAX_RAISE_WINDOWS = 64;
+	
+	private final float minScale, step;
+	private float scale = 1;
+	
+	private int frameCount = 0;
+	private int stableWindows = 0;
+	private int raiseWindows = INITIAL_RAISE_WINDOWS;
+	private boolean lastChangeWasRaise = false;
+	private boolean skipNextWindow = false;
+	
+	/**
+	 * Creates a new ResolutionScaler with DEFAULT_MIN_SCALE and DEFAULT_STEP.
+	 */
+	public ResolutionScaler() {
+		this(DEFAULT_MIN_SCALE, DEFAULT_STEP);
+	}
+	
+	/**
+	 * Creates a new ResolutionScaler.
+	 * @param minScale the lowest scale that may be chosen
+	 * @param step the amount the scale is changed each time
+	 * @throws IllegalArgumentException if minScale <= 0 or minScale > 1 or step <= 0
+	 */
+	public ResolutionScaler(float minScale, float step) {
+		if(minScale <= 0 || minScale > 1) {
+			throw new IllegalArgumentException("Min scale must be > 0 and <= 1");
+		}
+		if(step <= 0) {
+			throw new IllegalArgumentException("Step must be > 0");
+		}
+		this.minScale = minScale;
+		this.step = step;
+	}
+	
+	/**
+	 * Should be called once each frame after the frame time has been recorded.
+	 * @param frameTimes the FrameTimeHistogram with the recent frame times
+	 * @param targetFrameNanos the wanted time per frame in nanoseconds
+	 * @return whether the scale was changed
+	 */
+	public boolean update(FrameTimeHistogram frameTimes, long targetFrameNanos) {
+		frameCount++;
+		if(frameCount < WINDOW_FRAMES) {
+			return false;
+		}
+		frameCount = 0;
+		if(skipNextWindow) {
+			skipNextWindow = false;
+			return false;
+		}
+		
+		int frames = Math.min(WINDOW_FRAMES, frameTimes.getRecentAmount());
+		long missThreshold = (long)(targetFrameNanos * MISS_THRESHOLD);
+		int missedFrames = 0;
+		for(int i = 0; i < frames; i++) {
+			if(frameTimes.getRecentNanos(i) > missThreshold) {
+				missedFrames++;
+			}
+		}
+		
+		if(missedFrames > MAX_MISSED_FRAMES) {
+			stableWindows = 0;
+			if(lastChangeWasRaise) {
+				raiseWindows = Math.min(raiseWindows * 2, MAX_RAISE_WINDOWS);
+			}
+			return changeScale(Math.max(minScale, scale - step), false);
+		}
+		
+		stableWindows++;
+		if(stableWindows >= raiseWindows) {
+			stableWindows = 0;
+			return changeScale(Math.min(1, scale + step), true);
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the current scale, between the min scale and 1.
+	 * @return the current scale
+	 */
+	public float getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Resets the scale to 1 and forgets the measured history.
+	 */
+	public void reset() {
+		scale = 1;
+		frameCount = 0;
+		stableWindows = 0;
+		raiseWindows = INITIAL_RAISE_WINDOWS;
+		lastChangeWasRaise = false;
+		skipNextWindow = false;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private boolean changeScale(float newScale, boolean raise) {
+		if(newScale == scale) {
+			return false;
+		}
+		scale = newScale;
+		lastChangeWasRaise = raise;
+		skipNextWindow = true;
+		return true;
+	}
+}
@@ -1,5 +1,9 @@
 package com.skipifzero.petorsandroidframework.framework.opengl;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import android.graphics.Color;
 import android.opengl.GLES10;
 
 import com.skipifzero.petorsandroidframework.framework.math.BaseVector2;
@@ -13,34 +17,102 @@ import com.skipifzero.petorsandroidframework.framework.math.BoundingRectangle;
  * locations on said atlas. Then you begin a batch with the texture and draw the specified
  * regions. Then you call renderBatch and everything will be drawn.
  * 
- * You cannot use more than one SpriteBatcher simultaneously, and you have to be careful to not
- * do more draws per batch than your specified capacity.
+ * If you begin a batch without specifying a Texture each TextureRegion will be drawn with the
+ * Texture it was created with. Every time a draw uses another Texture than the previous one the
+ * batched sprites are rendered and the new Texture is bound, so drawing regions grouped by
+ * Texture results in fewer draw calls.
+ * 
+ * A batch is not limited by the capacity of the SpriteBatcher. When the internal buffer is full
+ * the batched sprites are rendered and the buffer is reused, so the capacity only decides the
+ * maximum amount of sprites rendered per draw call.
+ * 
+ * Sprites are written straight into the direct buffer of the internal Vertices, so there is no
+ * intermediate float array that has to be copied each time the batch is rendered.
+ * 
+ * Each sprite can be tinted with an ARGB color (as used by android.graphics.Color), which is
+ * multiplied with the texture. The color is stored per vertex (packed into 4 bytes), so sprites
+ * with different colors and alpha values are still rendered in the same draw call. Sprites drawn
+ * without a color use the color set with setColor(), which is reset to white by beginBatch().
+ * Colors are only used once a batch starts using them: sprites drawn before the first call to
+ * setColor() or to a draw() method taking a color are rendered without the color array, so a tint
+ * set with glColor4f() (GLState.color()) still applies to them. From then on until the next
+ * beginBatch() the color array is used and the glColor4f() tint is ignored. The sprites already
+ * batched are rendered when the batch switches, so which sprites are tinted only depends on the
+ * order of the calls, never on where the buffer happened to be flushed.
+ * 
+ * Optionally a Camera2D can be set with setCullingCamera(). Sprites that are entirely outside
+ * the bounds of that camera (at the time the batch was begun) are then skipped before any
+ * vertices are generated for them. The amount of skipped sprites is available through
+ * getCulledAmount().
+ * 
+ * You cannot use more than one SpriteBatcher simultaneously.
  * 
  * @author Peter Hillerström
  * @since 2013-05-14
- * @version 1
+ * @version 6
  */
 
 public class SpriteBatcher {
 	
-	private final float[] verticesBuffer;
+	/**
+	 * The maximum capacity of a SpriteBatcher, limited by the amount of vertices that can be
+	 * indexed with unsigned shorts.
+	 */
+	public static final int MAX_CAPACITY = 65536 / 4 - 1;
+	
+	private static final int WHITE = Vertices.packColor(Color.WHITE);
+	
+	private final int capacity;
+	private FloatBuffer verticesBuffer;
+	private final IntBuffer colorBuffer;
 	private final Vertices vertices;
 	private int bufferIndex, spriteAmount;
+	private int currentColor; //Packed color used when no color is specified.
+	private boolean colored; //Whether the batch uses the color array, see useColors().
+	
+	//The currently bound Texture, and whether it should be taken from the drawn TextureRegions.
+	private Texture currentTexture;
+	private boolean multiTexture;
+	
+	//Culling, the bounds are copied from the camera when a batch begins.
+	private Camera2D cullingCamera;
+	private float cullMinX, cullMinY, cullMaxX, cullMaxY;
+	private int culledAmount;
 	
 	/**
 	 * Creates a new SpriteBatcher with the specified capacity.
 	 * @param capacity the capacity of this SpriteBatcher
+	 * @throws IllegalArgumentException if capacity <= 0 or capacity > MAX_CAPACITY
 	 */
 	public SpriteBatcher(int capacity) {
-		this.verticesBuffer = new float[capacity*4*4]; //4 vertices per sprite, 4 floats per vertex.
-		this.vertices = new Vertices(capacity*4, capacity*6, false, true); //4 vertices per sprite, max 6 indices per sprite.
+		this(capacity, false);
+	}
+	
+	/**
+	 * Creates a new SpriteBatcher with the specified capacity.
+	 * If vertex buffer objects are used the index pattern is uploaded to the GPU once, and the
+	 * vertices are streamed to an orphaned vertex buffer each flush. In that case reload() must
+	 * be called whenever the OpenGL context is recreated.
+	 * @param capacity the capacity of this SpriteBatcher
+	 * @param useVBOs whether vertex buffer objects (OpenGL ES 1.1) should be used
+	 * @throws IllegalArgumentException if capacity <= 0 or capacity > MAX_CAPACITY
+	 */
+	public SpriteBatcher(int capacity, boolean useVBOs) {
+		if(capacity <= 0 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Capacity must be > 0 and <= " + MAX_CAPACITY);
+		}
+		this.capacity = capacity;
+		this.vertices = new Vertices(capacity*4, capacity*6, true, true, useVBOs, true); //4 vertices per sprite, max 6 indices per sprite, packed colors.
+		this.verticesBuffer = vertices.getVertexBuffer(); //Sprites are written directly to the vertex buffer, 5 floats per vertex.
+		this.colorBuffer = vertices.getVertexIntBuffer(); //Packed colors are written as ints to the same buffer.
+		this.currentColor = WHITE;
 		
 		this.bufferIndex = 0;
 		this.spriteAmount = 0;
 		
 		short[] indices = new short[capacity*6]; //6 indices per sprite.
 		//Sets the indices in the correct pattern for each sprite. First is 0 1 2 2 3 0, second is 4 5 6 6 7 4, etc.
-		short j = 0;
+		int j = 0;
 		for(int i = 0; i < indices.length; i += 6, j += 4) {
 			indices[i + 0] = (short)(j + 0);
 			indices[i + 1] = (short)(j + 1);
@@ -54,24 +126,99 @@ public class SpriteBatcher {
 	
 	/**
 	 * Begins a new batch with the specified Texture.
+	 * All TextureRegions drawn in this batch must be located on the specified Texture.
 	 * @param texture the Texture
 	 */
 	public void beginBatch(Texture texture) {
 		texture.bind();
+		currentTexture = texture;
+		multiTexture = false;
+		currentColor = WHITE;
+		updateCullingBounds();
 		bufferIndex = 0;
 		spriteAmount = 0;
+		colored = false;
+	}
+	
+	/**
+	 * Begins a new batch without a specific Texture.
+	 * Each TextureRegion drawn in this batch will be rendered with the Texture it was created
+	 * with.
+	 */
+	public void beginBatch() {
+		currentTexture = null;
+		multiTexture = true;
+		currentColor = WHITE;
+		updateCullingBounds();
+		bufferIndex = 0;
+		spriteAmount = 0;
+		colored = false;
+	}
+	
+	/**
+	 * Sets the color used for sprites drawn without a specified color. Reset to white each time a
+	 * batch is begun. Makes the rest of the batch use the color array, see the class description.
+	 * @param color the ARGB color
+	 */
+	public void setColor(int color) {
+		useColors();
+		currentColor = Vertices.packColor(color);
+	}
+	
+	/**
+	 * Sets the Camera2D sprites are culled against, null disables culling (default).
+	 * The bounds of the camera are read each time a batch is begun, so moving the camera in the
+	 * middle of a batch has no effect on culling until the next batch.
+	 * @param camera the Camera2D to cull against, or null
+	 */
+	public void setCullingCamera(Camera2D camera) {
+		this.cullingCamera = camera;
+	}
+	
+	/**
+	 * Returns the amount of sprites culled since the last call to resetCulledAmount().
+	 * @return amount of culled sprites
+	 */
+	public int getCulledAmount() {
+		return culledAmount;
+	}
+	
+	/**
+	 * Resets the amount of culled sprites, should be called once per frame.
+	 */
+	public void resetCulledAmount() {
+		culledAmount = 0;
 	}
 	
 	/**
 	 * Renders the batched draws.
 	 */
 	public void renderBatch() {
-		if(spriteAmount == 0) {
-			return;
-		}
-		vertices.setVertices(verticesBuffer, 0, bufferIndex);
-		vertices.bind();
-		vertices.draw(GLES10.GL_TRIANGLES, 0, spriteAmount * 6);
+		flush();
+	}
+	
+	/**
+	 * Reloads the vertex buffer objects, must be called after the OpenGL context has been lost.
+	 * Does nothing if vertex buffer objects aren't used.
+	 */
+	public void reload() {
+		vertices.reload();
+	}
+	
+	/**
+	 * Disposes of the vertex buffer objects. Does nothing if vertex buffer objects aren't used.
+	 */
+	public void dispose() {
+		vertices.dispose();
+	}
+	
+	/**
+	 * Returns the capacity of this SpriteBatcher, i.e. the maximum amount of sprites rendered
+	 * per draw call.
+	 * @return capacity of this SpriteBatcher
+	 */
+	public int getCapacity() {
+		return capacity;
 	}
 	
 	/**
@@ -171,9 +318,94 @@ public class SpriteBatcher {
 	 * @param texRegion the TextureRegion
 	 */
 	public void draw(float x, float y, float width, float height, TextureRegion texRegion) {
+		drawPacked(x, y, width, height, texRegion, currentColor);
+	}
+	
+	/**
+	 * Draws the specified TextureRegion with the specified size and color to the specified coordinates.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 */
+	public void draw(float x, float y, float width, float height, TextureRegion texRegion, int color) {
+		useColors();
+		drawPacked(x, y, width, height, texRegion, Vertices.packColor(color));
+	}
+	
+	/**
+	 * Draws the specified TextureRegion with the specified size and color to the specified coordinates.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 */
+	public void draw(double x, double y, double width, double height, TextureRegion texRegion, int color) {
+		useColors();
+		drawPacked((float)x, (float)y, (float)width, (float)height, texRegion, Vertices.packColor(color));
+	}
+	
+	/**
+	 * Draws the specified TextureRegion with the specified size to the specified coordinates rotated to the specified angle.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param angle the angle
+	 * @param texRegion the TextureRegion
+	 */
+	public void draw(float x, float y, float width, float height, float angle, TextureRegion texRegion) {
+		drawPacked(x, y, width, height, angle, texRegion, currentColor);
+	}
+	
+	/**
+	 * Draws the specified TextureRegion with the specified size and color to the specified coordinates rotated to the specified angle.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param angle the angle
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 */
+	public void draw(float x, float y, float width, float height, float angle, TextureRegion texRegion, int color) {
+		useColors();
+		drawPacked(x, y, width, height, angle, texRegion, Vertices.packColor(color));
+	}
+	
+	/**
+	 * Draws the specified TextureRegion with the specified size and color to the specified coordinates rotated to the specified angle.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param angle the angle
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 */
+	public void draw(double x, double y, double width, double height, double angle, TextureRegion texRegion, int color) {
+		useColors();
+		drawPacked((float)x, (float)y, (float)width, (float)height, (float)angle, texRegion, Vertices.packColor(color));
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private void drawPacked(float x, float y, float width, float height, TextureRegion texRegion, int packedColor) {
 		float halfWidth = width/2;
 		float halfHeight = height/2;
 		
+		if(isCulled(x, y, halfWidth, halfHeight)) {
+			return;
+		}
+		prepareSprite(texRegion);
+		
 		float x1 = x - halfWidth;
 		float y1 = y - halfHeight;
 		float x2 = x + halfWidth;
@@ -181,49 +413,48 @@ public class SpriteBatcher {
 		
 		//Vertex 1
 		//Position
-		verticesBuffer[bufferIndex++] = x1;
-		verticesBuffer[bufferIndex++] = y1;
+		verticesBuffer.put(bufferIndex++, x1);
+		verticesBuffer.put(bufferIndex++, y1);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u1;
-		verticesBuffer[bufferIndex++] = texRegion.v2;
+		verticesBuffer.put(bufferIndex++, texRegion.u1);
+		verticesBuffer.put(bufferIndex++, texRegion.v2);
 		
 		//Vertex 2
 		//Position
-		verticesBuffer[bufferIndex++] = x2;
-		verticesBuffer[bufferIndex++] = y1;
+		verticesBuffer.put(bufferIndex++, x2);
+		verticesBuffer.put(bufferIndex++, y1);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u2;
-		verticesBuffer[bufferIndex++] = texRegion.v2;
+		verticesBuffer.put(bufferIndex++, texRegion.u2);
+		verticesBuffer.put(bufferIndex++, texRegion.v2);
 		
 		//Vertex 3
 		//Position
-		verticesBuffer[bufferIndex++] = x2;
-		verticesBuffer[bufferIndex++] = y2;
+		verticesBuffer.put(bufferIndex++, x2);
+		verticesBuffer.put(bufferIndex++, y2);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u2;
-		verticesBuffer[bufferIndex++] = texRegion.v1;
+		verticesBuffer.put(bufferIndex++, texRegion.u2);
+		verticesBuffer.put(bufferIndex++, texRegion.v1);
 		
 		//Vertex 4
 		//Position
-		verticesBuffer[bufferIndex++] = x1;
-		verticesBuffer[bufferIndex++] = y2;
+		verticesBuffer.put(bufferIndex++, x1);
+		verticesBuffer.put(bufferIndex++, y2);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u1;
-		verticesBuffer[bufferIndex++] = texRegion.v1;
+		verticesBuffer.put(bufferIndex++, texRegion.u1);
+		verticesBuffer.put(bufferIndex++, texRegion.v1);
 		
 		spriteAmount++; //One sprite batched.
 	}
 	
-	/**
-	 * Draws the specified TextureRegion with the specified size to the specified coordinates rotated to the specified angle.
-	 * @param x the center x coordinate
-	 * @param y the center y coordinate
-	 * @param width the width
-	 * @param height the height
-	 * @param angle the angle
-	 * @param texRegion the TextureRegion
-	 */
-	public void draw(float x, float y, float width, float height, float angle, TextureRegion texRegion) {
+	private void drawPacked(float x, float y, float width, float height, float angle, TextureRegion texRegion, int packedColor) {
 		float halfWidth = width/2;
 		float halfHeight = height/2;
 		
@@ -231,6 +462,16 @@ public class SpriteBatcher {
 		float cosAng = (float)Math.cos(radAngle);
 		float sinAng = (float)Math.sin(radAngle);
 		
+		//Culls against the axis-aligned extent of the rotated sprite.
+		if(cullingCamera != null) {
+			float absCos = Math.abs(cosAng);
+			float absSin = Math.abs(sinAng);
+			if(isCulled(x, y, halfWidth * absCos + halfHeight * absSin, halfWidth * absSin + halfHeight * absCos)) {
+				return;
+			}
+		}
+		prepareSprite(texRegion);
+		
 		//Rotates TextureRegion. Done with rotation matrix.
 		float x1 = -halfWidth * cosAng - (-halfHeight) * sinAng;
 		float y1 = -halfWidth * sinAng + (-halfHeight) * cosAng;
@@ -253,36 +494,121 @@ public class SpriteBatcher {
 		
 		//Vertex 1
 		//Position
-		verticesBuffer[bufferIndex++] = x1;
-		verticesBuffer[bufferIndex++] = y1;
+		verticesBuffer.put(bufferIndex++, x1);
+		verticesBuffer.put(bufferIndex++, y1);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u1;
-		verticesBuffer[bufferIndex++] = texRegion.v2;
+		verticesBuffer.put(bufferIndex++, texRegion.u1);
+		verticesBuffer.put(bufferIndex++, texRegion.v2);
 		
 		//Vertex 2
 		//Position
-		verticesBuffer[bufferIndex++] = x2;
-		verticesBuffer[bufferIndex++] = y2;
+		verticesBuffer.put(bufferIndex++, x2);
+		verticesBuffer.put(bufferIndex++, y2);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u2;
-		verticesBuffer[bufferIndex++] = texRegion.v2;
+		verticesBuffer.put(bufferIndex++, texRegion.u2);
+		verticesBuffer.put(bufferIndex++, texRegion.v2);
 		
 		//Vertex 3
 		//Position
-		verticesBuffer[bufferIndex++] = x3;
-		verticesBuffer[bufferIndex++] = y3;
+		verticesBuffer.put(bufferIndex++, x3);
+		verticesBuffer.put(bufferIndex++, y3);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u2;
-		verticesBuffer[bufferIndex++] = texRegion.v1;
+		verticesBuffer.put(bufferIndex++, texRegion.u2);
+		verticesBuffer.put(bufferIndex++, texRegion.v1);
 		
 		//Vertex 4
 		//Position
-		verticesBuffer[bufferIndex++] = x4;
-		verticesBuffer[bufferIndex++] = y4;
+		verticesBuffer.put(bufferIndex++, x4);
+		verticesBuffer.put(bufferIndex++, y4);
+		//Color
+		colorBuffer.put(bufferIndex++, packedColor);
 		//Texture Mapping
-		verticesBuffer[bufferIndex++] = texRegion.u1;
-		verticesBuffer[bufferIndex++] = texRegion.v1;
+		verticesBuffer.put(bufferIndex++, texRegion.u1);
+		verticesBuffer.put(bufferIndex++, texRegion.v1);
 		
 		spriteAmount++; //One sprite batched.
 	}
+	
+	/*
+	 * Returns whether a sprite with the specified center and half extents is entirely outside the
+	 * culling bounds, and counts it if it is.
+	 */
+	private boolean isCulled(float x, float y, float halfExtentX, float halfExtentY) {
+		if(cullingCamera == null) {
+			return false;
+		}
+		if(x + halfExtentX < cullMinX || x - halfExtentX > cullMaxX || y + halfExtentY < cullMinY || y - halfExtentY > cullMaxY) {
+			culledAmount++;
+			RenderStats.culledSprite();
+			return true;
+		}
+		return false;
+	}
+	
+	private void updateCullingBounds() {
+		if(cullingCamera == null) {
+			return;
+		}
+		BoundingRectangle bounds = cullingCamera.getBounds();
+		float halfWidth = (float)bounds.getWidth()/2;
+		float halfHeight = (float)bounds.getHeight()/2;
+		float centerX = (float)bounds.getPosition().getX();
+		float centerY = (float)bounds.getPosition().getY();
+		cullMinX = centerX - halfWidth;
+		cullMaxX = centerX + halfWidth;
+		cullMinY = centerY - halfHeight;
+		cullMaxY = centerY + halfHeight;
+	}
+	
+	/*
+	 * Makes room for another sprite with the specified TextureRegion. Renders the batched sprites
+	 * if the buffer is full or if the TextureRegion is located on another Texture than the bound one.
+	 */
+	private void prepareSprite(TextureRegion texRegion) {
+		if(multiTexture && texRegion.texture != currentTexture) {
+			flush();
+			currentTexture = texRegion.texture;
+			currentTexture.bind();
+		} else if(spriteAmount == capacity) {
+			flush();
+		}
+	}
+	
+	/*
+	 * Renders the batched sprites and empties the buffer. The indices never change, so the same
+	 * index pattern is reused for every flush.
+	 */
+	private void flush() {
+		if(spriteAmount == 0) {
+			return;
+		}
+		FrameProfiler.begin(FrameProfiler.SUBMIT);
+		vertices.commitVertices(bufferIndex);
+		vertices.setColorsEnabled(colored);
+		vertices.bind();
+		vertices.draw(GLES10.GL_TRIANGLES, 0, spriteAmount * 6);
+		FrameProfiler.end(FrameProfiler.SUBMIT);
+		RenderStats.sprites(spriteAmount);
+		
+		verticesBuffer = vertices.getVertexBuffer();
+		bufferIndex = 0;
+		spriteAmount = 0;
+	}
+	
+	/*
+	 * Switches the rest of the batch to the color array. Sprites batched before are rendered
+	 * first, without it, so they keep the glColor4f() tint no matter when the buffer is flushed.
+	 */
+	private void useColors() {
+		if(!colored) {
+			flush();
+			colored = true;
+		}
+	}
 }
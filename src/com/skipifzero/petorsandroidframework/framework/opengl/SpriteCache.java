@@ -0,0 +1,321 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import android.graphics.Color;
+import android.opengl.GLES10;
+
+import com.skipifzero.petorsandroidframework.framework.math.BaseVector2;
+
+/**
+ * Class used for rendering sprites that never change between frames, such as backgrounds and
+ * level decoration.
+ * 
+ * How to use:
+ * Call beginCache(), add the sprites and call endCache(), which returns the id of the cache. This
+ * is done once, not every frame. Each frame the cache can then be drawn with draw(id) or with an
+ * offset with draw(id, offsetX, offsetY). Any amount of caches can be recorded until the capacity
+ * of the SpriteCache is used up, and each cache may use TextureRegions from several Textures.
+ * Sprites on the same Texture added after each other are drawn with a single draw call.
+ * 
+ * The geometry is only uploaded when a cache has been recorded (to a vertex buffer object with
+ * GL_STATIC_DRAW if those are used), so drawing
+ * a cache costs close to nothing on the CPU regardless of the amount of sprites in it. If vertex
+ * buffer objects are used reload() must be called when the OpenGL context is recreated.
+ * 
+ * Drawing a cache doesn't interfere with a SpriteBatcher, but must not be done in the middle of
+ * a batch.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-05
+ * @version 2
+ */
+public class SpriteCache {
+	
+	private static final int FLOATS_PER_SPRITE = 4*5; //4 vertices, 2 coordinates, 1 packed color, 2 texture coordinates.
+	
+	private final int capacity;
+	private final Vertices vertices;
+	private final FloatBuffer verticesBuffer;
+	private final IntBuffer colorBuffer;
+	private int spriteAmount;
+	
+	//Segments, runs of sprites on the same Texture.
+	private Texture[] segmentTextures;
+	private int[] segmentStarts, segmentLengths;
+	private int segmentAmount;
+	
+	//Caches, runs of segments.
+	private int[] cacheFirstSegments, cacheSegmentAmounts;
+	private int cacheAmount;
+	
+	//Recording
+	private boolean recording;
+	private int recordingFirstSegment;
+	
+	/**
+	 * Creates a new SpriteCache with room for the specified amount of sprites in total.
+	 * @param capacity the maximum amount of sprites in all caches
+	 * @param useVBOs whether vertex buffer objects (OpenGL ES 1.1) should be used
+	 * @throws IllegalArgumentException if capacity <= 0 or capacity > SpriteBatcher.MAX_CAPACITY
+	 */
+	public SpriteCache(int capacity, boolean useVBOs) {
+		if(capacity <= 0 || capacity > SpriteBatcher.MAX_CAPACITY) {
+			throw new IllegalArgumentException("Capacity must be > 0 and <= " + SpriteBatcher.MAX_CAPACITY);
+		}
+		this.capacity = capacity;
+		this.vertices = new Vertices(capacity*4, capacity*6, true, true, useVBOs, true);
+		this.vertices.setStaticVertices(true);
+		this.verticesBuffer = vertices.getVertexBuffer();
+		this.colorBuffer = vertices.getVertexIntBuffer();
+		this.spriteAmount = 0;
+		
+		short[] indices = new short[capacity*6]; //6 indices per sprite, same pattern as SpriteBatcher.
+		int j = 0;
+		for(int i = 0; i < indices.length; i += 6, j += 4) {
+			indices[i + 0] = (short)(j + 0);
+			indices[i + 1] = (short)(j + 1);
+			indices[i + 2] = (short)(j + 2);
+			indices[i + 3] = (short)(j + 2);
+			indices[i + 4] = (short)(j + 3);
+			indices[i + 5] = (short)(j + 0);
+		}
+		vertices.setIndices(indices, 0, indices.length);
+		
+		this.segmentTextures = new Texture[8];
+		this.segmentStarts = new int[8];
+		this.segmentLengths = new int[8];
+		this.cacheFirstSegments = new int[8];
+		this.cacheSegmentAmounts = new int[8];
+	}
+	
+	/**
+	 * Begins recording a new cache.
+	 * @throws IllegalStateException if a cache is already being recorded
+	 */
+	public void beginCache() {
+		if(recording) {
+			throw new IllegalStateException("Already recording a cache.");
+		}
+		recording = true;
+		recordingFirstSegment = segmentAmount;
+		vertices.getVertexBuffer(); //Resets the limit so more sprites can be written, the old ones are kept.
+	}
+	
+	/**
+	 * Ends the recording of the current cache.
+	 * @return the id of the recorded cache, used to draw it
+	 * @throws IllegalStateException if no cache is being recorded
+	 */
+	public int endCache() {
+		if(!recording) {
+			throw new IllegalStateException("Not recording a cache.");
+		}
+		recording = false;
+		vertices.commitVertices(spriteAmount * FLOATS_PER_SPRITE);
+		
+		if(cacheAmount == cacheFirstSegments.length) {
+			cacheFirstSegments = grow(cacheFirstSegments);
+			cacheSegmentAmounts = grow(cacheSegmentAmounts);
+		}
+		cacheFirstSegments[cacheAmount] = recordingFirstSegment;
+		cacheSegmentAmounts[cacheAmount] = segmentAmount - recordingFirstSegment;
+		return cacheAmount++;
+	}
+	
+	/**
+	 * Adds the specified TextureRegion with the specified size at the specified coordinates to the current cache.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param texRegion the TextureRegion
+	 */
+	public void add(float x, float y, float width, float height, TextureRegion texRegion) {
+		add(x, y, width, height, 0, texRegion, Color.WHITE);
+	}
+	
+	/**
+	 * Adds the specified TextureRegion with the specified size and color at the specified coordinates to the current cache.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 */
+	public void add(float x, float y, float width, float height, TextureRegion texRegion, int color) {
+		add(x, y, width, height, 0, texRegion, color);
+	}
+	
+	/**
+	 * Adds the specified TextureRegion with the specified size at the specified coordinates rotated to the specified angle to the current cache.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param angle the angle
+	 * @param texRegion the TextureRegion
+	 */
+	public void add(float x, float y, float width, float height, float angle, TextureRegion texRegion) {
+		add(x, y, width, height, angle, texRegion, Color.WHITE);
+	}
+	
+	/**
+	 * Adds the specified TextureRegion with the specified size and color at the specified coordinates rotated to the specified angle to the current cache.
+	 * @param x the center x coordinate
+	 * @param y the center y coordinate
+	 * @param width the width
+	 * @param height the height
+	 * @param angle the angle
+	 * @param texRegion the TextureRegion
+	 * @param color the ARGB color
+	 * @throws IllegalStateException if no cache is being recorded or if the SpriteCache is full
+	 */
+	public void add(float x, float y, float width, float height, float angle, TextureRegion texRegion, int color) {
+		if(!recording) {
+			throw new IllegalStateException("Not recording a cache.");
+		}
+		if(spriteAmount == capacity) {
+			throw new IllegalStateException("SpriteCache is full, capacity " + capacity + ".");
+		}
+		addToSegment(texRegion.texture);
+		
+		float halfWidth = width/2;
+		float halfHeight = height/2;
+		double radAngle = angle * BaseVector2.DEG_TO_RAD;
+		float cosAng = (float)Math.cos(radAngle);
+		float sinAng = (float)Math.sin(radAngle);
+		int packedColor = Vertices.packColor(color);
+		
+		//Rotates TextureRegion with rotation matrix and moves it to its position.
+		int index = spriteAmount * FLOATS_PER_SPRITE;
+		index = putVertex(index, x - halfWidth * cosAng + halfHeight * sinAng, y - halfWidth * sinAng - halfHeight * cosAng, packedColor, texRegion.u1, texRegion.v2);
+		index = putVertex(index, x + halfWidth * cosAng + halfHeight * sinAng, y + halfWidth * sinAng - halfHeight * cosAng, packedColor, texRegion.u2, texRegion.v2);
+		index = putVertex(index, x + halfWidth * cosAng - halfHeight * sinAng, y + halfWidth * sinAng + halfHeight * cosAng, packedColor, texRegion.u2, texRegion.v1);
+		putVertex(index, x - halfWidth * cosAng - halfHeight * sinAng, y - halfWidth * sinAng + halfHeight * cosAng, packedColor, texRegion.u1, texRegion.v1);
+		
+		spriteAmount++;
+	}
+	
+	/**
+	 * Draws the cache with the specified id.
+	 * @param cacheId the id returned by endCache()
+	 * @throws IllegalArgumentException if cacheId isn't an id returned by endCache()
+	 */
+	public void draw(int cacheId) {
+		checkCacheId(cacheId);
+		vertices.bind();
+		int firstSegment = cacheFirstSegments[cacheId];
+		int lastSegment = firstSegment + cacheSegmentAmounts[cacheId];
+		for(int i = firstSegment; i < lastSegment; i++) {
+			segmentTextures[i].bind();
+			vertices.draw(GLES10.GL_TRIANGLES, segmentStarts[i] * 6, segmentLengths[i] * 6);
+		}
+	}
+	
+	/**
+	 * Draws the cache with the specified id translated by the specified offset.
+	 * @param cacheId the id returned by endCache()
+	 * @param offsetX the offset on the x-axis
+	 * @param offsetY the offset on the y-axis
+	 * @throws IllegalArgumentException if cacheId isn't an id returned by endCache()
+	 */
+	public void draw(int cacheId, float offsetX, float offsetY) {
+		checkCacheId(cacheId); //Checked before pushing so the matrix stack isn't left unbalanced.
+		GLState.matrixMode(GLES10.GL_MODELVIEW);
+		GL.get().glPushMatrix();
+		GL.get().glTranslatef(offsetX, offsetY, 0);
+		draw(cacheId);
+		GL.get().glPopMatrix();
+	}
+	
+	/**
+	 * Removes all caches, previous cache ids are no longer valid.
+	 */
+	public void clear() {
+		for(int i = 0; i < segmentAmount; i++) {
+			segmentTextures[i] = null;
+		}
+		spriteAmount = 0;
+		segmentAmount = 0;
+		cacheAmount = 0;
+		recording = false;
+	}
+	
+	/**
+	 * Returns the amount of sprites in all caches.
+	 * @return amount of sprites
+	 */
+	public int getSpriteAmount() {
+		return spriteAmount;
+	}
+	
+	/**
+	 * Reloads the vertex buffer objects, must be called after the OpenGL context has been lost.
+	 * The caches are uploaded again the next time they are drawn. Does nothing if vertex buffer
+	 * objects aren't used.
+	 */
+	public void reload() {
+		vertices.reload();
+	}
+	
+	/**
+	 * Disposes of the vertex buffer objects. Does nothing if vertex buffer objects aren't used.
+	 */
+	public void dispose() {
+		vertices.dispose();
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	//Throws IllegalArgumentException if the id wasn't returned by endCache() since the last clear().
+	private void checkCacheId(int cacheId) {
+		if(cacheId < 0 || cacheId >= cacheAmount) {
+			throw new IllegalArgumentException("Cache id must be >= 0 and < " + cacheAmount);
+		}
+	}
+	
+	/*
+	 * Adds one sprite to the current segment, or starts a new segment if the Texture differs or
+	 * the current segment belongs to a previous cache.
+	 */
+	private void addToSegment(Texture texture) {
+		int last = segmentAmount - 1;
+		if(last >= recordingFirstSegment && segmentTextures[last] == texture) {
+			segmentLengths[last]++;
+			return;
+		}
+		
+		if(segmentAmount == segmentTextures.length) {
+			Texture[] newTextures = new Texture[segmentTextures.length * 2];
+			System.arraycopy(segmentTextures, 0, newTextures, 0, segmentAmount);
+			segmentTextures = newTextures;
+			segmentStarts = grow(segmentStarts);
+			segmentLengths = grow(segmentLengths);
+		}
+		segmentTextures[segmentAmount] = texture;
+		segmentStarts[segmentAmount] = spriteAmount;
+		segmentLengths[segmentAmount] = 1;
+		segmentAmount++;
+	}
+	
+	private int putVertex(int index, float x, float y, int packedColor, float u, float v) {
+		verticesBuffer.put(index++, x);
+		verticesBuffer.put(index++, y);
+		colorBuffer.put(index++, packedColor);
+		verticesBuffer.put(index++, u);
+		verticesBuffer.put(index++, v);
+		return index;
+	}
+	
+	private static int[] grow(int[] array) {
+		int[] newArray = new int[array.length * 2];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+}
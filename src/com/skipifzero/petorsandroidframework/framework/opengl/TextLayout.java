@@ -0,0 +1,164 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * An immutable layout of a string created by a FontRenderer, contains the position of each
+ * character relative to the position the layout is drawn at. The string is measured and broken
+ * into lines once when the layout is created, drawing it afterwards only looks up glyphs.
+ *
+ * A TextLayout is created for a specific size, alignment and (optionally) maximum line width
+ * with FontRenderer.createLayout() or FontRenderer.getLayout(), and may only be drawn by the
+ * FontRenderer that created it.
+ *
+ * The positions are in the same units as the size, x-offsets are the left edge of each
+ * character and y-offsets the center. Spaces where lines were broken are not included.
+ *
+ * @author Peter Hillerström
+ * @since 2013-06-19
+ * @version 1
+ */
+public final class TextLayout {
+
+	final String string;
+	final float size;
+	final char[] chars;
+	final float[] xOffsets, yOffsets;
+	final int charAmount;
+
+	private final int lineAmount;
+	private final float left, right, bottom, top;
+
+	TextLayout(String string, float size, char[] chars, float[] xOffsets, float[] yOffsets, int charAmount, int lineAmount, float left, float right, float bottom, float top) {
+		this.string = string;
+		this.size = size;
+		this.chars = chars;
+		this.xOffsets = xOffsets;
+		this.yOffsets = yOffsets;
+		this.charAmount = charAmount;
+		this.lineAmount = lineAmount;
+		this.left = left;
+		this.right = right;
+		this.bottom = bottom;
+		this.top = top;
+	}
+
+	/**
+	 * Returns the string this layout was created from.
+	 * @return the string
+	 */
+	public String getString() {
+		return string;
+	}
+
+	/**
+	 * Returns the size this layout was created for.
+	 * @return the size
+	 */
+	public float getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the amount of characters in this layout, spaces where lines were broken excluded.
+	 * @return amount of characters
+	 */
+	public int getCharAmount() {
+		return charAmount;
+	}
+
+	/**
+	 * Returns the character at the specified index.
+	 * @param index the index
+	 * @return the character
+	 */
+	public char getChar(int index) {
+		checkIndex(index);
+		return chars[index];
+	}
+
+	/**
+	 * Returns the x-offset of the left edge of the character at the specified index.
+	 * @param index the index
+	 * @return the x-offset
+	 */
+	public float getXOffset(int index) {
+		checkIndex(index);
+		return xOffsets[index];
+	}
+
+	/**
+	 * Returns the y-offset of the center of the character at the specified index.
+	 * @param index the index
+	 * @return the y-offset
+	 */
+	public float getYOffset(int index) {
+		checkIndex(index);
+		return yOffsets[index];
+	}
+
+	/**
+	 * Returns the amount of lines.
+	 * @return amount of lines
+	 */
+	public int getLineAmount() {
+		return lineAmount;
+	}
+
+	/**
+	 * Returns the width of the widest line.
+	 * @return the width
+	 */
+	public float getWidth() {
+		return right - left;
+	}
+
+	/**
+	 * Returns the height of all lines.
+	 * @return the height
+	 */
+	public float getHeight() {
+		return top - bottom;
+	}
+
+	/**
+	 * Returns the x-offset of the left edge of the bounds of this layout.
+	 * @return left edge of the bounds
+	 */
+	public float getLeft() {
+		return left;
+	}
+
+	/**
+	 * Returns the x-offset of the right edge of the bounds of this layout.
+	 * @return right edge of the bounds
+	 */
+	public float getRight() {
+		return right;
+	}
+
+	/**
+	 * Returns the y-offset of the bottom edge of the bounds of this layout.
+	 * @return bottom edge of the bounds
+	 */
+	public float getBottom() {
+		return bottom;
+	}
+
+	/**
+	 * Returns the y-offset of the top edge of the bounds of this layout.
+	 * @return top edge of the bounds
+	 */
+	public float getTop() {
+		return top;
+	}
+
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= charAmount) {
+			throw new IllegalArgumentException("Index must be >= 0 and < " + charAmount);
+		}
+	}
+}
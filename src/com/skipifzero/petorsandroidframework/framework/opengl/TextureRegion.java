@@ -10,6 +10,7 @@ package com.skipifzero.petorsandroidframework.framework.opengl;
  * @version 1
  */
 public class TextureRegion {
+	public final Texture texture;
 	public final float u1, v1;
 	public final float u2, v2;
 	public final float width, height;
@@ -35,6 +36,7 @@ public class TextureRegion {
 	 * @param height the height of the TextureRegion
 	 */
 	public TextureRegion(Texture texture, float x, float y, float width, float height) {
+		this.texture = texture;
 		this.width = width;
 		this.height = height;
 		
@@ -49,6 +51,14 @@ public class TextureRegion {
 		v2 = v1 + height / texHeight;
 	}
 	
+	/**
+	 * Returns the Texture this TextureRegion is a region of.
+	 * @return the Texture
+	 */
+	public Texture getTexture() {
+		return texture;
+	}
+	
 	/**
 	 * Returns the width of this TextureRegion
 	 * @return width
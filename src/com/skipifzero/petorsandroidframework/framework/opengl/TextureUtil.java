@@ -97,8 +97,13 @@ public final class TextureUtil {
 			}
 		}
 		
-		//Creates OpenGL texture from bitmap texture atlas.
-		texture = new BitmapTexture(bitmapAtlas);
+		//Creates OpenGL texture from bitmap texture atlas. Reuses the old texture if reloading, so
+		//previously returned TextureRegions still refer to the loaded texture.
+		if(texture instanceof BitmapTexture) {
+			((BitmapTexture)texture).reload(bitmapAtlas);
+		} else {
+			texture = new BitmapTexture(bitmapAtlas);
+		}
 		textureAtlasRegion = new TextureRegion(texture, 0, 0, textureSize, textureSize);
 		
 		bitmapAtlas.recycle(); //Recycles bitmap texture atlas.
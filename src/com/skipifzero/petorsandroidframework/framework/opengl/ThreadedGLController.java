@@ -0,0 +1,39 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+/**
+ * A GLController whose logic runs on its own update thread, so that on multi-core devices updating
+ * and rendering overlap instead of adding up.
+ * 
+ * While the controller is active GLActivity runs updateLogic() in a loop on an update thread. Each
+ * call gets an empty RenderQueue to queue the sprites of the frame into. When it returns the queue
+ * is published, and the next call isn't made until the OpenGL thread has picked it up, so the
+ * update thread runs at most one frame ahead. Each frame the OpenGL thread calls render() with the
+ * latest published queue instead of update(). If no new queue has been published since the last
+ * frame the previous one is passed again.
+ * 
+ * updateLogic() must not make OpenGL calls or use the rendering classes directly, and any state
+ * shared with render() must be synchronized. The queue passed to render() may be replayed
+ * (RenderQueue.replay()) but not modified. changeGLController() may only be called from render().
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-14
+ * @version 1
+ */
+public interface ThreadedGLController extends GLController {
+	
+	/**
+	 * Called repeatedly on the update thread. Should update the logic and queue everything that
+	 * should be drawn.
+	 * @param deltaTime the time in seconds since the last call
+	 * @param queue the empty RenderQueue to queue draws in
+	 */
+	public void updateLogic(double deltaTime, RenderQueue queue);
+	
+	/**
+	 * Called once each frame on the OpenGL thread instead of update().
+	 * @param deltaTime the time in seconds since the last frame
+	 * @param fps the amount of rendered frames the last second
+	 * @param queue the latest RenderQueue published by the update thread
+	 */
+	public void render(double deltaTime, int fps, RenderQueue queue);
+}
@@ -0,0 +1,288 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.nio.FloatBuffer;
+
+import android.opengl.GLES10;
+
+import com.skipifzero.petorsandroidframework.framework.math.BoundingRectangle;
+
+/**
+ * Class used for rendering large tile maps.
+ * 
+ * How to use:
+ * Create a TileMap with a tileset (an array of TextureRegions all located on the same Texture)
+ * and set tiles with setTile(), where a tile is the index of its TextureRegion in the tileset or
+ * EMPTY_TILE. Each frame call draw() with the current Camera2D. The map has its bottom left corner
+ * at (0, 0), and tile (x, y) covers the area from (x * tileSize, y * tileSize) to
+ * ((x + 1) * tileSize, (y + 1) * tileSize).
+ * 
+ * The map is split into square chunks of tiles, each with its own prebuilt vertices. All chunks
+ * share a single IndexBuffer (and index buffer object). The vertices of a chunk are only rebuilt
+ * when a tile in it has changed, and only the chunks that intersect the bounds of the camera are
+ * drawn. So the cost of drawing the map depends on the
+ * size of the screen, not the size of the map.
+ * 
+ * If vertex buffer objects are used reload() must be called when the OpenGL context is recreated.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-06
+ * @version 2
+ */
+public class TileMap {
+	
+	/**
+	 * Tile index of an empty tile, nothing is drawn for empty tiles.
+	 */
+	public static final short EMPTY_TILE = -1;
+	
+	private final int width, height;
+	private final float tileSize;
+	private final short[] tiles;
+	private final TextureRegion[] tileset;
+	private final Texture texture;
+	private final boolean useVBOs;
+	
+	//Chunks, created when they first contain a tile.
+	private final int chunkSize, chunksX, chunksY;
+	private final Vertices[] chunkVertices;
+	private final int[] chunkTileAmounts;
+	private final boolean[] chunkDirty;
+	private final IndexBuffer indices;
+	
+	/**
+	 * Creates a new empty TileMap.
+	 * @param width the width of the map in tiles
+	 * @param height the height of the map in tiles
+	 * @param tileSize the width and height of a tile
+	 * @param tileset the TextureRegions of the tiles, must all be on the same Texture
+	 * @param chunkSize the width and height of a chunk in tiles
+	 * @param useVBOs whether vertex buffer objects (OpenGL ES 1.1) should be used
+	 * @throws IllegalArgumentException if any size is <= 0, if chunkSize * chunkSize > SpriteBatcher.MAX_CAPACITY,
+	 *         if the tileset is empty or too large, or if the tileset uses more than one Texture
+	 */
+	public TileMap(int width, int height, float tileSize, TextureRegion[] tileset, int chunkSize, boolean useVBOs) {
+		if(width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Width and height must be > 0");
+		}
+		if(tileSize <= 0) {
+			throw new IllegalArgumentException("Tile size must be > 0");
+		}
+		if(chunkSize <= 0 || chunkSize * chunkSize > SpriteBatcher.MAX_CAPACITY) {
+			throw new IllegalArgumentException("Chunk size must be > 0 and chunk size squared must be <= " + SpriteBatcher.MAX_CAPACITY);
+		}
+		if(tileset.length == 0 || tileset.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Tileset must contain between 1 and " + Short.MAX_VALUE + " TextureRegions");
+		}
+		for(TextureRegion region : tileset) {
+			if(region.texture != tileset[0].texture) {
+				throw new IllegalArgumentException("All TextureRegions in tileset must be on the same Texture");
+			}
+		}
+		
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.tiles = new short[width*height];
+		for(int i = 0; i < tiles.length; i++) {
+			tiles[i] = EMPTY_TILE;
+		}
+		this.tileset = tileset.clone();
+		this.texture = tileset[0].texture;
+		this.useVBOs = useVBOs;
+		
+		this.chunkSize = chunkSize;
+		this.chunksX = (width + chunkSize - 1) / chunkSize;
+		this.chunksY = (height + chunkSize - 1) / chunkSize;
+		this.chunkVertices = new Vertices[chunksX*chunksY];
+		this.chunkTileAmounts = new int[chunksX*chunksY];
+		this.chunkDirty = new boolean[chunksX*chunksY];
+		
+		//Same index pattern as SpriteBatcher, shared by all chunks.
+		this.indices = IndexBuffer.createQuadIndices(chunkSize*chunkSize, useVBOs);
+	}
+	
+	/**
+	 * Sets the tile at the specified position.
+	 * @param x the x position in tiles
+	 * @param y the y position in tiles
+	 * @param tile the index of the tile in the tileset, or EMPTY_TILE
+	 * @throws IllegalArgumentException if the position is outside the map or the tile isn't in the tileset
+	 */
+	public void setTile(int x, int y, short tile) {
+		checkPosition(x, y);
+		if(tile != EMPTY_TILE && (tile < 0 || tile >= tileset.length)) {
+			throw new IllegalArgumentException("Tile " + tile + " isn't in the tileset");
+		}
+		int index = y*width + x;
+		if(tiles[index] == tile) {
+			return;
+		}
+		tiles[index] = tile;
+		chunkDirty[(y / chunkSize) * chunksX + (x / chunkSize)] = true;
+	}
+	
+	/**
+	 * Returns the tile at the specified position.
+	 * @param x the x position in tiles
+	 * @param y the y position in tiles
+	 * @return the index of the tile in the tileset, or EMPTY_TILE
+	 * @throws IllegalArgumentException if the position is outside the map
+	 */
+	public short getTile(int x, int y) {
+		checkPosition(x, y);
+		return tiles[y*width + x];
+	}
+	
+	/**
+	 * Draws the chunks intersecting the bounds of the specified Camera2D. Chunks with changed
+	 * tiles are rebuilt first.
+	 * Must not be called in the middle of a SpriteBatcher batch.
+	 * @param camera the Camera2D
+	 */
+	public void draw(Camera2D camera) {
+		BoundingRectangle bounds = camera.getBounds();
+		double halfWidth = bounds.getWidth()/2;
+		double halfHeight = bounds.getHeight()/2;
+		double centerX = bounds.getPosition().getX();
+		double centerY = bounds.getPosition().getY();
+		double chunkWorldSize = chunkSize * tileSize;
+		
+		int firstChunkX = Math.max((int)Math.floor((centerX - halfWidth) / chunkWorldSize), 0);
+		int lastChunkX = Math.min((int)Math.floor((centerX + halfWidth) / chunkWorldSize), chunksX - 1);
+		int firstChunkY = Math.max((int)Math.floor((centerY - halfHeight) / chunkWorldSize), 0);
+		int lastChunkY = Math.min((int)Math.floor((centerY + halfHeight) / chunkWorldSize), chunksY - 1);
+		if(firstChunkX > lastChunkX || firstChunkY > lastChunkY) {
+			return; //Camera is outside of the map.
+		}
+		
+		texture.bind();
+		GLState.color(1f, 1f, 1f, 1f);
+		for(int chunkY = firstChunkY; chunkY <= lastChunkY; chunkY++) {
+			for(int chunkX = firstChunkX; chunkX <= lastChunkX; chunkX++) {
+				int chunk = chunkY * chunksX + chunkX;
+				if(chunkDirty[chunk]) {
+					rebuildChunk(chunkX, chunkY);
+				}
+				if(chunkTileAmounts[chunk] > 0) {
+					chunkVertices[chunk].bind();
+					chunkVertices[chunk].draw(GLES10.GL_TRIANGLES, 0, chunkTileAmounts[chunk] * 6);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the width of this TileMap in tiles.
+	 * @return width in tiles
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Returns the height of this TileMap in tiles.
+	 * @return height in tiles
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns the width and height of a tile.
+	 * @return size of a tile
+	 */
+	public float getTileSize() {
+		return tileSize;
+	}
+	
+	/**
+	 * Reloads the vertex buffer objects, must be called after the OpenGL context has been lost.
+	 * Does nothing if vertex buffer objects aren't used.
+	 */
+	public void reload() {
+		indices.reload();
+		for(Vertices vertices : chunkVertices) {
+			if(vertices != null) {
+				vertices.reload();
+			}
+		}
+	}
+	
+	/**
+	 * Disposes of the vertex buffer objects. Does nothing if vertex buffer objects aren't used.
+	 */
+	public void dispose() {
+		indices.dispose();
+		for(Vertices vertices : chunkVertices) {
+			if(vertices != null) {
+				vertices.dispose();
+			}
+		}
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private void checkPosition(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height) {
+			throw new IllegalArgumentException("Position (" + x + ", " + y + ") is outside the map");
+		}
+	}
+	
+	private void rebuildChunk(int chunkX, int chunkY) {
+		int chunk = chunkY * chunksX + chunkX;
+		if(chunkVertices[chunk] == null) {
+			chunkVertices[chunk] = new Vertices(chunkSize*chunkSize*4, indices, false, true, useVBOs);
+		}
+		
+		FloatBuffer buffer = chunkVertices[chunk].getVertexBuffer();
+		int bufferIndex = 0;
+		int tileAmount = 0;
+		
+		int firstX = chunkX * chunkSize;
+		int firstY = chunkY * chunkSize;
+		int lastX = Math.min(firstX + chunkSize, width);
+		int lastY = Math.min(firstY + chunkSize, height);
+		for(int y = firstY; y < lastY; y++) {
+			for(int x = firstX; x < lastX; x++) {
+				short tile = tiles[y*width + x];
+				if(tile == EMPTY_TILE) {
+					continue;
+				}
+				TextureRegion region = tileset[tile];
+				float x1 = x * tileSize;
+				float y1 = y * tileSize;
+				float x2 = x1 + tileSize;
+				float y2 = y1 + tileSize;
+				
+				buffer.put(bufferIndex++, x1);
+				buffer.put(bufferIndex++, y1);
+				buffer.put(bufferIndex++, region.u1);
+				buffer.put(bufferIndex++, region.v2);
+				
+				buffer.put(bufferIndex++, x2);
+				buffer.put(bufferIndex++, y1);
+				buffer.put(bufferIndex++, region.u2);
+				buffer.put(bufferIndex++, region.v2);
+				
+				buffer.put(bufferIndex++, x2);
+				buffer.put(bufferIndex++, y2);
+				buffer.put(bufferIndex++, region.u2);
+				buffer.put(bufferIndex++, region.v1);
+				
+				buffer.put(bufferIndex++, x1);
+				buffer.put(bufferIndex++, y2);
+				buffer.put(bufferIndex++, region.u1);
+				buffer.put(bufferIndex++, region.v1);
+				
+				tileAmount++;
+			}
+		}
+		
+		chunkVertices[chunk].commitVertices(bufferIndex);
+		chunkTileAmounts[chunk] = tileAmount;
+		chunkDirty[chunk] = false;
+	}
+}
@@ -0,0 +1,87 @@
+package com.skipifzero.petorsandroidframework.framework.opengl;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The update thread used by GLActivity to run a ThreadedGLController. Publishes one RenderQueue
+ * per call to updateLogic() and then waits until the OpenGL thread has acquired it. Waiting is
+ * done with LockSupport.park(), acquireLatest() and shutdown() unpark the thread. An unpark just
+ * before the park isn't lost, since it leaves a permit that makes the park return at once.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-14
+ * @version 2
+ */
+final class UpdateThread extends Thread {
+	
+	private static final int INITIAL_QUEUE_CAPACITY = 256;
+	
+	private final ThreadedGLController controller;
+	private final RenderQueueBuffer buffer = new RenderQueueBuffer(INITIAL_QUEUE_CAPACITY);
+	private volatile boolean running = true;
+	private volatile Throwable error = null;
+	
+	UpdateThread(ThreadedGLController controller) {
+		super("UpdateThread");
+		this.controller = controller;
+	}
+	
+	@Override
+	public void run() {
+		long lastTime = System.nanoTime();
+		try {
+			while(running) {
+				//Waits until the last published frame has been acquired, loops on spurious wakeups.
+				while(running && buffer.hasNewFrame()) {
+					LockSupport.park(this);
+				}
+				if(!running) {
+					break;
+				}
+				
+				long now = System.nanoTime();
+				double deltaTime = (now - lastTime) / 1000000000.0;
+				lastTime = now;
+				
+				controller.updateLogic(deltaTime, buffer.beginWrite());
+				buffer.publish();
+			}
+		} catch(Throwable t) {
+			error = t; //Rethrown on the OpenGL thread.
+		}
+	}
+	
+	/**
+	 * Returns the latest published RenderQueue and wakes the update thread up. Called from the
+	 * OpenGL thread.
+	 * @return the latest published RenderQueue
+	 * @throws RuntimeException if updateLogic() threw an exception
+	 */
+	RenderQueue acquireLatest() {
+		if(error != null) {
+			throw new RuntimeException("Exception on update thread.", error);
+		}
+		RenderQueue queue = buffer.acquireLatest();
+		LockSupport.unpark(this);
+		return queue;
+	}
+	
+	/**
+	 * Stops the update thread and waits until it has finished.
+	 */
+	void shutdown() {
+		running = false;
+		LockSupport.unpark(this);
+		boolean interrupted = false;
+		while(isAlive()) {
+			try {
+				join();
+			} catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
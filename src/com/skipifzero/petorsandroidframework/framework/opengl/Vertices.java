@@ -3,33 +3,94 @@ package com.skipifzero.petorsandroidframework.framework.opengl;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 
 import android.opengl.GLES10;
+import android.opengl.GLES11;
 
 /**
  * A class used for storing Vertices.
+ * 
+ * Can optionally store the vertices and indices in vertex buffer objects (OpenGL ES 1.1). The
+ * indices are then uploaded once and kept on the GPU, while the vertex buffer is orphaned and
+ * refilled each time new vertices are set, so the driver doesn't have to copy the whole vertex
+ * array on every draw call. Buffer objects are lost together with the OpenGL context, so
+ * reload() must be called when the context is recreated (i.e. in the same place textures are
+ * reloaded). Vertices that are set once and then drawn many times can instead be uploaded with
+ * GL_STATIC_DRAW and without orphaning, see setStaticVertices().
+ * 
+ * The color of each vertex can optionally be packed into 4 unsigned bytes (RGBA) that occupy a
+ * single float slot, instead of 4 floats. This makes each colored vertex 12 bytes smaller. Packed
+ * colors are written through the IntBuffer returned by getVertexIntBuffer(), see packColor().
+ * The colors can be ignored when drawing with setColorsEnabled(false), the current color set with
+ * glColor4f() is then used as if these Vertices had no colors.
+ * 
+ * Instead of having indices of their own, Vertices can use an IndexBuffer shared with other
+ * Vertices.
+ * 
  * @author Peter Hillerström
- * @version 1
+ * @version 6
  */
 public class Vertices {
 	
-	private final boolean hasColor, hasTexture;
-	private final int vertexSize;
+	private final boolean hasColor, hasTexture, packedColor;
+	private boolean colorsEnabled = true;
+	private final int vertexSize, textureOffset;
 	private static final int INDICES_SIZE = 2;
 	
 	private final FloatBuffer vertices;
+	private final IntBuffer verticesAsInts;
 	private final ShortBuffer indices;
+	private IndexBuffer sharedIndices; //Used instead of indices if set.
+	
+	//Vertex buffer objects
+	private final boolean useVBOs;
+	private final int maxVerticesBytes;
+	private int vertexBufferId, indexBufferId;
+	private boolean buffersCreated, verticesDirty, indicesDirty;
+	private boolean staticVertices;
+	private final int[] tempIds = new int[2];
 	
 	public Vertices(int maxAmountOfVertices, int maxAmountOfIndices, boolean hasColor, boolean hasTexture) {
+		this(maxAmountOfVertices, maxAmountOfIndices, hasColor, hasTexture, false);
+	}
+	
+	/**
+	 * Creates new Vertices.
+	 * @param maxAmountOfVertices the maximum amount of vertices
+	 * @param maxAmountOfIndices the maximum amount of indices, 0 if indices aren't used
+	 * @param hasColor whether each vertex has a color
+	 * @param hasTexture whether each vertex has texture coordinates
+	 * @param useVBOs whether vertex buffer objects should be used
+	 */
+	public Vertices(int maxAmountOfVertices, int maxAmountOfIndices, boolean hasColor, boolean hasTexture, boolean useVBOs) {
+		this(maxAmountOfVertices, maxAmountOfIndices, hasColor, hasTexture, useVBOs, false);
+	}
+	
+	/**
+	 * Creates new Vertices.
+	 * @param maxAmountOfVertices the maximum amount of vertices
+	 * @param maxAmountOfIndices the maximum amount of indices, 0 if indices aren't used
+	 * @param hasColor whether each vertex has a color
+	 * @param hasTexture whether each vertex has texture coordinates
+	 * @param useVBOs whether vertex buffer objects should be used
+	 * @param packedColor whether the color is packed into 4 unsigned bytes instead of 4 floats
+	 */
+	public Vertices(int maxAmountOfVertices, int maxAmountOfIndices, boolean hasColor, boolean hasTexture, boolean useVBOs, boolean packedColor) {
 		this.hasColor = hasColor;
 		this.hasTexture = hasTexture;
-		this.vertexSize = (2 + (hasColor?4:0) + (hasTexture?2:0)) * 4; //2 coordinates, 4 color variables, 2 texture coordinates, 4 bytes per float.
+		this.packedColor = hasColor && packedColor;
+		this.textureOffset = 2 + (hasColor?(this.packedColor?1:4):0); //Texture coordinates starts after position and color.
+		this.vertexSize = (textureOffset + (hasTexture?2:0)) * 4; //2 coordinates, 4 color variables (or 1 packed), 2 texture coordinates, 4 bytes per float.
+		this.useVBOs = useVBOs;
+		this.maxVerticesBytes = vertexSize * maxAmountOfVertices;
 		
 		//Creates Vertices FloatBuffer.
 		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(vertexSize * maxAmountOfVertices); //Vertex size times maximum amount of vertices.
 		byteBuffer.order(ByteOrder.nativeOrder());
 		vertices = byteBuffer.asFloatBuffer();
+		verticesAsInts = byteBuffer.asIntBuffer(); //Same memory, used for writing packed colors.
 		
 		//Creates Indices ShortBuffer.
 		if(maxAmountOfIndices > 0){ //Indices used.
@@ -41,50 +102,250 @@ public class Vertices {
 		}
 	}
 	
+	/**
+	 * Creates new Vertices using the specified shared IndexBuffer instead of indices of their own.
+	 * The IndexBuffer is reloaded and disposed of separately.
+	 * @param maxAmountOfVertices the maximum amount of vertices
+	 * @param sharedIndices the IndexBuffer
+	 * @param hasColor whether each vertex has a color
+	 * @param hasTexture whether each vertex has texture coordinates
+	 * @param useVBOs whether vertex buffer objects should be used
+	 */
+	public Vertices(int maxAmountOfVertices, IndexBuffer sharedIndices, boolean hasColor, boolean hasTexture, boolean useVBOs) {
+		this(maxAmountOfVertices, 0, hasColor, hasTexture, useVBOs, false);
+		this.sharedIndices = sharedIndices;
+	}
+	
 	public void setVertices(float[] vertices, int offset, int length) {
 		this.vertices.clear();
 		this.vertices.put(vertices, offset, length);
 		this.vertices.flip();
+		verticesDirty = true;
+	}
+	
+	/**
+	 * Returns the internal direct vertex buffer, cleared and ready to have vertices written to it
+	 * with absolute puts. This avoids the copy made by setVertices(). When all vertices are
+	 * written commitVertices() must be called before these Vertices are bound.
+	 * @return the internal vertex buffer
+	 */
+	public FloatBuffer getVertexBuffer() {
+		vertices.clear();
+		return vertices;
+	}
+	
+	/**
+	 * Sets the vertices to the first length floats written to the buffer returned by
+	 * getVertexBuffer().
+	 * @param length the amount of written floats
+	 */
+	public void commitVertices(int length) {
+		vertices.position(0);
+		vertices.limit(length);
+		verticesDirty = true;
+	}
+	
+	/**
+	 * Returns an IntBuffer view of the internal direct vertex buffer. Index i in this buffer is
+	 * the same memory as index i in the buffer returned by getVertexBuffer(), so packed colors can
+	 * be written with absolute puts in between the floats. Writing the bits as an int avoids them
+	 * being changed by float conversions.
+	 * @return IntBuffer view of the internal vertex buffer
+	 */
+	public IntBuffer getVertexIntBuffer() {
+		return verticesAsInts;
+	}
+	
+	/**
+	 * Packs the specified ARGB color (as used by android.graphics.Color) into an int which, when
+	 * written to the buffer returned by getVertexIntBuffer(), has its bytes in the RGBA order
+	 * OpenGL expects.
+	 * @param argb the ARGB color
+	 * @return the packed color
+	 */
+	public static int packColor(int argb) {
+		if(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+			//Bytes are stored in reverse, so the int must be ABGR.
+			return (argb & 0xFF00FF00) | ((argb >> 16) & 0xFF) | ((argb & 0xFF) << 16);
+		}
+		return (argb << 8) | (argb >>> 24); //RGBA
 	}
 	
 	public void setIndices(short[] indices, int offset, int length) {
 		this.indices.clear();
 		this.indices.put(indices, offset, length);
 		this.indices.flip();
+		indicesDirty = true;
+	}
+	
+	/**
+	 * Sets whether the color of each vertex is used when these Vertices are drawn. If disabled the
+	 * color array isn't enabled and the current color (glColor4f) is used for all vertices. Does
+	 * nothing if these Vertices don't have colors.
+	 * @param colorsEnabled whether the vertex colors should be used
+	 */
+	public void setColorsEnabled(boolean colorsEnabled) {
+		this.colorsEnabled = colorsEnabled;
+	}
+	
+	/**
+	 * Sets whether the vertices are static, i.e. set once and then drawn many times. Static
+	 * vertices are uploaded to the vertex buffer object with GL_STATIC_DRAW when they have been
+	 * changed, instead of orphaning the buffer as is done for vertices that are streamed every
+	 * frame. Does nothing if vertex buffer objects aren't used.
+	 * @param staticVertices whether the vertices are static
+	 */
+	public void setStaticVertices(boolean staticVertices) {
+		this.staticVertices = staticVertices;
 	}
 	
 	public void bind() {
-		GLES10.glEnableClientState(GLES10.GL_VERTEX_ARRAY);
+		if(useVBOs) {
+			bindVBOs();
+			return;
+		}
+		
+		GLState.enableClientState(GLES10.GL_VERTEX_ARRAY);
 		vertices.position(0);
-		GLES10.glVertexPointer(2, GLES10.GL_FLOAT, vertexSize, vertices); //2 coordinates, uses floats, vertexSize, vertices array.
+		GL.get().glVertexPointer(2, GLES10.GL_FLOAT, vertexSize, vertices); //2 coordinates, uses floats, vertexSize, vertices array.
 		
-		if(hasColor){
-			GLES10.glEnableClientState(GLES10.GL_COLOR_ARRAY);
+		if(hasColor && colorsEnabled){
+			GLState.enableClientState(GLES10.GL_COLOR_ARRAY);
 			vertices.position(2); //Color coordinates starts at position 2.
-			GLES10.glColorPointer(4, GLES10.GL_FLOAT, vertexSize, vertices); //4 color variables, uses floats, vertexSize, vertices array.
+			GL.get().glColorPointer(4, packedColor?GLES10.GL_UNSIGNED_BYTE:GLES10.GL_FLOAT, vertexSize, vertices); //4 color variables, uses unsigned bytes or floats, vertexSize, vertices array.
+		}else{
+			GLState.disableClientState(GLES10.GL_COLOR_ARRAY); //Might have been left enabled by other Vertices.
 		}
 		if(hasTexture){
-			GLES10.glEnableClientState(GLES10.GL_TEXTURE_COORD_ARRAY);
-			vertices.position(hasColor?6:2); //If hasColor texture coordinates starts position 6, otherwise at position 2.
-			GLES10.glTexCoordPointer(2, GLES10.GL_FLOAT, vertexSize, vertices); //2 texture coordinates, uses floats, vertexSize, vertices array.
+			GLState.enableClientState(GLES10.GL_TEXTURE_COORD_ARRAY);
+			vertices.position(textureOffset); //Texture coordinates starts after position and color.
+			GL.get().glTexCoordPointer(2, GLES10.GL_FLOAT, vertexSize, vertices); //2 texture coordinates, uses floats, vertexSize, vertices array.
+		}else{
+			GLState.disableClientState(GLES10.GL_TEXTURE_COORD_ARRAY);
 		}
 	}
 	
 	public void draw(int primitiveType, int offset, int verticesAmount) {
+		RenderStats.drawCall(verticesAmount); //The amount of indices if indices are used.
+		if(hasColor && colorsEnabled) {
+			GLState.invalidateColor(); //Current color is undefined after drawing with a color array.
+		}
+		if(sharedIndices != null) {
+			sharedIndices.draw(primitiveType, offset, verticesAmount);
+			return;
+		}
 		if(indices != null){
+			if(useVBOs) {
+				GLState.bindBuffer(GLES11.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+				GL.get().glDrawElements(primitiveType, verticesAmount, GLES10.GL_UNSIGNED_SHORT, offset * INDICES_SIZE);
+				GLState.bindBuffer(GLES11.GL_ELEMENT_ARRAY_BUFFER, 0);
+				return;
+			}
 			indices.position(offset);
-			GLES10.glDrawElements(primitiveType, verticesAmount, GLES10.GL_UNSIGNED_SHORT, indices);
+			GL.get().glDrawElements(primitiveType, verticesAmount, GLES10.GL_UNSIGNED_SHORT, indices);
 		}else{
-			GLES10.glDrawArrays(primitiveType, offset, verticesAmount);
+			GL.get().glDrawArrays(primitiveType, offset, verticesAmount);
 		}
 	}
 	
 	public void unBind() {
 		if(hasColor){
-			GLES10.glDisableClientState(GLES10.GL_TEXTURE_COORD_ARRAY);
+			GLState.disableClientState(GLES10.GL_COLOR_ARRAY);
+		}
+		if(hasTexture){
+			GLState.disableClientState(GLES10.GL_TEXTURE_COORD_ARRAY);
+		}
+	}
+	
+	/**
+	 * Whether these Vertices are stored in vertex buffer objects or not.
+	 * @return whether vertex buffer objects are used
+	 */
+	public boolean usesVBOs() {
+		return useVBOs;
+	}
+	
+	/**
+	 * Recreates the vertex buffer objects. Must be called after the OpenGL context has been lost,
+	 * the vertices and indices will be uploaded again the next time these Vertices are bound.
+	 * Does nothing if vertex buffer objects aren't used.
+	 */
+	public void reload() {
+		//The old buffers died with the old context, so they shouldn't be deleted.
+		buffersCreated = false;
+	}
+	
+	/**
+	 * Deletes the vertex buffer objects. Does nothing if vertex buffer objects aren't used.
+	 */
+	public void dispose() {
+		if(!buffersCreated) {
+			return;
+		}
+		tempIds[0] = vertexBufferId;
+		tempIds[1] = indexBufferId;
+		GLState.deleteBuffers(indices != null ? 2 : 1, tempIds, 0);
+		buffersCreated = false;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private void bindVBOs() {
+		if(!buffersCreated) {
+			createBuffers();
+		}
+		
+		GLState.bindBuffer(GLES11.GL_ARRAY_BUFFER, vertexBufferId);
+		if(verticesDirty && staticVertices) {
+			vertices.position(0);
+			GL.get().glBufferData(GLES11.GL_ARRAY_BUFFER, vertices.limit() * 4, vertices, GLES11.GL_STATIC_DRAW);
+			verticesDirty = false;
+		}else if(verticesDirty) {
+			//Orphans the old storage so the driver doesn't have to wait for pending draws to finish.
+			GL.get().glBufferData(GLES11.GL_ARRAY_BUFFER, maxVerticesBytes, null, GLES11.GL_DYNAMIC_DRAW);
+			vertices.position(0);
+			GL.get().glBufferSubData(GLES11.GL_ARRAY_BUFFER, 0, vertices.limit() * 4, vertices);
+			verticesDirty = false;
+		}
+		
+		GLState.enableClientState(GLES10.GL_VERTEX_ARRAY);
+		GL.get().glVertexPointer(2, GLES10.GL_FLOAT, vertexSize, 0); //2 coordinates, uses floats, vertexSize, byte offset in buffer.
+		if(hasColor && colorsEnabled){
+			GLState.enableClientState(GLES10.GL_COLOR_ARRAY);
+			GL.get().glColorPointer(4, packedColor?GLES10.GL_UNSIGNED_BYTE:GLES10.GL_FLOAT, vertexSize, 2 * 4); //Color coordinates starts after 2 floats.
+		}else{
+			GLState.disableClientState(GLES10.GL_COLOR_ARRAY);
 		}
 		if(hasTexture){
-			GLES10.glDisableClientState(GLES10.GL_COLOR_ARRAY);
+			GLState.enableClientState(GLES10.GL_TEXTURE_COORD_ARRAY);
+			GL.get().glTexCoordPointer(2, GLES10.GL_FLOAT, vertexSize, textureOffset * 4); //Texture coordinates starts after position and color.
+		}else{
+			GLState.disableClientState(GLES10.GL_TEXTURE_COORD_ARRAY);
 		}
+		
+		//The pointers keep referencing the buffer, so it can be unbound to not affect client side arrays.
+		GLState.bindBuffer(GLES11.GL_ARRAY_BUFFER, 0);
+		
+		if(indicesDirty && indices != null) {
+			indices.position(0);
+			GLState.bindBuffer(GLES11.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+			GL.get().glBufferData(GLES11.GL_ELEMENT_ARRAY_BUFFER, indices.limit() * INDICES_SIZE, indices, GLES11.GL_STATIC_DRAW);
+			GLState.bindBuffer(GLES11.GL_ELEMENT_ARRAY_BUFFER, 0);
+			indicesDirty = false;
+		}
+	}
+	
+	private void createBuffers() {
+		GL.get().glGenBuffers(indices != null ? 2 : 1, tempIds, 0); //No index buffer without own indices.
+		vertexBufferId = tempIds[0];
+		indexBufferId = indices != null ? tempIds[1] : 0;
+		buffersCreated = true;
+		
+		//Everything needs to be uploaded to the new buffers.
+		verticesDirty = true;
+		indicesDirty = true;
 	}
 }
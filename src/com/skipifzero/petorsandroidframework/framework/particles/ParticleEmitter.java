@@ -0,0 +1,268 @@
+package com.skipifzero.petorsandroidframework.framework.particles;
+
+import android.graphics.Color;
+
+import com.skipifzero.petorsandroidframework.framework.opengl.TextureRegion;
+
+/**
+ * Immutable description of how particles are emitted and how they behave during their life.
+ * Created with a ParticleEmitter.Builder and used by a ParticleSystem. The same ParticleEmitter
+ * can be used for any amount of emissions at the same time.
+ * 
+ * Angles are in degrees, sizes and speeds are in the same units as the coordinate system the
+ * particles are drawn in, and times are in seconds.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-08
+ * @version 1
+ */
+public class ParticleEmitter {
+	
+	/**
+	 * Builder used for building a ParticleEmitter.
+	 * Everything except the TextureRegion has defaults.
+	 */
+	public static class Builder {
+		public static final float DEFAULT_EMISSION_RATE = 50;
+		public static final float DEFAULT_MIN_LIFE = 1, DEFAULT_MAX_LIFE = 1;
+		public static final float DEFAULT_MIN_SPEED = 1, DEFAULT_MAX_SPEED = 1;
+		public static final float DEFAULT_DIRECTION = 90, DEFAULT_SPREAD = 360;
+		public static final float DEFAULT_START_SIZE = 1, DEFAULT_END_SIZE = 1;
+		public static final float DEFAULT_MIN_SCALE = 1, DEFAULT_MAX_SCALE = 1;
+		public static final float DEFAULT_MIN_ROTATION_SPEED = 0, DEFAULT_MAX_ROTATION_SPEED = 0;
+		public static final int DEFAULT_START_COLOR = Color.WHITE, DEFAULT_END_COLOR = Color.WHITE;
+		public static final float DEFAULT_GRAVITY_X = 0, DEFAULT_GRAVITY_Y = 0;
+		
+		private TextureRegion region;
+		private float emissionRate;
+		private float minLife, maxLife;
+		private float minSpeed, maxSpeed;
+		private float direction, spread;
+		private float startSize, endSize;
+		private float minScale, maxScale;
+		private float minRotationSpeed, maxRotationSpeed;
+		private int startColor, endColor;
+		private float gravityX, gravityY;
+		
+		public Builder() {
+			reset();
+		}
+		
+		/**
+		 * Resets all settings to their defaults.
+		 * @return this
+		 */
+		public Builder reset() {
+			this.region = null;
+			this.emissionRate = DEFAULT_EMISSION_RATE;
+			this.minLife = DEFAULT_MIN_LIFE;
+			this.maxLife = DEFAULT_MAX_LIFE;
+			this.minSpeed = DEFAULT_MIN_SPEED;
+			this.maxSpeed = DEFAULT_MAX_SPEED;
+			this.direction = DEFAULT_DIRECTION;
+			this.spread = DEFAULT_SPREAD;
+			this.startSize = DEFAULT_START_SIZE;
+			this.endSize = DEFAULT_END_SIZE;
+			this.minScale = DEFAULT_MIN_SCALE;
+			this.maxScale = DEFAULT_MAX_SCALE;
+			this.minRotationSpeed = DEFAULT_MIN_ROTATION_SPEED;
+			this.maxRotationSpeed = DEFAULT_MAX_ROTATION_SPEED;
+			this.startColor = DEFAULT_START_COLOR;
+			this.endColor = DEFAULT_END_COLOR;
+			this.gravityX = DEFAULT_GRAVITY_X;
+			this.gravityY = DEFAULT_GRAVITY_Y;
+			return this;
+		}
+		
+		/**
+		 * Sets the TextureRegion each particle is drawn with.
+		 * @param region the TextureRegion
+		 * @return this
+		 */
+		public Builder setTextureRegion(TextureRegion region) {
+			this.region = region;
+			return this;
+		}
+		
+		/**
+		 * Sets the amount of particles emitted per second by continuous emissions.
+		 * @param emissionRate particles per second
+		 * @throws IllegalArgumentException if emissionRate < 0
+		 * @return this
+		 */
+		public Builder setEmissionRate(float emissionRate) {
+			if(emissionRate < 0) {
+				throw new IllegalArgumentException("Emission rate must be >= 0");
+			}
+			this.emissionRate = emissionRate;
+			return this;
+		}
+		
+		/**
+		 * Sets the range of the life time of each particle.
+		 * @param minLife the minimum life time
+		 * @param maxLife the maximum life time
+		 * @throws IllegalArgumentException if minLife <= 0 or maxLife < minLife
+		 * @return this
+		 */
+		public Builder setLife(float minLife, float maxLife) {
+			if(minLife <= 0 || maxLife < minLife) {
+				throw new IllegalArgumentException("Life must be > 0 and max life must be >= min life");
+			}
+			this.minLife = minLife;
+			this.maxLife = maxLife;
+			return this;
+		}
+		
+		/**
+		 * Sets the range of the start speed of each particle.
+		 * @param minSpeed the minimum speed
+		 * @param maxSpeed the maximum speed
+		 * @throws IllegalArgumentException if maxSpeed < minSpeed
+		 * @return this
+		 */
+		public Builder setSpeed(float minSpeed, float maxSpeed) {
+			if(maxSpeed < minSpeed) {
+				throw new IllegalArgumentException("Max speed must be >= min speed");
+			}
+			this.minSpeed = minSpeed;
+			this.maxSpeed = maxSpeed;
+			return this;
+		}
+		
+		/**
+		 * Sets the direction particles are emitted in. Each particle gets a direction within
+		 * spread/2 degrees of the specified direction.
+		 * @param direction the direction in degrees
+		 * @param spread the spread in degrees
+		 * @throws IllegalArgumentException if spread < 0
+		 * @return this
+		 */
+		public Builder setDirection(float direction, float spread) {
+			if(spread < 0) {
+				throw new IllegalArgumentException("Spread must be >= 0");
+			}
+			this.direction = direction;
+			this.spread = spread;
+			return this;
+		}
+		
+		/**
+		 * Sets the size of the particles at the start and the end of their life, the size is
+		 * interpolated linearly in between.
+		 * @param startSize the start size
+		 * @param endSize the end size
+		 * @throws IllegalArgumentException if startSize < 0 or endSize < 0
+		 * @return this
+		 */
+		public Builder setSize(float startSize, float endSize) {
+			if(startSize < 0 || endSize < 0) {
+				throw new IllegalArgumentException("Sizes must be >= 0");
+			}
+			this.startSize = startSize;
+			this.endSize = endSize;
+			return this;
+		}
+		
+		/**
+		 * Sets the range of the random scale each particle's size is multiplied with.
+		 * @param minScale the minimum scale
+		 * @param maxScale the maximum scale
+		 * @throws IllegalArgumentException if minScale < 0 or maxScale < minScale
+		 * @return this
+		 */
+		public Builder setScale(float minScale, float maxScale) {
+			if(minScale < 0 || maxScale < minScale) {
+				throw new IllegalArgumentException("Scale must be >= 0 and max scale must be >= min scale");
+			}
+			this.minScale = minScale;
+			this.maxScale = maxScale;
+			return this;
+		}
+		
+		/**
+		 * Sets the range of the rotation speed of each particle.
+		 * @param minRotationSpeed the minimum rotation speed in degrees per second
+		 * @param maxRotationSpeed the maximum rotation speed in degrees per second
+		 * @throws IllegalArgumentException if maxRotationSpeed < minRotationSpeed
+		 * @return this
+		 */
+		public Builder setRotationSpeed(float minRotationSpeed, float maxRotationSpeed) {
+			if(maxRotationSpeed < minRotationSpeed) {
+				throw new IllegalArgumentException("Max rotation speed must be >= min rotation speed");
+			}
+			this.minRotationSpeed = minRotationSpeed;
+			this.maxRotationSpeed = maxRotationSpeed;
+			return this;
+		}
+		
+		/**
+		 * Sets the ARGB color of the particles at the start and the end of their life, each
+		 * channel is interpolated linearly in between.
+		 * @param startColor the start color
+		 * @param endColor the end color
+		 * @return this
+		 */
+		public Builder setColor(int startColor, int endColor) {
+			this.startColor = startColor;
+			this.endColor = endColor;
+			return this;
+		}
+		
+		/**
+		 * Sets the acceleration applied to each particle.
+		 * @param gravityX the acceleration on the x-axis
+		 * @param gravityY the acceleration on the y-axis
+		 * @return this
+		 */
+		public Builder setGravity(float gravityX, float gravityY) {
+			this.gravityX = gravityX;
+			this.gravityY = gravityY;
+			return this;
+		}
+		
+		/**
+		 * Builds the ParticleEmitter with the specified settings.
+		 * @throws IllegalArgumentException if no TextureRegion has been set
+		 * @return a new ParticleEmitter
+		 */
+		public ParticleEmitter build() {
+			if(region == null) {
+				throw new IllegalArgumentException("TextureRegion must be set");
+			}
+			return new ParticleEmitter(this);
+		}
+	}
+	
+	public final TextureRegion region;
+	public final float emissionRate;
+	public final float minLife, maxLife;
+	public final float minSpeed, maxSpeed;
+	public final float direction, spread;
+	public final float startSize, endSize;
+	public final float minScale, maxScale;
+	public final float minRotationSpeed, maxRotationSpeed;
+	public final int startColor, endColor;
+	public final float gravityX, gravityY;
+	
+	private ParticleEmitter(Builder builder) {
+		this.region = builder.region;
+		this.emissionRate = builder.emissionRate;
+		this.minLife = builder.minLife;
+		this.maxLife = builder.maxLife;
+		this.minSpeed = builder.minSpeed;
+		this.maxSpeed = builder.maxSpeed;
+		this.direction = builder.direction;
+		this.spread = builder.spread;
+		this.startSize = builder.startSize;
+		this.endSize = builder.endSize;
+		this.minScale = builder.minScale;
+		this.maxScale = builder.maxScale;
+		this.minRotationSpeed = builder.minRotationSpeed;
+		this.maxRotationSpeed = builder.maxRotationSpeed;
+		this.startColor = builder.startColor;
+		this.endColor = builder.endColor;
+		this.gravityX = builder.gravityX;
+		this.gravityY = builder.gravityY;
+	}
+}
@@ -0,0 +1,282 @@
+package com.skipifzero.petorsandroidframework.framework.particles;
+
+import java.util.Random;
+
+import com.skipifzero.petorsandroidframework.framework.math.BaseVector2;
+import com.skipifzero.petorsandroidframework.framework.opengl.SpriteBatcher;
+
+/**
+ * A particle system that updates and renders particles without allocating any objects.
+ * 
+ * How to use:
+ * Create a ParticleSystem with the maximum amount of particles alive at the same time. Particles
+ * are created either in bursts with burst(), or continuously with start(), which returns an id
+ * that can be used to move the emission with move() and end it with stop(). Each frame call
+ * update() and then draw() in the middle of a SpriteBatcher batch. If particles use several
+ * Textures the batch should be begun without a Texture.
+ * 
+ * The state of each particle is stored in parallel float arrays (struct of arrays), and dead
+ * particles are removed by moving the last particle into their place. When the maximum amount of
+ * particles is reached new particles are discarded.
+ * 
+ * @author Peter Hillerström
+ * @since 2013-06-08
+ * @version 1
+ */
+public class ParticleSystem {
+	
+	private final int maxParticles;
+	private final Random random = new Random();
+	
+	//Particles
+	private int particleAmount;
+	private final float[] xs, ys, velocityXs, velocityYs;
+	private final float[] lives, invMaxLives;
+	private final float[] rotations, rotationSpeeds, scales;
+	private final ParticleEmitter[] emitters;
+	
+	//Continuous emissions, slots with a null emitter are free.
+	private ParticleEmitter[] emissionEmitters = new ParticleEmitter[4];
+	private float[] emissionXs = new float[4], emissionYs = new float[4];
+	private float[] emissionAccumulators = new float[4];
+	
+	/**
+	 * Creates a new ParticleSystem.
+	 * @param maxParticles the maximum amount of particles alive at the same time
+	 * @throws IllegalArgumentException if maxParticles <= 0
+	 */
+	public ParticleSystem(int maxParticles) {
+		if(maxParticles <= 0) {
+			throw new IllegalArgumentException("Max particles must be > 0");
+		}
+		this.maxParticles = maxParticles;
+		this.particleAmount = 0;
+		
+		this.xs = new float[maxParticles];
+		this.ys = new float[maxParticles];
+		this.velocityXs = new float[maxParticles];
+		this.velocityYs = new float[maxParticles];
+		this.lives = new float[maxParticles];
+		this.invMaxLives = new float[maxParticles];
+		this.rotations = new float[maxParticles];
+		this.rotationSpeeds = new float[maxParticles];
+		this.scales = new float[maxParticles];
+		this.emitters = new ParticleEmitter[maxParticles];
+	}
+	
+	/**
+	 * Emits the specified amount of particles at the specified position at once.
+	 * @param emitter the ParticleEmitter describing the particles
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param amount the amount of particles
+	 */
+	public void burst(ParticleEmitter emitter, float x, float y, int amount) {
+		for(int i = 0; i < amount; i++) {
+			spawn(emitter, x, y);
+		}
+	}
+	
+	/**
+	 * Starts emitting particles continuously at the specified position, with the emission rate
+	 * of the specified ParticleEmitter.
+	 * @param emitter the ParticleEmitter describing the particles
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return id of the emission, used with move() and stop()
+	 */
+	public int start(ParticleEmitter emitter, float x, float y) {
+		int id = 0;
+		while(id < emissionEmitters.length && emissionEmitters[id] != null) {
+			id++;
+		}
+		if(id == emissionEmitters.length) {
+			growEmissions();
+		}
+		emissionEmitters[id] = emitter;
+		emissionXs[id] = x;
+		emissionYs[id] = y;
+		emissionAccumulators[id] = 0;
+		return id;
+	}
+	
+	/**
+	 * Moves the continuous emission with the specified id.
+	 * @param id the id returned by start()
+	 * @param x the new x coordinate
+	 * @param y the new y coordinate
+	 */
+	public void move(int id, float x, float y) {
+		emissionXs[id] = x;
+		emissionYs[id] = y;
+	}
+	
+	/**
+	 * Stops the continuous emission with the specified id. Already emitted particles live on.
+	 * The id may be reused by a later call to start().
+	 * @param id the id returned by start()
+	 */
+	public void stop(int id) {
+		emissionEmitters[id] = null;
+	}
+	
+	/**
+	 * Updates all particles and emits new particles from the continuous emissions.
+	 * @param deltaTime the time since the last update in seconds
+	 */
+	public void update(float deltaTime) {
+		//Continuous emissions
+		for(int i = 0; i < emissionEmitters.length; i++) {
+			ParticleEmitter emitter = emissionEmitters[i];
+			if(emitter == null) {
+				continue;
+			}
+			emissionAccumulators[i] += emitter.emissionRate * deltaTime;
+			while(emissionAccumulators[i] >= 1) {
+				spawn(emitter, emissionXs[i], emissionYs[i]);
+				emissionAccumulators[i] -= 1;
+			}
+		}
+		
+		//Particles
+		int i = 0;
+		while(i < particleAmount) {
+			lives[i] -= deltaTime;
+			if(lives[i] <= 0) {
+				remove(i); //Last particle is moved here, so index i is updated again.
+				continue;
+			}
+			ParticleEmitter emitter = emitters[i];
+			velocityXs[i] += emitter.gravityX * deltaTime;
+			velocityYs[i] += emitter.gravityY * deltaTime;
+			xs[i] += velocityXs[i] * deltaTime;
+			ys[i] += velocityYs[i] * deltaTime;
+			rotations[i] += rotationSpeeds[i] * deltaTime;
+			i++;
+		}
+	}
+	
+	/**
+	 * Draws all particles with the specified SpriteBatcher. Must be called in the middle of a
+	 * batch.
+	 * @param batcher the SpriteBatcher
+	 */
+	public void draw(SpriteBatcher batcher) {
+		for(int i = 0; i < particleAmount; i++) {
+			ParticleEmitter emitter = emitters[i];
+			float progress = 1 - lives[i] * invMaxLives[i]; //0 when born, 1 when dead.
+			float size = (emitter.startSize + (emitter.endSize - emitter.startSize) * progress) * scales[i];
+			int color = lerpColor(emitter.startColor, emitter.endColor, progress);
+			batcher.draw(xs[i], ys[i], size, size, rotations[i], emitter.region, color);
+		}
+	}
+	
+	/**
+	 * Removes all particles and stops all continuous emissions.
+	 */
+	public void clear() {
+		for(int i = 0; i < particleAmount; i++) {
+			emitters[i] = null;
+		}
+		for(int i = 0; i < emissionEmitters.length; i++) {
+			emissionEmitters[i] = null;
+		}
+		particleAmount = 0;
+	}
+	
+	/**
+	 * Returns the amount of alive particles.
+	 * @return amount of alive particles
+	 */
+	public int getParticleAmount() {
+		return particleAmount;
+	}
+	
+	/**
+	 * Returns the maximum amount of particles alive at the same time.
+	 * @return maximum amount of particles
+	 */
+	public int getMaxParticles() {
+		return maxParticles;
+	}
+	
+	/*
+	 * Private methods
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 */
+	
+	private void spawn(ParticleEmitter emitter, float x, float y) {
+		if(particleAmount == maxParticles) {
+			return;
+		}
+		int i = particleAmount++;
+		
+		float life = randomRange(emitter.minLife, emitter.maxLife);
+		float speed = randomRange(emitter.minSpeed, emitter.maxSpeed);
+		double angle = (emitter.direction + (random.nextFloat() - 0.5f) * emitter.spread) * BaseVector2.DEG_TO_RAD;
+		
+		xs[i] = x;
+		ys[i] = y;
+		velocityXs[i] = (float)Math.cos(angle) * speed;
+		velocityYs[i] = (float)Math.sin(angle) * speed;
+		lives[i] = life;
+		invMaxLives[i] = 1 / life;
+		rotations[i] = 0;
+		rotationSpeeds[i] = randomRange(emitter.minRotationSpeed, emitter.maxRotationSpeed);
+		scales[i] = randomRange(emitter.minScale, emitter.maxScale);
+		emitters[i] = emitter;
+	}
+	
+	/*
+	 * Removes the particle at the specified index by moving the last particle to its place.
+	 */
+	private void remove(int i) {
+		int last = --particleAmount;
+		xs[i] = xs[last];
+		ys[i] = ys[last];
+		velocityXs[i] = velocityXs[last];
+		velocityYs[i] = velocityYs[last];
+		lives[i] = lives[last];
+		invMaxLives[i] = invMaxLives[last];
+		rotations[i] = rotations[last];
+		rotationSpeeds[i] = rotationSpeeds[last];
+		scales[i] = scales[last];
+		emitters[i] = emitters[last];
+		emitters[last] = null;
+	}
+	
+	private float randomRange(float min, float max) {
+		return min + random.nextFloat() * (max - min);
+	}
+	
+	private static int lerpColor(int startColor, int endColor, float progress) {
+		if(startColor == endColor) {
+			return startColor;
+		}
+		int a = lerpChannel(startColor >>> 24, endColor >>> 24, progress);
+		int r = lerpChannel((startColor >> 16) & 0xFF, (endColor >> 16) & 0xFF, progress);
+		int g = lerpChannel((startColor >> 8) & 0xFF, (endColor >> 8) & 0xFF, progress);
+		int b = lerpChannel(startColor & 0xFF, endColor & 0xFF, progress);
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+	
+	private static int lerpChannel(int start, int end, float progress) {
+		return start + (int)((end - start) * progress);
+	}
+	
+	private void growEmissions() {
+		int oldLength = emissionEmitters.length;
+		ParticleEmitter[] newEmitters = new ParticleEmitter[oldLength * 2];
+		float[] newXs = new float[oldLength * 2];
+		float[] newYs = new float[oldLength * 2];
+		float[] newAccumulators = new float[oldLength * 2];
+		System.arraycopy(emissionEmitters, 0, newEmitters, 0, oldLength);
+		System.arraycopy(emissionXs, 0, newXs, 0, oldLength);
+		System.arraycopy(emissionYs, 0, newYs, 0, oldLength);
+		System.arraycopy(emissionAccumulators, 0, newAccumulators, 0, oldLength);
+		emissionEmitters = newEmitters;
+		emissionXs = newXs;
+		emissionYs = newYs;
+		emissionAccumulators = newAccumulators;
+	}
+}